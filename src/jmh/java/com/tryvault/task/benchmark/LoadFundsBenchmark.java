@@ -0,0 +1,80 @@
+package com.tryvault.task.benchmark;
+
+import com.tryvault.task.HomeTaskApplication;
+import com.tryvault.task.service.FundService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end ingestion through {@link FundService#loadFunds(java.io.InputStream, java.util.function.Consumer)}:
+ * parsing, validation and saving into an in-memory H2 database, with the application context started once per fork.
+ * Every invocation loads {@code loads} new fund lines with fund IDs never used before, continuing in time where the
+ * previous invocation stopped, so customers build up history as they would in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class LoadFundsBenchmark {
+
+    // 2000-01-01T00:00:00Z
+    private static final long START_EPOCH_SECOND = 946684800L;
+
+    @Param({"10000"})
+    private int loads;
+
+    @Param({"1000"})
+    private int customers;
+
+    private ConfigurableApplicationContext context;
+    private FundService fundService;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private long nextId = 1;
+    private byte[] input;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = new SpringApplicationBuilder(HomeTaskApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark", "spring.h2.console.enabled=false")
+                .run();
+        fundService = context.getBean(FundService.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void generateInput() {
+        StringBuilder lines = new StringBuilder(loads * 96);
+        for (int i = 0; i < loads; i++) {
+            long id = nextId++;
+            lines.append("{\"id\":\"").append(id)
+                    .append("\",\"customer_id\":\"").append(random.nextInt(customers))
+                    .append("\",\"load_amount\":\"$").append(random.nextInt(5000)).append('.')
+                    .append(random.nextInt(10)).append(random.nextInt(10))
+                    .append("\",\"time\":\"").append(Instant.ofEpochSecond(START_EPOCH_SECOND + id * 60))
+                    .append("\"}\n");
+        }
+        input = lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public void loadFunds(Blackhole blackhole) throws IOException {
+        fundService.loadFunds(new ByteArrayInputStream(input), blackhole::consume);
+    }
+}
@@ -0,0 +1,53 @@
+package com.tryvault.task.benchmark;
+
+import com.tryvault.task.parser.FundParser;
+import com.tryvault.task.parser.JacksonFundParser;
+import com.tryvault.task.parser.StreamingFundParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the sample input file into fund values, and into Fund objects as the data-binding path does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ParserBenchmark {
+
+    @Param({"streaming", "jackson"})
+    private String parser;
+
+    private FundParser fundParser;
+    private byte[] input;
+
+    @Setup
+    public void setup() throws IOException {
+        fundParser = parser.equals("jackson") ? new JacksonFundParser() : new StreamingFundParser();
+        try (InputStream resource = getClass().getClassLoader().getResourceAsStream("input.txt")) {
+            input = resource.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public void parseValues(Blackhole blackhole) throws IOException {
+        fundParser.parse(new ByteArrayInputStream(input), (id, customerId, amountCents, epochSecond) -> {
+            blackhole.consume(id);
+            blackhole.consume(customerId);
+            blackhole.consume(amountCents);
+            blackhole.consume(epochSecond);
+        });
+    }
+
+    @Benchmark
+    public void parseFunds(Blackhole blackhole) throws IOException {
+        fundParser.parse(new ByteArrayInputStream(input), blackhole::consume);
+    }
+}
@@ -0,0 +1,116 @@
+package com.tryvault.task.benchmark;
+
+import com.tryvault.task.aggregate.CustomerAggregates;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.validator.FundValidationProcessor;
+import com.tryvault.task.validator.VelocityMetric;
+import com.tryvault.task.validator.VelocityRule;
+import com.tryvault.task.validator.VelocityRuleEvaluator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of a load against a customer with {@code historySize} existing loads, spread over the four weeks
+ * before the load. Each velocity rule is measured alone, and all of them through the validation processor. The rule
+ * is a parameter of the {@link Rule} state only, so the benchmarks that do not evaluate a single rule are not run once
+ * per rule.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ValidationBenchmark {
+
+    private static final List<VelocityRule> RULES = List.of(
+            new VelocityRule("daily-amount", VelocityWindow.DAY, VelocityMetric.AMOUNT, 5000),
+            new VelocityRule("daily-count", VelocityWindow.DAY, VelocityMetric.COUNT, 3),
+            new VelocityRule("weekly-amount", VelocityWindow.WEEK, VelocityMetric.AMOUNT, 20000));
+    // 2000-01-29T12:00:00Z
+    private static final long LOAD_EPOCH_SECOND = 949147200L;
+    private static final long HISTORY_SECONDS = 28 * 86400L;
+
+    @Param({"10", "1000", "100000"})
+    private int historySize;
+
+    private FundValidationProcessor validator;
+    private CustomerAggregates aggregates;
+    private FundBatch load;
+    private long[] historyCents;
+    private long[] historyEpochSeconds;
+
+    @Setup
+    public void setup() {
+        FundConfiguration fundConfiguration = new FundConfiguration();
+        fundConfiguration.setRules(RULES);
+        validator = new FundValidationProcessor(fundConfiguration);
+
+        historyCents = new long[historySize];
+        historyEpochSeconds = new long[historySize];
+        for (int i = 0; i < historySize; i++) {
+            historyCents[i] = 100 + i % 1000;
+            historyEpochSeconds[i] = LOAD_EPOCH_SECOND - HISTORY_SECONDS + i * (HISTORY_SECONDS / historySize);
+        }
+        aggregates = buildAggregates();
+        load = new FundBatch(1, validator.getCalendar());
+        load.add(1, 1, 1000, LOAD_EPOCH_SECOND);
+    }
+
+    /**
+     * Folding the customer's history into aggregates, as done once when the customer's state is loaded.
+     */
+    @Benchmark
+    public CustomerAggregates buildAggregates() {
+        CustomerAggregates customerAggregates = new CustomerAggregates(validator.getCalendar(), validator.getWindows());
+        for (int i = 0; i < historyCents.length; i++) {
+            customerAggregates.add(historyCents[i], historyEpochSeconds[i]);
+        }
+        return customerAggregates;
+    }
+
+    /**
+     * Evaluating with the bucket keys computed when the load was parsed, as done for uploads.
+     */
+    @Benchmark
+    public List<VelocityRule> evaluateRule(Rule rule) {
+        return rule.evaluator.evaluate(aggregates, load, 0);
+    }
+
+    /**
+     * Evaluating from the load time, computing the bucket keys on the way.
+     */
+    @Benchmark
+    public List<VelocityRule> evaluateRuleFromTime(Rule rule) {
+        return rule.evaluator.evaluate(aggregates, 1000, LOAD_EPOCH_SECOND);
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return validator.isValid(aggregates, 1, 1000, LOAD_EPOCH_SECOND);
+    }
+
+    /**
+     * The velocity rule evaluated alone.
+     */
+    @State(Scope.Benchmark)
+    public static class Rule {
+
+        @Param({"daily-amount", "daily-count", "weekly-amount"})
+        private String rule;
+
+        private VelocityRuleEvaluator evaluator;
+
+        @Setup
+        public void setup() {
+            FundConfiguration fundConfiguration = new FundConfiguration();
+            fundConfiguration.setRules(RULES);
+            evaluator = new VelocityRuleEvaluator(RULES.stream().filter(r -> r.getName().equals(rule)).toList(),
+                    new FundValidationProcessor(fundConfiguration).getCalendar());
+        }
+    }
+}
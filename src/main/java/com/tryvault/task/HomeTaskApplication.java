@@ -7,35 +7,68 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-import java.io.File;
-import java.util.List;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 @SpringBootApplication
 public class HomeTaskApplication implements CommandLineRunner {
 
+	// Profile of a command line run, see application-cli.yml
+	public static final String CLI_PROFILE = "cli";
+
 	@Autowired
 	private FundService fundService;
 
+	/**
+	 * Starts the REST API, or loads the input file given as an argument and exits. A command line run starts with
+	 * the {@code cli} profile: no web server, no JPA, and beans created only when the run needs them.
+	 */
 	public static void main(String[] args) {
-		SpringApplication.run(HomeTaskApplication.class, args);
+		SpringApplication application = new SpringApplication(HomeTaskApplication.class);
+		if (inputFile(args) != null) {
+			application.setAdditionalProfiles(CLI_PROFILE);
+		}
+		application.run(args);
 	}
 
 
+	/**
+	 * Loads the file given as an argument and prints each result as soon as it is decided, so the results of
+	 * a multi-GB file are never held in memory.
+	 */
 	@Override
-	public void run(String... args) {
-		if(args.length == 0) {
+	public void run(String... args) throws IOException {
+		String filePath = inputFile(args);
+		if(filePath == null) {
 			return;
 		}
 
-		var filePath = args[0];
-
-		File inputFile = new File(filePath);
+		Path inputFile = Path.of(filePath);
 
-		List<FundLoadResponse> responses = fundService.loadFunds(inputFile);
-		System.out.println("****** Printing Result ******");
-		responses.forEach(response -> System.out.println(response.toString()));
-		System.out.println("****** End Of Result ******");
+		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 64 * 1024),
+				false, StandardCharsets.UTF_8);
+		out.println("****** Printing Result ******");
+		fundService.loadFunds(inputFile, (FundLoadResponse response) -> out.println(response.toString()));
+		out.println("****** End Of Result ******");
+		out.flush();
 		System.exit(0);
 	}
 
+	/**
+	 * @return The first argument that is not a {@code --property=value} option, or null if there is none.
+	 */
+	static String inputFile(String... args) {
+		for (String arg : args) {
+			if (!arg.startsWith("--")) {
+				return arg;
+			}
+		}
+		return null;
+	}
+
 }
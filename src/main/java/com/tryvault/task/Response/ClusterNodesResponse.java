@@ -0,0 +1,24 @@
+package com.tryvault.task.Response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Setter
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ClusterNodesResponse {
+    @JsonProperty
+    private String self;
+    @JsonProperty
+    private List<String> nodes;
+    @JsonProperty("handed_off_customers")
+    private Integer handedOffCustomers;
+}
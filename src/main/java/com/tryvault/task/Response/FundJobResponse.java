@@ -0,0 +1,48 @@
+package com.tryvault.task.Response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.tryvault.task.job.FundJob;
+import com.tryvault.task.job.FundJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Setter
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FundJobResponse {
+    @JsonProperty
+    private String id;
+    @JsonProperty
+    private FundJobStatus status;
+    @JsonProperty
+    private long parsed;
+    @JsonProperty
+    private long validated;
+    @JsonProperty
+    private long accepted;
+    @JsonProperty
+    private long persisted;
+    @JsonProperty
+    private long committed;
+    @JsonProperty("submitted_at")
+    private Instant submittedAt;
+    @JsonProperty("started_at")
+    private Instant startedAt;
+    @JsonProperty("finished_at")
+    private Instant finishedAt;
+    @JsonProperty
+    private String error;
+
+    public static FundJobResponse of(FundJob job) {
+        return new FundJobResponse(job.getId(), job.getStatus(), job.getProgress().getParsed(),
+                job.getProgress().getValidated(), job.getProgress().getAccepted(), job.getProgress().getPersisted(),
+                job.getProgress().getCommitted(), job.getSubmittedAt(), job.getStartedAt(), job.getFinishedAt(), job.getError());
+    }
+}
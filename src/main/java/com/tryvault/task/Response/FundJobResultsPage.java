@@ -0,0 +1,29 @@
+package com.tryvault.task.Response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Setter
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FundJobResultsPage {
+    @JsonProperty("job_id")
+    private String jobId;
+    @JsonProperty
+    private long offset;
+    @JsonProperty
+    private long total;
+    // Offset of the next page, absent on the last page
+    @JsonProperty("next_offset")
+    private Long nextOffset;
+    @JsonProperty
+    private List<FundLoadResponse> results;
+}
@@ -0,0 +1,345 @@
+package com.tryvault.task.aggregate;
+
+import com.tryvault.task.entity.Fund;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.model.FundValues;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Running load count and amount sum, in cents, of a single customer, bucketed per tracked velocity window.
+ *
+ * Each window keeps its most recent buckets in a ring of primitive arrays indexed by bucket key, so the memory of a
+ * customer is fixed however many loads it has, and lookups and updates are a single int comparison. The ring of a
+ * window holds the buckets within its own longest length plus {@link #REORDER_MARGIN} of the newest bucket, so a load
+ * that far behind the newest load is still checked against its own bucket, and an hourly window keeps a few dozen
+ * slots rather than one per hour of the longest window. Older buckets are dropped as newer ones reuse their slots,
+ * and the aggregates remember the newest dropped bucket of each window: a load in that bucket or an older one is not
+ * {@linkplain #isComplete complete} and has to be checked against the stored history instead. Buckets are those of the
+ * {@link VelocityCalendar} the aggregates are created with.
+ */
+public class CustomerAggregates {
+
+    /**
+     * How far a load may be behind the newest load of its customer, beyond the length of a window, and still be
+     * checked against the window's buckets in memory rather than against the stored history.
+     */
+    public static final Duration REORDER_MARGIN = Duration.ofDays(1);
+
+    private static final int NO_BUCKET = Integer.MIN_VALUE;
+
+    private final VelocityCalendar calendar;
+    private final VelocityWindow[] windows;
+    // Position of each window's slots by window ordinal, -1 if the window is not tracked
+    private final int[] offsets;
+    // Number of slots of each window by window ordinal
+    private final int[] lengths;
+    // Newest bucket of each window by window ordinal whose totals may lack loads, NO_BUCKET if none
+    private final int[] incompleteUpTo;
+    private final int[] keys;
+    private final int[] counts;
+    private final long[] amountCents;
+
+    /**
+     * @param windows The velocity windows to keep totals for, in the {@link VelocityCalendar#DEFAULT} calendar.
+     */
+    public CustomerAggregates(VelocityWindow... windows) {
+        this(VelocityCalendar.DEFAULT, windows);
+    }
+
+    /**
+     * @param calendar The calendar defining the buckets of the windows.
+     * @param windows  The velocity windows to keep totals for.
+     */
+    public CustomerAggregates(VelocityCalendar calendar, VelocityWindow... windows) {
+        this.calendar = calendar;
+        this.windows = windows;
+        this.offsets = new int[VelocityWindow.values().length];
+        Arrays.fill(offsets, -1);
+        this.lengths = new int[VelocityWindow.values().length];
+        this.incompleteUpTo = new int[VelocityWindow.values().length];
+        Arrays.fill(incompleteUpTo, NO_BUCKET);
+        int slots = 0;
+        for (VelocityWindow window : windows) {
+            offsets[window.ordinal()] = slots;
+            lengths[window.ordinal()] = bucketCount(window);
+            slots += lengths[window.ordinal()];
+        }
+        this.keys = new int[slots];
+        Arrays.fill(keys, NO_BUCKET);
+        this.counts = new int[slots];
+        this.amountCents = new long[slots];
+    }
+
+    /**
+     * @param window The velocity window.
+     * @return The number of slots of the window: the buckets within its longest length plus the
+     * {@link #REORDER_MARGIN} of the newest one.
+     */
+    public static int bucketCount(VelocityWindow window) {
+        return bucketCount(window, window.getMaxLength().plus(REORDER_MARGIN));
+    }
+
+    /**
+     * Number of buckets of a window kept for loads up to the lookback behind the newest load: every bucket the
+     * lookback can overlap, plus one for an hour key skipped at the start of daylight saving time.
+     *
+     * @param window   The velocity window.
+     * @param lookback How far behind the newest load a load is still checked in memory.
+     * @return The number of slots of the window.
+     */
+    public static int bucketCount(VelocityWindow window, Duration lookback) {
+        long minLength = window.getMinLength().getSeconds();
+        return (int) ((lookback.getSeconds() + minLength - 1) / minLength) + 2;
+    }
+
+    /**
+     * Marks the buckets up to the one of the given time as incomplete, as the stored history the aggregates are built
+     * from starts within that bucket. Loads in those buckets are then checked against the stored history.
+     *
+     * @param epochSecond The earliest load time of the history, in epoch seconds (UTC).
+     */
+    public void startHistoryAt(long epochSecond) {
+        for (VelocityWindow window : windows) {
+            markIncomplete(window.ordinal(), calendar.bucketKey(window, epochSecond));
+        }
+    }
+
+    /**
+     * Adds an existing fund to its bucket of every tracked window.
+     *
+     * @param fund The stored fund.
+     */
+    public void add(Fund fund) {
+        add(FundValues.toCents(fund.getLoadAmount()), FundValues.toEpochSecond(fund.getTime()));
+    }
+
+    /**
+     * Adds an accepted load to its bucket of every tracked window.
+     *
+     * @param loadAmountCents The load amount in cents.
+     * @param epochSecond     The load time in epoch seconds (UTC).
+     */
+    public void add(long loadAmountCents, long epochSecond) {
+        add(1, loadAmountCents, epochSecond);
+    }
+
+    /**
+     * Adds the total of several stored loads falling in the same bucket of every tracked window, such as the loads
+     * of one day when no hourly window is tracked.
+     *
+     * @param loadCount   The number of loads.
+     * @param amountCents The sum of the load amounts in cents.
+     * @param epochSecond A time within the buckets of the loads, in epoch seconds (UTC).
+     */
+    public void add(int loadCount, long amountCents, long epochSecond) {
+        for (VelocityWindow window : windows) {
+            add(window, calendar.bucketKey(window, epochSecond), loadCount, amountCents);
+        }
+    }
+
+    /**
+     * Adds an accepted load to its bucket of every tracked window, using the bucket keys computed with the load.
+     *
+     * @param funds The batch holding the load, created with the calendar of these aggregates.
+     * @param index The index of the load in the batch.
+     */
+    public void add(FundBatch funds, int index) {
+        checkCalendar(funds);
+        long loadAmountCents = funds.getAmountCents(index);
+        for (VelocityWindow window : windows) {
+            add(window, funds.getBucketKey(index, window), 1, loadAmountCents);
+        }
+    }
+
+    /**
+     * Adds the total of stored loads to the buckets they share with a given load, skipping the windows whose bucket
+     * differs, so that aggregates holding no other loads answer for the buckets of that load alone.
+     *
+     * @param funds       The batch holding the load, created with the calendar of these aggregates.
+     * @param index       The index of the load in the batch.
+     * @param loadCount   The number of stored loads.
+     * @param amountCents The sum of the stored load amounts in cents.
+     * @param epochSecond A time within the buckets of the stored loads, in epoch seconds (UTC).
+     */
+    public void addToBucketsOf(FundBatch funds, int index, int loadCount, long amountCents, long epochSecond) {
+        checkCalendar(funds);
+        for (VelocityWindow window : windows) {
+            int key = funds.getBucketKey(index, window);
+            if (calendar.bucketKey(window, epochSecond) == key) {
+                add(window, key, loadCount, amountCents);
+            }
+        }
+    }
+
+    /**
+     * Takes back a load added before, from the buckets of its time that are still kept and complete, when the load
+     * could not be saved after all. A bucket that is no longer complete keeps counting the load, so a load checked
+     * against it errs on the side of a rejection.
+     *
+     * @param loadAmountCents The load amount in cents.
+     * @param epochSecond     The load time in epoch seconds (UTC).
+     */
+    public void remove(long loadAmountCents, long epochSecond) {
+        for (VelocityWindow window : windows) {
+            int key = calendar.bucketKey(window, epochSecond);
+            int slot = findBucketByKey(window, key);
+            if (slot >= 0 && key > incompleteUpTo[window.ordinal()]) {
+                counts[slot]--;
+                amountCents[slot] -= loadAmountCents;
+            }
+        }
+    }
+
+    /**
+     * @param funds The batch holding the load, created with the calendar of these aggregates.
+     * @param index The index of the load in the batch.
+     * @return Whether every bucket of the load is counted in full by these aggregates, so the load can be checked
+     * against them and added to them; if not, the load is older than the buckets kept in memory.
+     */
+    public boolean isComplete(FundBatch funds, int index) {
+        checkCalendar(funds);
+        for (VelocityWindow window : windows) {
+            int ordinal = window.ordinal();
+            int key = funds.getBucketKey(index, window);
+            if (key <= incompleteUpTo[ordinal] || keys[slotOf(ordinal, key)] > key) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of buckets kept over all tracked windows.
+     */
+    int getSlotCount() {
+        return keys.length;
+    }
+
+    private void add(VelocityWindow window, int key, int loadCount, long loadAmountCents) {
+        int slot = slotFor(window.ordinal(), key);
+        if (slot >= 0) {
+            counts[slot] += loadCount;
+            amountCents[slot] += loadAmountCents;
+        }
+    }
+
+    /**
+     * @param window      The velocity window, which must be tracked by these aggregates.
+     * @param epochSecond A time within the bucket, in epoch seconds (UTC).
+     * @return The load count of the bucket the time falls in.
+     */
+    public int getCount(VelocityWindow window, long epochSecond) {
+        return getCount(findBucket(window, epochSecond));
+    }
+
+    /**
+     * @param window      The velocity window, which must be tracked by these aggregates.
+     * @param epochSecond A time within the bucket, in epoch seconds (UTC).
+     * @return The load amount sum in cents of the bucket the time falls in.
+     */
+    public long getAmountCents(VelocityWindow window, long epochSecond) {
+        return getAmountCents(findBucket(window, epochSecond));
+    }
+
+    /**
+     * Looks up a bucket once, so that several rules of the same window can read its totals.
+     *
+     * @param window      The velocity window, which must be tracked by these aggregates.
+     * @param epochSecond A time within the bucket, in epoch seconds (UTC).
+     * @return The bucket the time falls in, or -1 if it has no loads.
+     */
+    public int findBucket(VelocityWindow window, long epochSecond) {
+        return findBucketByKey(window, calendar.bucketKey(window, epochSecond));
+    }
+
+    /**
+     * Looks up a bucket by its key in the calendar of these aggregates.
+     *
+     * @param window The velocity window, which must be tracked by these aggregates.
+     * @param key    The key of the bucket.
+     * @return The bucket, or -1 if it has no loads.
+     */
+    public int findBucketByKey(VelocityWindow window, int key) {
+        if (offsets[window.ordinal()] < 0) {
+            throw new IllegalArgumentException("Velocity window " + window + " is not tracked");
+        }
+        int slot = slotOf(window.ordinal(), key);
+        return keys[slot] == key ? slot : -1;
+    }
+
+    /**
+     * @param bucket A bucket returned by {@link #findBucket}.
+     * @return The load count of the bucket.
+     */
+    public int getCount(int bucket) {
+        return bucket < 0 ? 0 : counts[bucket];
+    }
+
+    /**
+     * @param bucket A bucket returned by {@link #findBucket}.
+     * @return The load amount sum of the bucket in cents.
+     */
+    public long getAmountCents(int bucket) {
+        return bucket < 0 ? 0 : amountCents[bucket];
+    }
+
+    /**
+     * @return Empty aggregates of the same calendar and windows.
+     */
+    public CustomerAggregates newEmpty() {
+        return new CustomerAggregates(calendar, windows);
+    }
+
+    /**
+     * @return The calendar the bucket keys of these aggregates are computed with.
+     */
+    public VelocityCalendar getCalendar() {
+        return calendar;
+    }
+
+    /**
+     * @throws IllegalArgumentException If the batch's bucket keys were not computed with the calendar of these
+     *                                  aggregates.
+     */
+    public void checkCalendar(FundBatch funds) {
+        if (funds.getCalendar() != calendar) {
+            throw new IllegalArgumentException("The loads were bucketed in " + funds.getCalendar()
+                    + " rather than " + calendar);
+        }
+    }
+
+    private int slotOf(int ordinal, int key) {
+        return offsets[ordinal] + Math.floorMod(key, lengths[ordinal]);
+    }
+
+    /**
+     * Finds the slot of a bucket, dropping the older bucket held in that slot.
+     *
+     * @return The slot, or -1 if the bucket is incomplete or a newer bucket holds its slot, in which case the bucket
+     * is marked incomplete.
+     */
+    private int slotFor(int ordinal, int key) {
+        if (key <= incompleteUpTo[ordinal]) {
+            return -1;
+        }
+        int slot = slotOf(ordinal, key);
+        if (keys[slot] == key) {
+            return slot;
+        }
+        if (keys[slot] > key) {
+            markIncomplete(ordinal, key);
+            return -1;
+        }
+        markIncomplete(ordinal, keys[slot]);
+        keys[slot] = key;
+        counts[slot] = 0;
+        amountCents[slot] = 0;
+        return slot;
+    }
+
+    private void markIncomplete(int ordinal, int key) {
+        incompleteUpTo[ordinal] = Math.max(incompleteUpTo[ordinal], key);
+    }
+}
@@ -0,0 +1,134 @@
+package com.tryvault.task.aggregate;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Maps a load time, in epoch seconds, to the calendar buckets the velocity limits are checked against, in a time zone
+ * and with weeks starting on a given day.
+ *
+ * Every key is an int counted from the epoch in local time, so two loads fall in the same bucket exactly when their
+ * keys are equal. Weeks are counted in days rather than by week-based year, so a week spanning New Year is one bucket.
+ * Hour keys overflow an int about 245,000 years from the epoch, so times are limited to four digit years when they
+ * are parsed.
+ */
+public final class VelocityCalendar {
+
+    /**
+     * The calendar of the sample input: UTC, with weeks starting on Sunday.
+     */
+    public static final VelocityCalendar DEFAULT = new VelocityCalendar(ZoneOffset.UTC, DayOfWeek.SUNDAY);
+
+    private static final int WINDOW_COUNT = VelocityWindow.values().length;
+    private static final long SECONDS_PER_HOUR = 3600;
+    private static final long SECONDS_PER_DAY = 86400;
+
+    private final ZoneId zone;
+    private final DayOfWeek weekStart;
+    // Offset of every time in a fixed offset zone, null if the offset changes over time
+    private final ZoneOffset fixedOffset;
+    private final ZoneRules rules;
+    // Days from the start of a week to 1970-01-01, a Thursday
+    private final int weekShift;
+
+    /**
+     * @param zone      The time zone whose days, weeks and months the limits apply to.
+     * @param weekStart The first day of a week.
+     */
+    public VelocityCalendar(ZoneId zone, DayOfWeek weekStart) {
+        this.zone = zone;
+        this.weekStart = weekStart;
+        this.rules = zone.getRules();
+        this.fixedOffset = rules.isFixedOffset() ? rules.getOffset(Instant.EPOCH) : null;
+        this.weekShift = Math.floorMod(DayOfWeek.THURSDAY.getValue() - weekStart.getValue(), 7);
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public DayOfWeek getWeekStart() {
+        return weekStart;
+    }
+
+    /**
+     * @return The number of keys of a load, one per velocity window.
+     */
+    public static int keyCount() {
+        return WINDOW_COUNT;
+    }
+
+    /**
+     * @param window      The velocity window.
+     * @param epochSecond The load time.
+     * @return The key of the bucket of the window the time falls in.
+     */
+    public int bucketKey(VelocityWindow window, long epochSecond) {
+        long localSecond = toLocalSecond(epochSecond);
+        return switch (window) {
+            case HOUR -> hourKey(localSecond);
+            case DAY -> dayKey(localSecond);
+            case WEEK -> weekKey(dayKey(localSecond));
+            case MONTH -> monthKey(dayKey(localSecond));
+        };
+    }
+
+    /**
+     * Computes the key of every velocity window for a load, resolving the zone offset once.
+     *
+     * @param epochSecond The load time.
+     * @param keys        The array receiving the key of each window at {@code offset + window.ordinal()}.
+     * @param offset      The position of the load's keys in the array.
+     */
+    public void bucketKeys(long epochSecond, int[] keys, int offset) {
+        long localSecond = toLocalSecond(epochSecond);
+        int day = dayKey(localSecond);
+        keys[offset + VelocityWindow.HOUR.ordinal()] = hourKey(localSecond);
+        keys[offset + VelocityWindow.DAY.ordinal()] = day;
+        keys[offset + VelocityWindow.WEEK.ordinal()] = weekKey(day);
+        keys[offset + VelocityWindow.MONTH.ordinal()] = monthKey(day);
+    }
+
+    private long toLocalSecond(long epochSecond) {
+        ZoneOffset offset = fixedOffset != null ? fixedOffset : rules.getOffset(Instant.ofEpochSecond(epochSecond));
+        return epochSecond + offset.getTotalSeconds();
+    }
+
+    /**
+     * @return The hours since the epoch.
+     */
+    private static int hourKey(long localSecond) {
+        return Math.toIntExact(Math.floorDiv(localSecond, SECONDS_PER_HOUR));
+    }
+
+    /**
+     * @return The days since the epoch.
+     */
+    private static int dayKey(long localSecond) {
+        return Math.toIntExact(Math.floorDiv(localSecond, SECONDS_PER_DAY));
+    }
+
+    /**
+     * @return The weeks since the epoch.
+     */
+    private int weekKey(int dayKey) {
+        return Math.floorDiv(dayKey + weekShift, 7);
+    }
+
+    /**
+     * @return The months since year zero.
+     */
+    private static int monthKey(int dayKey) {
+        LocalDate date = LocalDate.ofEpochDay(dayKey);
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    @Override
+    public String toString() {
+        return zone + ", weeks starting on " + weekStart;
+    }
+}
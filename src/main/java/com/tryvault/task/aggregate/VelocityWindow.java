@@ -0,0 +1,38 @@
+package com.tryvault.task.aggregate;
+
+import java.time.Duration;
+
+/**
+ * Calendar windows a velocity rule can be evaluated over. The buckets of a window are defined by the
+ * {@link VelocityCalendar}.
+ */
+public enum VelocityWindow {
+    // Buckets are local time, so a bucket spanning the end of daylight saving time lasts an hour longer, and one
+    // spanning its start an hour shorter
+    HOUR(Duration.ofHours(1), Duration.ofHours(2)),
+    DAY(Duration.ofHours(23), Duration.ofHours(25)),
+    WEEK(Duration.ofDays(7).minusHours(1), Duration.ofDays(7).plusHours(1)),
+    MONTH(Duration.ofDays(28).minusHours(1), Duration.ofDays(31).plusHours(1));
+
+    private final Duration minLength;
+    private final Duration maxLength;
+
+    VelocityWindow(Duration minLength, Duration maxLength) {
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @return The shortest time span a bucket of this window can cover.
+     */
+    public Duration getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * @return The longest time span a bucket of this window can cover.
+     */
+    public Duration getMaxLength() {
+        return maxLength;
+    }
+}
@@ -0,0 +1,142 @@
+package com.tryvault.task.cluster;
+
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.model.FundValues;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends loads to other nodes of the cluster over HTTP, as NDJSON lines in the format of the input file.
+ */
+@Component
+public class ClusterClient {
+
+    static final String LOADS_PATH = "/api/cluster/loads";
+    static final String HANDOFF_PATH = "/api/cluster/handoff";
+    // Marks forwarded loads from the chunk after the checkpoint of a resumed upload
+    public static final String RESUMED_HEADER = "X-Fund-Resumed";
+    // Carries fund.clusterSecret, which the other nodes check before acting on a request
+    public static final String TOKEN_HEADER = "X-Cluster-Token";
+    // Lists the nodes the sender of handed off funds moved their customers with, separated by commas
+    public static final String NODES_HEADER = "X-Cluster-Nodes";
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final String secret;
+
+    @Autowired
+    public ClusterClient(FundConfiguration fundConfiguration) {
+        this.requestTimeout = fundConfiguration.getClusterRequestTimeout();
+        this.secret = fundConfiguration.getClusterSecret();
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(requestTimeout)
+                .build();
+    }
+
+    /**
+     * Sends loads to the node owning their customers to be decided and saved there.
+     *
+     * @param node    The base URL of the owning node.
+     * @param funds   The loads to decide, in input order.
+     * @param resumed Whether the loads are from the chunk after the checkpoint of a resumed upload, which the owner
+     *                may have saved already.
+     * @return The decision of each load, indexed like the batch, completed once the owner saved the accepted loads.
+     */
+    public CompletableFuture<boolean[]> decide(String node, FundBatch funds, boolean resumed) {
+        HttpRequest request = request(node, LOADS_PATH, funds)
+                .header(RESUMED_HEADER, Boolean.toString(resumed))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .thenApply(response -> {
+                    checkStatus(node, response.statusCode());
+                    return toDecisions(node, funds, response.body().toList());
+                });
+    }
+
+    /**
+     * Sends the stored loads of customers to their new owner, which saves the loads it does not have yet.
+     *
+     * @param node  The base URL of the new owner.
+     * @param funds The stored loads of the customers.
+     * @param nodes The nodes the customers were moved with, so that the new owner can check it owns them even if it
+     *              is not told the nodes yet.
+     */
+    public void handOff(String node, FundBatch funds, List<String> nodes) {
+        HttpRequest request = request(node, HANDOFF_PATH, funds)
+                .header(NODES_HEADER, String.join(",", nodes))
+                .build();
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            checkStatus(node, response.statusCode());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to hand off funds to " + node + ". error: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing off funds to " + node, e);
+        }
+    }
+
+    private HttpRequest.Builder request(String node, String path, FundBatch funds) {
+        StringBuilder body = new StringBuilder(funds.size() * 96);
+        for (int i = 0; i < funds.size(); i++) {
+            appendLine(body, funds, i);
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(node + path))
+                .timeout(requestTimeout)
+                .header("Content-Type", NDJSON)
+                .header("Accept", NDJSON)
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+        if (secret != null && !secret.isEmpty()) {
+            request.header(TOKEN_HEADER, secret);
+        }
+        return request;
+    }
+
+    /**
+     * Appends a load as a line of the input file.
+     */
+    static void appendLine(StringBuilder body, FundBatch funds, int index) {
+        body.append("{\"id\":\"").append(funds.getId(index))
+                .append("\",\"customer_id\":\"").append(funds.getCustomerId(index))
+                .append("\",\"load_amount\":\"$")
+                .append(FundValues.toAmount(funds.getAmountCents(index)).toPlainString())
+                .append("\",\"time\":\"").append(Instant.ofEpochSecond(funds.getEpochSecond(index)))
+                .append("\"}\n");
+    }
+
+    /**
+     * Reads the decisions of the owner, one result line per load in the order the loads were sent.
+     */
+    private static boolean[] toDecisions(String node, FundBatch funds, List<String> lines) {
+        if (lines.size() != funds.size()) {
+            throw new IllegalStateException(node + " decided " + lines.size() + " of " + funds.size() + " funds");
+        }
+        boolean[] accepted = new boolean[funds.size()];
+        for (int i = 0; i < accepted.length; i++) {
+            String line = lines.get(i);
+            if (!line.startsWith("{\"id\":\"" + funds.getId(i) + "\"")) {
+                throw new IllegalStateException(node + " answered " + line + " for fund ID " + funds.getId(i));
+            }
+            accepted[i] = line.endsWith("\"accepted\":true}");
+        }
+        return accepted;
+    }
+
+    private static void checkStatus(String node, int statusCode) {
+        if (statusCode / 100 != 2) {
+            throw new IllegalStateException(node + " answered with status " + statusCode);
+        }
+    }
+}
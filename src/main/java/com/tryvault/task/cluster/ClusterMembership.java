@@ -0,0 +1,163 @@
+package com.tryvault.task.cluster;
+
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.model.FundBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * The nodes of the cluster and the customers each one owns. A customer's velocity state and stored history live on
+ * its owner only, so every load of the customer must be decided there.
+ *
+ * The nodes are read from {@code fund.clusterNodes} at startup and replaced by {@link ClusterService#updateNodes}
+ * when a node joins or leaves. With fewer than two nodes, every customer is owned by this node.
+ */
+@Component
+public class ClusterMembership {
+    private static final Logger log = LoggerFactory.getLogger(ClusterMembership.class);
+
+    private final String self;
+    private final int virtualNodes;
+    private final byte[] secret;
+    private volatile HashRing ring;
+
+    @Autowired
+    public ClusterMembership(FundConfiguration fundConfiguration) {
+        this.self = normalize(fundConfiguration.getClusterSelf());
+        this.virtualNodes = fundConfiguration.getClusterVirtualNodes();
+        String clusterSecret = fundConfiguration.getClusterSecret();
+        this.secret = clusterSecret == null ? new byte[0] : clusterSecret.getBytes(StandardCharsets.UTF_8);
+        this.ring = newRing(fundConfiguration.getClusterNodes());
+    }
+
+    /**
+     * @return The base URL of this node.
+     */
+    public String getSelf() {
+        return self;
+    }
+
+    /**
+     * @return The current ring.
+     */
+    public HashRing getRing() {
+        return ring;
+    }
+
+    /**
+     * @return Whether customers are partitioned across more than one node.
+     */
+    public boolean isDistributed() {
+        return isDistributed(ring);
+    }
+
+    /**
+     * @param customerId The customer ID.
+     * @return The base URL of the node owning the customer.
+     */
+    public String ownerOf(long customerId) {
+        return ownerOf(ring, customerId);
+    }
+
+    /**
+     * @param customerId The customer ID.
+     * @return Whether this node owns the customer.
+     */
+    public boolean isLocal(long customerId) {
+        return self.equals(ownerOf(customerId));
+    }
+
+    /**
+     * Checks the secret sent with a request from another node, in constant time so that the secret cannot be
+     * guessed from how long the check takes.
+     *
+     * @param token The secret sent with the request, {@code null} if there is none.
+     * @return Whether the request comes from a node of the cluster; never when no secret is configured.
+     */
+    public boolean isPeer(String token) {
+        return secret.length > 0 && token != null
+                && MessageDigest.isEqual(secret, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Looks up the owner of every load of a batch.
+     *
+     * @param funds The batch.
+     * @return The base URL of the owner of each load, indexed like the batch, {@code null} for the loads this node
+     * owns; or {@code null} if this node owns every load.
+     */
+    public String[] remoteOwners(FundBatch funds) {
+        HashRing current = ring;
+        if (!isDistributed(current)) {
+            return null;
+        }
+        String[] owners = null;
+        for (int i = 0; i < funds.size(); i++) {
+            String owner = current.ownerOf(funds.getCustomerId(i));
+            if (!self.equals(owner)) {
+                if (owners == null) {
+                    owners = new String[funds.size()];
+                }
+                owners[i] = owner;
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * Replaces the nodes of the cluster.
+     *
+     * @param newRing The ring of the new nodes, as built by {@link #newRing(List)}.
+     * @return The ring before the change.
+     */
+    synchronized HashRing setRing(HashRing newRing) {
+        HashRing previous = ring;
+        ring = newRing;
+        log.info("Cluster nodes changed from {} to {}.", previous.getNodes(), ring.getNodes());
+        return previous;
+    }
+
+    /**
+     * @return The base URL of the node owning the customer on the given ring.
+     */
+    String ownerOf(HashRing ring, long customerId) {
+        return isDistributed(ring) ? ring.ownerOf(customerId) : self;
+    }
+
+    private static boolean isDistributed(HashRing ring) {
+        return ring.getNodes().size() > 1;
+    }
+
+    /**
+     * @param nodes The base URLs of the nodes, this node included.
+     * @return A ring of the nodes.
+     * @throws IllegalArgumentException If there are several nodes and this node is not one of them.
+     */
+    HashRing newRing(List<String> nodes) {
+        List<String> normalized = nodes.stream().map(ClusterMembership::normalize).filter(node -> !node.isEmpty())
+                .toList();
+        HashRing newRing = HashRing.of(normalized, virtualNodes);
+        if (isDistributed(newRing) && !newRing.getNodes().contains(self)) {
+            throw new IllegalArgumentException("fund.clusterSelf " + self + " is not one of the cluster nodes "
+                    + newRing.getNodes());
+        }
+        return newRing;
+    }
+
+    /**
+     * @return The base URL without surrounding blanks and trailing slashes, so equal URLs name the same node.
+     */
+    private static String normalize(String node) {
+        String trimmed = node == null ? "" : node.trim();
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+}
@@ -0,0 +1,205 @@
+package com.tryvault.task.cluster;
+
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.parser.FundParser;
+import com.tryvault.task.repository.FundStore;
+import com.tryvault.task.service.CustomerStateRegistry;
+import com.tryvault.task.service.DuplicateLoadIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Rebalances customers when the nodes of the cluster change. Every node is told the new nodes; each one then sends
+ * the stored funds of the customers it owned and no longer owns to their new owner, which saves the funds it does not
+ * have yet, and only then switches to the new nodes. The consistent-hash ring keeps the moved customers to about one
+ * in every node count.
+ *
+ * Loads of the moved customers keep being decided by the old owner until their funds have arrived, so the new owner
+ * never decides a load without the customer's history. The funds the old owner saved while handing off are sent
+ * once it has switched, in a second pass skipping the funds sent already. The old owner keeps its copy of the moved
+ * funds, so a customer that comes back later is only sent the funds it missed. Another node that has switched
+ * already forwards the loads of a moved customer to the new owner before its funds arrive, so nodes should still be
+ * changed while no upload runs.
+ */
+@Service
+public class ClusterService {
+    private static final Logger log = LoggerFactory.getLogger(ClusterService.class);
+
+    private final ClusterMembership membership;
+    private final ClusterClient clusterClient;
+    private final FundStore fundStore;
+    private final DuplicateLoadIndex duplicateLoadIndex;
+    private final CustomerStateRegistry customerStates;
+    private final FundParser fundParser;
+    private final FundConfiguration fundConfiguration;
+
+    @Autowired
+    public ClusterService(ClusterMembership membership, ClusterClient clusterClient, FundStore fundStore,
+                          DuplicateLoadIndex duplicateLoadIndex, CustomerStateRegistry customerStates,
+                          FundParser fundParser, FundConfiguration fundConfiguration) {
+        this.membership = membership;
+        this.clusterClient = clusterClient;
+        this.fundStore = fundStore;
+        this.duplicateLoadIndex = duplicateLoadIndex;
+        this.customerStates = customerStates;
+        this.fundParser = fundParser;
+        this.fundConfiguration = fundConfiguration;
+    }
+
+    /**
+     * @return The base URLs of the nodes of the cluster, sorted.
+     */
+    public List<String> getNodes() {
+        return membership.getRing().getNodes();
+    }
+
+    /**
+     * Hands the customers this node no longer owns with the given nodes off to their new owners, in batches of
+     * {@code fund.chunkSize} funds, then replaces the nodes of the cluster. If a hand-off fails, the nodes are left
+     * unchanged.
+     *
+     * @param nodes The base URLs of the nodes, this node included.
+     * @return The number of customers handed off.
+     * @throws IllegalArgumentException If this node is not one of the nodes.
+     */
+    public synchronized int updateNodes(List<String> nodes) {
+        HashRing previous = membership.getRing();
+        HashRing ring = membership.newRing(nodes);
+        String self = membership.getSelf();
+
+        Set<Long> moved = new HashSet<>();
+        fundStore.forEachLoadId((customerId, id, epochSecond) -> {
+            if (self.equals(membership.ownerOf(previous, customerId))
+                    && !self.equals(membership.ownerOf(ring, customerId))) {
+                moved.add(customerId);
+            }
+        });
+        if (moved.isEmpty()) {
+            membership.setRing(ring);
+            return 0;
+        }
+
+        // IDs of the funds sent, by customer
+        Map<Long, Set<Long>> sent = new HashMap<>();
+        long count = handOff(ring, moved, sent);
+        // Loads of the moved customers are forwarded from now on, so their state here is no longer updated
+        membership.setRing(ring);
+        moved.forEach(customerStates::remove);
+        count += handOff(ring, moved, sent);
+        log.info("{} customers with {} stored funds handed off.", moved.size(), count);
+        return moved.size();
+    }
+
+    /**
+     * Sends the stored funds of the moved customers to their owners on the ring, except the ones sent already.
+     *
+     * @param sent The IDs of the funds sent already by customer, which the funds sent now are added to.
+     * @return The number of funds sent.
+     */
+    private long handOff(HashRing ring, Set<Long> moved, Map<Long, Set<Long>> sent) {
+        int batchSize = fundConfiguration.getChunkSize();
+        Map<String, FundBatch> handoffs = new HashMap<>();
+        long[] count = new long[1];
+        fundStore.forEachLoad(moved, (id, customerId, amountCents, epochSecond) -> {
+            if (!sent.computeIfAbsent(customerId, customer -> new HashSet<>()).add(id)) {
+                return;
+            }
+            String owner = membership.ownerOf(ring, customerId);
+            FundBatch funds = handoffs.computeIfAbsent(owner, node -> new FundBatch(batchSize));
+            funds.add(id, customerId, amountCents, epochSecond);
+            count[0]++;
+            if (funds.size() >= batchSize) {
+                clusterClient.handOff(owner, funds, ring.getNodes());
+                funds.clear();
+            }
+        });
+        handoffs.forEach((owner, funds) -> {
+            if (!funds.isEmpty()) {
+                clusterClient.handOff(owner, funds, ring.getNodes());
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Saves the funds of customers handed off to this node by their previous owner, skipping the funds this node
+     * already has. The IDs of the saved funds are added to the {@link DuplicateLoadIndex} once their batch is
+     * inserted, so a failed insert leaves no ID behind for funds that were never saved. Funds of customers this node owns neither on its own ring nor on the sender's are skipped too, so
+     * a node is never left with history it does not decide loads against; the sender's ring lets the funds in when
+     * this node is not told the new nodes yet. The state of the customers is dropped, so it is rebuilt from the
+     * stored funds when they are next seen.
+     *
+     * @param input       The stream of funds, in the format of the input file.
+     * @param senderNodes The nodes the sender moved the customers with, {@code null} if it did not tell.
+     * @throws IOException              If the stream cannot be read.
+     * @throws IllegalArgumentException If this node is not one of the sender's nodes.
+     */
+    public void importFunds(InputStream input, List<String> senderNodes) throws IOException {
+        String self = membership.getSelf();
+        HashRing ring = membership.getRing();
+        HashRing senderRing = senderNodes == null ? ring : membership.newRing(senderNodes);
+        int batchSize = fundConfiguration.getChunkSize();
+        FundBatch funds = new FundBatch(batchSize);
+        // IDs of the funds of the batch, by customer, so a fund sent twice is saved once
+        Map<Long, Set<Long>> batchIds = new HashMap<>();
+        Set<Long> customerIds = new HashSet<>();
+        long[] count = new long[1];
+        long[] notOwned = new long[1];
+        fundParser.parse(input, (id, customerId, amountCents, epochSecond) -> {
+            if (!self.equals(membership.ownerOf(ring, customerId))
+                    && !self.equals(membership.ownerOf(senderRing, customerId))) {
+                notOwned[0]++;
+                return;
+            }
+            customerIds.add(customerId);
+            if (duplicateLoadIndex.contains(customerId, id)
+                    || !batchIds.computeIfAbsent(customerId, customer -> new HashSet<>()).add(id)) {
+                return;
+            }
+            funds.add(id, customerId, amountCents, epochSecond);
+            count[0]++;
+            if (funds.size() >= batchSize) {
+                insert(funds);
+                batchIds.clear();
+            }
+        });
+        if (!funds.isEmpty()) {
+            insert(funds);
+        }
+        customerIds.forEach(customerStates::remove);
+        if (notOwned[0] > 0) {
+            log.warn("{} handed off funds of customers owned by other nodes skipped.", notOwned[0]);
+        }
+        log.info("{} funds of {} customers taken over.", count[0], customerIds.size());
+    }
+
+    /**
+     * Saves the batch, then adds the IDs of its funds to the {@link DuplicateLoadIndex}, and clears it.
+     */
+    private void insert(FundBatch funds) {
+        fundStore.insertAll(funds);
+        for (int i = 0; i < funds.size(); i++) {
+            long customerId = funds.getCustomerId(i);
+            Lock lock = customerStates.lockFor(customerId);
+            lock.lock();
+            try {
+                duplicateLoadIndex.add(customerId, funds.getId(i), funds.getEpochSecond(i));
+            } finally {
+                lock.unlock();
+            }
+        }
+        funds.clear();
+    }
+}
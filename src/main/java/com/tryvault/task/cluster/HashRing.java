@@ -0,0 +1,108 @@
+package com.tryvault.task.cluster;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent-hash ring assigning each customer to one node of the cluster. Every node is placed at
+ * {@code virtualNodes} points of the ring, and a customer belongs to the node of the first point at or after the
+ * customer's hash, wrapping around. Adding or removing a node only moves the customers between that node and the
+ * others, about one in every node count, instead of reshuffling every customer.
+ *
+ * The ring is immutable; a membership change builds a new one. Points are kept in a sorted primitive array and found
+ * by binary search.
+ */
+public final class HashRing {
+
+    private final List<String> nodes;
+    private final long[] points;
+    // The node index of each point
+    private final int[] owners;
+
+    private HashRing(List<String> nodes, long[] points, int[] owners) {
+        this.nodes = nodes;
+        this.points = points;
+        this.owners = owners;
+    }
+
+    /**
+     * @param nodes        The base URLs of the nodes, in any order; the ring does not depend on the order.
+     * @param virtualNodes The number of points of each node.
+     * @return The ring of the nodes.
+     */
+    public static HashRing of(List<String> nodes, int virtualNodes) {
+        List<String> distinctNodes = nodes.stream().distinct().sorted().toList();
+        int pointsPerNode = Math.max(1, virtualNodes);
+        int size = distinctNodes.size() * pointsPerNode;
+        long[] hashes = new long[size];
+        int[] nodeOfHash = new int[size];
+        Integer[] order = new Integer[size];
+        for (int node = 0; node < distinctNodes.size(); node++) {
+            for (int i = 0; i < pointsPerNode; i++) {
+                int point = node * pointsPerNode + i;
+                hashes[point] = pointOf(distinctNodes.get(node), i);
+                nodeOfHash[point] = node;
+                order[point] = point;
+            }
+        }
+        // Equal points, which are very unlikely, are ordered by node so every node builds the same ring
+        Arrays.sort(order, (a, b) -> hashes[a] != hashes[b] ? Long.compare(hashes[a], hashes[b])
+                : Integer.compare(nodeOfHash[a], nodeOfHash[b]));
+        long[] points = new long[size];
+        int[] owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = nodeOfHash[order[i]];
+        }
+        return new HashRing(distinctNodes, points, owners);
+    }
+
+    /**
+     * @param customerId The customer ID.
+     * @return The base URL of the node owning the customer, or {@code null} if the ring has no node.
+     */
+    public String ownerOf(long customerId) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash(customerId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return nodes.get(owners[index == points.length ? 0 : index]);
+    }
+
+    /**
+     * @return The base URLs of the nodes, sorted.
+     */
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Mixes the bits of a customer ID (the SplitMix64 finalizer), so sequential IDs spread over the whole ring.
+     */
+    static long hash(long customerId) {
+        long z = customerId + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return The position of a node's point: the first 8 bytes of the SHA-256 hash of the node and point number.
+     */
+    private static long pointOf(String node, int i) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((node + "#" + i).getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
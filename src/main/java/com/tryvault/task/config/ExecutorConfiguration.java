@@ -0,0 +1,55 @@
+package com.tryvault.task.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfiguration {
+
+    /**
+     * Worker pool validating the customer shards of a batch in parallel.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService fundValidationExecutor(FundConfiguration fundConfiguration) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(fundConfiguration.getEffectiveParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "fund-validation-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Workers saving the validated chunks of uploads. The chunks of one upload are saved one at a time, in order,
+     * so each worker serves one upload at a time.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService fundPersistExecutor(FundConfiguration fundConfiguration) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(fundConfiguration.getEffectiveParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "fund-persist-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Workers running load jobs, one job at a time each, sized by {@code fund.jobWorkers}. The jobs waiting for a
+     * worker are bounded by the job service, which refuses submissions once {@code fund.jobQueueCapacity} jobs are
+     * waiting. The workers are platform threads: the build targets Java 17, which has no virtual threads, and jobs
+     * are CPU-bound, so the worker count is what limits them either way.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService fundJobExecutor(FundConfiguration fundConfiguration) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(fundConfiguration.getJobWorkers(), runnable -> {
+            Thread thread = new Thread(runnable, "fund-job-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -1,23 +1,154 @@
 package com.tryvault.task.config;
 
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.validator.VelocityRule;
 import lombok.Getter;
 import lombok.Setter;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 
 @Configuration
+@ConfigurationProperties(prefix = "fund")
 @Getter
 @Setter
 public class FundConfiguration {
 
-    @Value("${fund.maxDailyLoadAmount}")
-    private int maxDailyLoadAmount;
+    // Number of lines parsed, validated and saved together
+    private int chunkSize = 1000;
+
+    // Number of customer shards validated in parallel, 0 for one per available processor
+    private int parallelism;
+
+    // Number of validated chunks of an upload that can wait to be saved while the next chunks are parsed and
+    // validated; reading the upload blocks beyond that
+    private int persistQueueCapacity = 2;
+
+    // Number of insert statements sent to the database in one JDBC batch
+    private int insertBatchSize = 500;
+
+    // Number of accepted funds inserted per transaction
+    private int insertCommitSize = 10000;
+
+    // Maximum number of customers whose validation state is cached in memory
+    private int customerCacheSize = 100000;
+
+    // Time after which a customer that was not used is dropped from the cache
+    private Duration customerCacheTtl = Duration.ofHours(1);
+
+    // Number of accepted loads the duplicate load index is sized for, per retention period of the store when it has
+    // one, and the false positive rate of its Bloom filters at that size
+    private long dedupExpectedLoads = 10_000_000;
+    private double dedupFalsePositiveRate = 0.01;
+
+    // Number of locks serializing the loads of a customer across concurrent requests, rounded up to a power of two
+    private int lockStripes = 1024;
+
+    // Number of customers whose history is read by one query; the last query of a fetch is padded to the same size
+    private int historyQueryBatchSize = 1000;
+
+    // Time accepted funds are kept in the Fund table, behind the latest stored load. Zero keeps every fund; a
+    // shorter time than the longest velocity window is raised to it
+    private Duration jdbcRetention = Duration.ZERO;
+
+    // How far ahead of the clock the latest stored load may move the retention cutoff of the stores; a load dated
+    // further ahead counts as this far ahead, so it cannot expire the funds of the present
+    private Duration retentionMaxSkew = Duration.ofDays(1);
+
+    // Storage engine for accepted funds: "jdbc" (database, default) or "journal" (memory-mapped journal)
+    private String storage = "jdbc";
+
+    // Directory holding the journal segment files
+    private String journalDirectory = "data/journal";
+
+    // Size of one journal segment file
+    private DataSize journalSegmentSize = DataSize.ofMegabytes(64);
+
+    // Number of appended funds after which the journal is forced to disk, in addition to the end of every batch
+    private int journalFsyncInterval = 10000;
+
+    // Longest fund line read by the streaming parser; longer lines are skipped as malformed
+    private DataSize maxLineSize = DataSize.ofKilobytes(64);
+
+    // Whether plain input files are memory-mapped and parsed in parallel, in regions of mappedRegionSize bytes
+    private boolean mappedInput = true;
+    private DataSize mappedRegionSize = DataSize.ofMegabytes(16);
+
+    // Uploads decided while the client waits: at most uploadConcurrency at a time, holding at most
+    // uploadMaxInFlightBytes of buffered uploads, with up to uploadQueueCapacity more waiting up to uploadQueueTimeout
+    // and at most uploadsPerClient running or waiting per client; further uploads are refused
+    private int uploadConcurrency = 4;
+    private DataSize uploadMaxInFlightBytes = DataSize.ofMegabytes(256);
+    private int uploadQueueCapacity = 16;
+    private Duration uploadQueueTimeout = Duration.ofSeconds(10);
+    private int uploadsPerClient = 2;
+
+    // Load jobs, decided in the background: at most jobWorkers at a time, each on its own platform thread, with up to
+    // jobQueueCapacity more waiting for a worker; further submissions are refused
+    private int jobWorkers = 2;
+    private int jobQueueCapacity = 16;
+
+    // Addresses of the proxies trusted to name the client of an upload in the X-Client-Id header; uploads from any
+    // other address are counted against that address, or against the authenticated user
+    private List<String> uploadTrustedProxies = new ArrayList<>();
+
+    // Number of results of completed uploads kept by the hash of the upload's content, so a retried upload is
+    // answered with the first run's results; least recently used uploads are evicted first, 0 disables the cache
+    private int resultCacheSize = 1_000_000;
+
+    // Directory holding the uploaded input and the results of load jobs
+    private String jobDirectory = "data/jobs";
+
+    // Time a finished load job and its results are kept
+    private Duration jobRetention = Duration.ofHours(1);
+
+    // Base URLs of the nodes customers are partitioned across, this node included, and the base URL of this node
+    // among them; with fewer than two nodes every customer is decided locally
+    private List<String> clusterNodes = new ArrayList<>();
+    private String clusterSelf = "";
+
+    // Points of each node on the consistent-hash ring; more points spread customers more evenly across the nodes
+    private int clusterVirtualNodes = 128;
+
+    // Time to wait for another node to decide forwarded loads or take over the history of its new customers
+    private Duration clusterRequestTimeout = Duration.ofSeconds(60);
+
+    // Secret shared by the nodes, sent with every request they send each other; the cluster endpoints that change
+    // state refuse requests without it, and every such request when it is empty
+    private String clusterSecret = "";
+
+    // Time zone whose hours, days, weeks and months the velocity rules apply to, and the first day of a week
+    private ZoneId zone = ZoneOffset.UTC;
+    private DayOfWeek weekStart = DayOfWeek.SUNDAY;
 
-    @Value("${fund.maxWeeklyLoadAmount}")
-    private int maxWeeklyLoadAmount;
+    private List<VelocityRule> rules = new ArrayList<>();
 
-    @Value("${fund.maxDailyLoad}")
-    private int maxDailyLoad;
+    /**
+     * @return The configured parallelism, or the number of available processors if it is not set.
+     */
+    public int getEffectiveParallelism() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
 
+    /**
+     * @return How far back a customer's history is needed to evaluate the configured velocity rules, which is the
+     * longest window of any rule, or one week if no rule is configured.
+     */
+    public Duration getHistoryRetention() {
+        return rules.stream()
+                .map(VelocityRule::getWindow)
+                .filter(Objects::nonNull)
+                .map(VelocityWindow::getMaxLength)
+                .max(Duration::compareTo)
+                .orElse(VelocityWindow.WEEK.getMaxLength());
+    }
 }
@@ -2,6 +2,7 @@ package com.tryvault.task.entity;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.tryvault.task.model.FundValues;
 import jakarta.persistence.Embeddable;
 import jakarta.persistence.EmbeddedId;
 import jakarta.persistence.Entity;
@@ -25,12 +26,33 @@ public class Fund {
                               @JsonProperty("customer_id") String customerId,
                               @JsonProperty("load_amount") String loadAmount,
                               @JsonProperty("time") LocalDateTime time) {
+        // A missing field fails the conversion, rather than leaving a fund that cannot be decided
+        requireField(id, "id");
+        requireField(customerId, "customer_id");
+        requireField(loadAmount, "load_amount");
+        requireField(time, "time");
+        if (!FundValues.isSupported(time)) {
+            throw new IllegalArgumentException("time must be within years 0000 to " + FundValues.MAX_YEAR);
+        }
+        // Amounts are written with a leading dollar sign, e.g. "$123.45"
+        String amount = loadAmount.startsWith("$") ? loadAmount.substring(1) : loadAmount;
+        return create(Long.parseLong(id), Long.parseLong(customerId), Double.parseDouble(amount), time);
+    }
+
+    public static Fund create(long id, long customerId, double loadAmount, LocalDateTime time) {
         Fund fund = new Fund();
-        fund.setFundId(new FundId(Long.parseLong(id), Long.parseLong(customerId)));
-        fund.setLoadAmount(Double.parseDouble(loadAmount));
+        fund.setFundId(new FundId(id, customerId));
+        fund.setLoadAmount(loadAmount);
         fund.setTime(time);
         return fund;
     }
+
+    private static void requireField(Object value, String name) {
+        if (value == null) {
+            throw new IllegalArgumentException(name + " is required");
+        }
+    }
+
     @EmbeddedId
     private FundId fundId;
 
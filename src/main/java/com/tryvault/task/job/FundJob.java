@@ -0,0 +1,58 @@
+package com.tryvault.task.job;
+
+import com.tryvault.task.service.LoadProgress;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * A fund load upload processed in the background. The uploaded input is kept in a file until the job finishes, and
+ * the decisions are written to a results file in input order. The checkpoint file holds the number of decisions
+ * committed so far, from which the job is resumed if the service stops before it finishes.
+ */
+@Getter
+public class FundJob {
+
+    private final String id;
+    private final Path input;
+    private final Path results;
+    private final Path checkpoint;
+    private final LoadProgress progress;
+    private final Instant submittedAt = Instant.now();
+    private volatile FundJobStatus status = FundJobStatus.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    FundJob(String id, Path input, Path results, Path checkpoint, LoadProgress progress) {
+        this.id = id;
+        this.input = input;
+        this.results = results;
+        this.checkpoint = checkpoint;
+        this.progress = progress;
+    }
+
+    void start() {
+        startedAt = Instant.now();
+        status = FundJobStatus.RUNNING;
+    }
+
+    void complete() {
+        finishedAt = Instant.now();
+        status = FundJobStatus.COMPLETED;
+    }
+
+    void fail(String message) {
+        error = message;
+        finishedAt = Instant.now();
+        status = FundJobStatus.FAILED;
+    }
+
+    /**
+     * @return The number of decisions in the results file, final once the job is completed.
+     */
+    public long getResultCount() {
+        return progress.getCommitted();
+    }
+}
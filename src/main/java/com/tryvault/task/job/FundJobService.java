@@ -0,0 +1,318 @@
+package com.tryvault.task.job;
+
+import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.service.FundService;
+import com.tryvault.task.service.LoadProgress;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs fund load uploads as background jobs on the job executor.
+ *
+ * A submitted upload is first copied to the job directory, so the request returns as soon as the body is received.
+ * At most {@code fund.jobWorkers} jobs run and {@code fund.jobQueueCapacity} wait at a time; submissions beyond that
+ * are refused. Decisions are written to the job's results file as fixed-size records, so any page of them can be
+ * read without scanning the file. Finished jobs are forgotten {@code fund.jobRetention} after they finished, and
+ * finished jobs are not kept across restarts.
+ *
+ * A job checkpoints after every chunk whose funds are committed: its results are forced to disk and the number of
+ * committed loads is written to its checkpoint file. A job interrupted by a stop or crash of the service is resumed
+ * at the next startup, under the same ID. Its results beyond the checkpoint are dropped and its input is read from
+ * the first load after the checkpoint. A crash between the commit of a chunk and its checkpoint leaves that one chunk
+ * saved beyond the checkpoint; its loads that are already stored are reported as accepted, as they were saved, rather
+ * than decided again and rejected as duplicates.
+ */
+@Service
+public class FundJobService {
+    private static final Logger log = LoggerFactory.getLogger(FundJobService.class);
+
+    // Fund ID, customer ID and decision of one result
+    static final int RESULT_SIZE = Long.BYTES + Long.BYTES + 1;
+    private static final String INPUT_SUFFIX = ".input";
+    private static final String RESULTS_SUFFIX = ".results";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    private final FundService fundService;
+    private final FundConfiguration fundConfiguration;
+    private final ExecutorService jobExecutor;
+    private final Path directory;
+    private final Semaphore slots;
+    private final Map<String, FundJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FundJobService(FundService fundService, FundConfiguration fundConfiguration,
+                          @Qualifier("fundJobExecutor") ExecutorService jobExecutor) {
+        this.fundService = fundService;
+        this.fundConfiguration = fundConfiguration;
+        this.jobExecutor = jobExecutor;
+        this.directory = Path.of(fundConfiguration.getJobDirectory());
+        this.slots = new Semaphore(fundConfiguration.getJobWorkers() + fundConfiguration.getJobQueueCapacity());
+    }
+
+    /**
+     * Creates the job directory, resumes the jobs an earlier run was interrupted in and deletes the files of the
+     * other jobs of that run.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<String> interrupted = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(CHECKPOINT_SUFFIX)) {
+                    String id = name.substring(0, name.length() - CHECKPOINT_SUFFIX.length());
+                    if (Files.exists(directory.resolve(id + INPUT_SUFFIX))) {
+                        interrupted.add(id);
+                    }
+                }
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (interrupted.stream().noneMatch(id -> name.startsWith(id + "."))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        for (String id : interrupted) {
+            resume(id);
+        }
+    }
+
+    /**
+     * Copies the upload to the job directory and queues it for processing.
+     *
+     * @param input The stream containing fund loading information in JSON format, one fund per line.
+     * @return The queued job.
+     * @throws RejectedExecutionException If the job queue is full.
+     * @throws IOException                If the upload cannot be copied.
+     */
+    public FundJob submit(InputStream input) throws IOException {
+        removeExpiredJobs();
+        if (!slots.tryAcquire()) {
+            throw new RejectedExecutionException("The load job queue is full");
+        }
+        String id = UUID.randomUUID().toString();
+        FundJob job = newJob(id, new LoadProgress());
+        try {
+            Files.copy(input, job.getInput());
+            // The checkpoint marks the input as complete, so the job can be resumed from now on
+            try (FileChannel checkpoint = FileChannel.open(job.getCheckpoint(), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                writeCheckpoint(checkpoint, 0);
+            }
+            jobs.put(id, job);
+            jobExecutor.execute(() -> run(job));
+        } catch (IOException | RuntimeException e) {
+            jobs.remove(id);
+            deleteFiles(job);
+            slots.release();
+            throw e;
+        }
+        log.info("Load job {} queued.", id);
+        return job;
+    }
+
+    public Optional<FundJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Reads a page of the decisions of a completed job.
+     *
+     * @param job    The completed job.
+     * @param offset The index of the first decision, in input order.
+     * @param limit  The maximum number of decisions to read.
+     * @return The decisions, empty if the offset is past the last one.
+     * @throws IOException If the results file cannot be read.
+     */
+    public List<FundLoadResponse> readResults(FundJob job, long offset, int limit) throws IOException {
+        checkCompleted(job);
+        int count = (int) Math.max(0, Math.min(limit, job.getResultCount() - offset));
+        List<FundLoadResponse> responses = new ArrayList<>(count);
+        if (count == 0) {
+            return responses;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(count * RESULT_SIZE);
+        try (FileChannel channel = FileChannel.open(job.getResults(), StandardOpenOption.READ)) {
+            long position = offset * RESULT_SIZE;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        }
+        buffer.flip();
+        while (buffer.remaining() >= RESULT_SIZE) {
+            responses.add(new FundLoadResponse(Long.toString(buffer.getLong()), Long.toString(buffer.getLong()),
+                    buffer.get() != 0));
+        }
+        return responses;
+    }
+
+    /**
+     * Passes every decision of a completed job to the consumer, in input order.
+     *
+     * @param job      The completed job.
+     * @param consumer The consumer receiving the decisions.
+     * @throws IOException If the results file cannot be read.
+     */
+    public void streamResults(FundJob job, Consumer<FundLoadResponse> consumer) throws IOException {
+        checkCompleted(job);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(job.getResults())))) {
+            for (long i = 0; i < job.getResultCount(); i++) {
+                consumer.accept(new FundLoadResponse(Long.toString(input.readLong()), Long.toString(input.readLong()),
+                        input.readBoolean()));
+            }
+        }
+    }
+
+    private FundJob newJob(String id, LoadProgress progress) {
+        return new FundJob(id, directory.resolve(id + INPUT_SUFFIX), directory.resolve(id + RESULTS_SUFFIX),
+                directory.resolve(id + CHECKPOINT_SUFFIX), progress);
+    }
+
+    /**
+     * Queues an interrupted job again, to continue from its checkpoint.
+     */
+    private void resume(String id) throws IOException {
+        long committed;
+        Path checkpointFile = directory.resolve(id + CHECKPOINT_SUFFIX);
+        try (DataInputStream checkpoint = new DataInputStream(Files.newInputStream(checkpointFile))) {
+            committed = checkpoint.readLong();
+        } catch (EOFException e) {
+            committed = 0;
+        }
+        FundJob job = newJob(id, new LoadProgress(committed));
+        if (!slots.tryAcquire()) {
+            log.warn("Load job {} dropped, the load job queue is full.", id);
+            deleteFiles(job);
+            return;
+        }
+        jobs.put(id, job);
+        jobExecutor.execute(() -> run(job));
+        log.info("Load job {} resumed after {} decisions.", id, committed);
+    }
+
+    private void run(FundJob job) {
+        job.start();
+        log.info("Load job {} started.", job.getId());
+        long resumeFrom = job.getProgress().getResumeFrom();
+        try (FileChannel resultsChannel = FileChannel.open(job.getResults(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+             FileChannel checkpoint = FileChannel.open(job.getCheckpoint(), StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE)) {
+            // Drop the results written after the checkpoint by an interrupted run
+            resultsChannel.truncate(resumeFrom * RESULT_SIZE);
+            resultsChannel.position(resumeFrom * RESULT_SIZE);
+            DataOutputStream results = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(resultsChannel)));
+            job.getProgress().setCheckpointListener(committed -> {
+                try {
+                    results.flush();
+                    resultsChannel.force(false);
+                    writeCheckpoint(checkpoint, committed);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            fundService.loadFunds(job.getInput(), response -> writeResult(results, response), job.getProgress());
+            results.flush();
+            job.complete();
+            log.info("Load job {} completed with {} decisions.", job.getId(), job.getResultCount());
+        } catch (IOException | RuntimeException e) {
+            log.error("Load job {} failed. error: {}", job.getId(), e.getMessage(), e);
+            job.fail(e.getMessage());
+        } finally {
+            // A job stopped by the shutdown of the service keeps its input and checkpoint, to be resumed
+            if (!jobExecutor.isShutdown()) {
+                try {
+                    Files.deleteIfExists(job.getInput());
+                    Files.deleteIfExists(job.getCheckpoint());
+                } catch (IOException e) {
+                    log.warn("Unable to delete the input of load job {}. error: {}", job.getId(), e.getMessage());
+                }
+            }
+            slots.release();
+        }
+    }
+
+    private static void writeCheckpoint(FileChannel checkpoint, long committed) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(committed).flip();
+        while (buffer.hasRemaining()) {
+            checkpoint.write(buffer, buffer.position());
+        }
+        checkpoint.force(false);
+    }
+
+    private static void writeResult(DataOutputStream results, FundLoadResponse response) {
+        try {
+            results.writeLong(Long.parseLong(response.getId()));
+            results.writeLong(Long.parseLong(response.getCustomerId()));
+            results.writeBoolean(response.isAccepted());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void checkCompleted(FundJob job) {
+        if (job.getStatus() != FundJobStatus.COMPLETED) {
+            throw new IllegalStateException("Load job " + job.getId() + " is " + job.getStatus());
+        }
+    }
+
+    private void removeExpiredJobs() {
+        Instant expiry = Instant.now().minus(fundConfiguration.getJobRetention());
+        jobs.values().removeIf(job -> {
+            boolean expired = job.getFinishedAt() != null && job.getFinishedAt().isBefore(expiry);
+            if (expired) {
+                deleteFiles(job);
+            }
+            return expired;
+        });
+    }
+
+    private static void deleteFiles(FundJob job) {
+        try {
+            Files.deleteIfExists(job.getInput());
+            Files.deleteIfExists(job.getResults());
+            Files.deleteIfExists(job.getCheckpoint());
+        } catch (IOException e) {
+            log.warn("Unable to delete the files of load job {}. error: {}", job.getId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.tryvault.task.job;
+
+public enum FundJobStatus {
+    QUEUED, RUNNING, COMPLETED, FAILED
+}
@@ -0,0 +1,285 @@
+package com.tryvault.task.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of accepted funds, written to fixed-size memory-mapped segment files.
+ *
+ * Every segment starts with a 16 byte header (magic, version, record size) followed by fixed-size records of
+ * id, customer ID, amount in cents and epoch second, each protected by a CRC32C checksum. A record whose checksum
+ * does not match marks the end of the written data, so a record torn by a crash is discarded on the next
+ * {@link #open open}, and appending resumes in its place.
+ *
+ * Appends are only written to the mapped memory; they reach the disk on {@link #sync()}, which callers invoke once
+ * per batch, or automatically every {@code fsyncInterval} appends. When the active segment is full it is synced and
+ * a new one is started. Segments whose loads are all older than a cutoff can be dropped with
+ * {@link #deleteSegmentsBefore(long)}.
+ *
+ * This class is not thread-safe.
+ */
+public class FundJournal implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(FundJournal.class);
+
+    static final long MAGIC = 0x46554E444A524E4CL; // "FUNDJRNL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int PAYLOAD_SIZE = 4 * Long.BYTES;
+    static final int RECORD_SIZE = PAYLOAD_SIZE + 2 * Integer.BYTES;
+    private static final int RECORD_MARKER = 0x52454344; // "RECD"
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("fund-journal-(\\d{12})\\.log");
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int fsyncInterval;
+    private final Deque<Segment> closedSegments = new ArrayDeque<>();
+    private final ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_SIZE);
+    private final CRC32C crc = new CRC32C();
+
+    private Segment active;
+    private int unsyncedRecords;
+
+    private FundJournal(Path directory, long segmentSize, int fsyncInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncInterval = fsyncInterval;
+    }
+
+    /**
+     * Opens the journal in the directory, replaying every record written so far, oldest first.
+     *
+     * @param directory     The directory holding the segment files; it is created if missing.
+     * @param segmentSize   The size in bytes of new segment files.
+     * @param fsyncInterval The number of appends after which the journal is synced even without {@link #sync()}.
+     * @param replay        The consumer receiving the records already in the journal.
+     * @return The journal, ready to append after the last intact record.
+     * @throws IOException If the segment files cannot be read or created.
+     */
+    public static FundJournal open(Path directory, long segmentSize, int fsyncInterval,
+                                   Consumer<JournalRecord> replay) throws IOException {
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal segment size must hold at least one record and be below 2GB: "
+                    + segmentSize);
+        }
+        Files.createDirectories(directory);
+        FundJournal journal = new FundJournal(directory, segmentSize, fsyncInterval);
+
+        List<Segment> segments = journal.listSegments();
+        for (Segment segment : segments) {
+            journal.replay(segment, replay);
+        }
+        if (segments.isEmpty()) {
+            journal.active = journal.createSegment(1);
+        } else {
+            journal.active = segments.remove(segments.size() - 1);
+            journal.closedSegments.addAll(segments);
+            journal.resume(journal.active);
+        }
+        return journal;
+    }
+
+    /**
+     * Appends a record to the active segment, rolling over to a new segment when it is full.
+     *
+     * @param record The record to append.
+     * @throws IOException If a new segment cannot be created.
+     */
+    public void append(JournalRecord record) throws IOException {
+        if (active.position + RECORD_SIZE > active.buffer.capacity()) {
+            rollover();
+        }
+        payload.clear();
+        payload.putLong(record.id())
+                .putLong(record.customerId())
+                .putLong(record.amountCents())
+                .putLong(record.epochSecond());
+        crc.reset();
+        crc.update(payload.array(), 0, PAYLOAD_SIZE);
+
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.position;
+        buffer.put(position, payload.array(), 0, PAYLOAD_SIZE);
+        buffer.putInt(position + PAYLOAD_SIZE, (int) crc.getValue());
+        buffer.putInt(position + PAYLOAD_SIZE + Integer.BYTES, RECORD_MARKER);
+        active.position = position + RECORD_SIZE;
+        active.maxEpochSecond = Math.max(active.maxEpochSecond, record.epochSecond());
+
+        if (++unsyncedRecords >= fsyncInterval) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces the records appended since the last sync to disk.
+     */
+    public void sync() {
+        if (unsyncedRecords > 0) {
+            active.buffer.force();
+            unsyncedRecords = 0;
+        }
+    }
+
+    /**
+     * Deletes the oldest closed segments as long as all their loads are older than the cutoff. The active segment
+     * is never deleted.
+     *
+     * @param epochSecond The cutoff load time in epoch seconds (UTC).
+     * @return The number of deleted segments.
+     * @throws IOException If a segment file cannot be deleted.
+     */
+    public int deleteSegmentsBefore(long epochSecond) throws IOException {
+        int deleted = 0;
+        while (!closedSegments.isEmpty() && closedSegments.peekFirst().maxEpochSecond < epochSecond) {
+            Segment segment = closedSegments.pollFirst();
+            Files.deleteIfExists(segment.path);
+            log.info("Deleted journal segment {}.", segment.path.getFileName());
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * @return The number of segment files in the journal, including the active one.
+     */
+    public int getSegmentCount() {
+        return closedSegments.size() + 1;
+    }
+
+    @Override
+    public void close() {
+        sync();
+    }
+
+    private void rollover() throws IOException {
+        active.buffer.force();
+        unsyncedRecords = 0;
+        active.buffer = null;
+        closedSegments.addLast(active);
+        active = createSegment(active.sequence + 1);
+    }
+
+    private List<Segment> listSegments() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(new Segment(Long.parseLong(matcher.group(1)), path));
+                }
+            });
+        }
+        segments.sort((a, b) -> Long.compare(a.sequence, b.sequence));
+        return segments;
+    }
+
+    private Segment createSegment(long sequence) throws IOException {
+        Segment segment = new Segment(sequence, directory.resolve(String.format("fund-journal-%012d.log", sequence)));
+        segment.buffer = map(segment.path, segmentSize, StandardOpenOption.CREATE_NEW);
+        segment.buffer.putLong(0, MAGIC);
+        segment.buffer.putInt(Long.BYTES, VERSION);
+        segment.buffer.putInt(Long.BYTES + Integer.BYTES, RECORD_SIZE);
+        segment.buffer.force();
+        segment.position = HEADER_SIZE;
+        log.info("Created journal segment {}.", segment.path.getFileName());
+        return segment;
+    }
+
+    /**
+     * Reads the intact records of a segment, remembering where they end and the latest load time.
+     */
+    private void replay(Segment segment, Consumer<JournalRecord> replay) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+            throw new IOException("Not a fund journal segment: " + segment.path);
+        }
+        if (buffer.getInt(Long.BYTES) != VERSION || buffer.getInt(Long.BYTES + Integer.BYTES) != RECORD_SIZE) {
+            throw new IOException("Unsupported fund journal segment version: " + segment.path);
+        }
+        int position = HEADER_SIZE;
+        int records = 0;
+        while (position + RECORD_SIZE <= buffer.capacity() && isIntact(buffer, position)) {
+            JournalRecord record = new JournalRecord(buffer.getLong(position), buffer.getLong(position + Long.BYTES),
+                    buffer.getLong(position + 2 * Long.BYTES), buffer.getLong(position + 3 * Long.BYTES));
+            segment.maxEpochSecond = Math.max(segment.maxEpochSecond, record.epochSecond());
+            replay.accept(record);
+            position += RECORD_SIZE;
+            records++;
+        }
+        segment.position = position;
+        log.info("Replayed {} funds from journal segment {}.", records, segment.path.getFileName());
+    }
+
+    private boolean isIntact(ByteBuffer buffer, int position) {
+        if (buffer.getInt(position + PAYLOAD_SIZE + Integer.BYTES) != RECORD_MARKER) {
+            return false;
+        }
+        crc.reset();
+        crc.update(buffer.slice(position, PAYLOAD_SIZE));
+        return (int) crc.getValue() == buffer.getInt(position + PAYLOAD_SIZE);
+    }
+
+    /**
+     * Maps the last segment for appending after its last intact record. Whatever follows is cleared, so that a
+     * record written out of order before a crash cannot reappear behind new appends.
+     */
+    private void resume(Segment segment) throws IOException {
+        segment.buffer = map(segment.path, Files.size(segment.path));
+        MappedByteBuffer buffer = segment.buffer;
+        int end = buffer.capacity();
+        boolean cleared = false;
+        for (int position = segment.position; position < end; position++) {
+            if (buffer.get(position) != 0) {
+                buffer.put(position, (byte) 0);
+                cleared = true;
+            }
+        }
+        if (cleared) {
+            buffer.force();
+            log.warn("Discarded incomplete data after offset {} of journal segment {}.", segment.position,
+                    segment.path.getFileName());
+        }
+    }
+
+    private static MappedByteBuffer map(Path path, long size, StandardOpenOption... options) throws IOException {
+        List<StandardOpenOption> openOptions = new ArrayList<>(List.of(StandardOpenOption.READ, StandardOpenOption.WRITE));
+        openOptions.addAll(List.of(options));
+        try (FileChannel channel = FileChannel.open(path, openOptions.toArray(new StandardOpenOption[0]))) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static final class Segment {
+        private final long sequence;
+        private final Path path;
+        private MappedByteBuffer buffer;
+        private int position;
+        private long maxEpochSecond = Long.MIN_VALUE;
+
+        private Segment(long sequence, Path path) {
+            this.sequence = sequence;
+            this.path = path;
+        }
+    }
+}
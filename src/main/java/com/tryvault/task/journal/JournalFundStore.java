@@ -0,0 +1,157 @@
+package com.tryvault.task.journal;
+
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.model.FundValues;
+import com.tryvault.task.repository.FundStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores accepted funds in an append-only {@link FundJournal} instead of the database.
+ *
+ * The journal is replayed at startup to rebuild the recent history of every customer in memory, and history
+ * requests are answered from memory. Each inserted batch is appended and synced to disk as one group. History and
+ * journal segments older than the longest velocity window before the latest load, or before
+ * {@code fund.retentionMaxSkew} ahead of the clock if that is earlier, are dropped as loads move on.
+ */
+@Component
+@ConditionalOnProperty(name = "fund.storage", havingValue = "journal")
+public class JournalFundStore implements FundStore {
+    private static final Logger log = LoggerFactory.getLogger(JournalFundStore.class);
+
+    private final FundConfiguration fundConfiguration;
+    private final Map<Long, List<JournalRecord>> history = new HashMap<>();
+    private final long retentionSeconds;
+
+    private FundJournal journal;
+    private long latestEpochSecond = Long.MIN_VALUE;
+    private long lastPruneEpochSecond = Long.MIN_VALUE;
+
+    @Autowired
+    public JournalFundStore(FundConfiguration fundConfiguration) {
+        this.fundConfiguration = fundConfiguration;
+        this.retentionSeconds = fundConfiguration.getHistoryRetention().getSeconds();
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        journal = FundJournal.open(Path.of(fundConfiguration.getJournalDirectory()),
+                fundConfiguration.getJournalSegmentSize().toBytes(), fundConfiguration.getJournalFsyncInterval(),
+                this::track);
+        prune();
+        log.info("Journal opened with history of {} customers.", history.size());
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        journal.close();
+    }
+
+    @Override
+    public synchronized void forEachHistoryLoad(Set<Long> customerIds, LocalDateTime startDate,
+                                                HistoryLoadConsumer consumer) {
+        long startEpochSecond = FundValues.toEpochSecond(startDate);
+        for (Long customerId : customerIds) {
+            for (JournalRecord record : history.getOrDefault(customerId, List.of())) {
+                if (record.epochSecond() >= startEpochSecond) {
+                    consumer.accept(record.customerId(), 1, record.amountCents(), record.epochSecond());
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the funds to the journal and syncs them to disk as one group.
+     *
+     * @param funds The accepted funds to insert.
+     */
+    @Override
+    public synchronized void insertAll(FundBatch funds) {
+        if (funds.isEmpty()) {
+            return;
+        }
+        try {
+            for (int i = 0; i < funds.size(); i++) {
+                JournalRecord record = new JournalRecord(funds.getId(i), funds.getCustomerId(i),
+                        funds.getAmountCents(i), funds.getEpochSecond(i));
+                journal.append(record);
+                track(record);
+            }
+            journal.sync();
+            // Pruning walks every customer, so only do it once the loads have moved on by a retention period.
+            // The first prune is compared separately, as the distance to Long.MIN_VALUE overflows
+            if (lastPruneEpochSecond == Long.MIN_VALUE || retentionEnd() - lastPruneEpochSecond >= retentionSeconds) {
+                prune();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to append funds to the journal", e);
+        }
+    }
+
+    /**
+     * Passes the IDs of the funds still held by the journal; segments older than the longest velocity window have
+     * been deleted, so older IDs are not known.
+     */
+    @Override
+    public synchronized void forEachLoadId(LoadIdConsumer consumer) {
+        history.values().forEach(records -> records.forEach(record ->
+                consumer.accept(record.customerId(), record.id(), record.epochSecond())));
+    }
+
+    @Override
+    public Duration getRetention() {
+        return Duration.ofSeconds(retentionSeconds);
+    }
+
+    @Override
+    public synchronized void forEachLoad(Set<Long> customerIds, LoadConsumer consumer) {
+        for (Long customerId : customerIds) {
+            for (JournalRecord record : history.getOrDefault(customerId, List.of())) {
+                consumer.accept(record.id(), record.customerId(), record.amountCents(), record.epochSecond());
+            }
+        }
+    }
+
+    private void track(JournalRecord record) {
+        history.computeIfAbsent(record.customerId(), k -> new ArrayList<>()).add(record);
+        latestEpochSecond = Math.max(latestEpochSecond, record.epochSecond());
+    }
+
+    /**
+     * Drops the history and journal segments that no velocity window can reach anymore, counting back from the
+     * latest load but from no further ahead of the clock than {@code fund.retentionMaxSkew}, as the load times come
+     * from the clients.
+     */
+    private void prune() throws IOException {
+        if (latestEpochSecond == Long.MIN_VALUE) {
+            return;
+        }
+        long end = retentionEnd();
+        long cutoff = end - retentionSeconds;
+        history.values().forEach(records -> records.removeIf(record -> record.epochSecond() < cutoff));
+        history.values().removeIf(List::isEmpty);
+        journal.deleteSegmentsBefore(cutoff);
+        lastPruneEpochSecond = end;
+    }
+
+    private long retentionEnd() {
+        return FundStore.retentionEnd(latestEpochSecond, fundConfiguration.getRetentionMaxSkew());
+    }
+}
@@ -0,0 +1,17 @@
+package com.tryvault.task.journal;
+
+import com.tryvault.task.entity.Fund;
+import com.tryvault.task.model.FundValues;
+
+/**
+ * One accepted fund as stored in the journal: IDs, amount in cents and load time in epoch seconds (UTC).
+ */
+public record JournalRecord(long id, long customerId, long amountCents, long epochSecond) {
+
+    /**
+     * @return The fund this record was written for.
+     */
+    public Fund toFund() {
+        return FundValues.toFund(id, customerId, amountCents, epochSecond);
+    }
+}
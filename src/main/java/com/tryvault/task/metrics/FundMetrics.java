@@ -0,0 +1,154 @@
+package com.tryvault.task.metrics;
+
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.service.CustomerStateRegistry;
+import com.tryvault.task.service.DuplicateLoadIndex;
+import com.tryvault.task.validator.VelocityRule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer meters of the fund loading pipeline, exported through the Actuator {@code prometheus} endpoint.
+ *
+ * Stage timers are recorded once per chunk and decisions are counted once per chunk, so the per-load path only
+ * touches a counter when a load is rejected.
+ */
+@Component
+public class FundMetrics {
+
+    public static final String STAGE_TIMER = "fund.load.stage";
+    public static final String DECISIONS = "fund.load.decisions";
+    public static final String REJECTIONS = "fund.load.rejections";
+    public static final String DUPLICATE_REASON = "duplicate";
+
+    /**
+     * Stages of loading a chunk of funds.
+     */
+    public enum Stage {
+        PARSE, FETCH, VALIDATE, PERSIST
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Counter accepted;
+    private final Counter rejected;
+    private final Counter duplicates;
+    private final Map<String, Counter> ruleRejections = new ConcurrentHashMap<>();
+    private final AtomicInteger batchSize = new AtomicInteger();
+    private final AtomicInteger inFlightCustomers = new AtomicInteger();
+
+    @Autowired
+    public FundMetrics(MeterRegistry meterRegistry, FundConfiguration fundConfiguration,
+                       CustomerStateRegistry customerStates, DuplicateLoadIndex duplicateLoadIndex) {
+        this.meterRegistry = meterRegistry;
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder(STAGE_TIMER)
+                    .tag("stage", stage.name().toLowerCase())
+                    .description("Time spent in each stage of loading funds")
+                    .register(meterRegistry));
+        }
+        accepted = decisions("accepted");
+        rejected = decisions("rejected");
+        duplicates = rejections(DUPLICATE_REASON);
+        // Registering the rule counters upfront, so every rule is exported from the start
+        fundConfiguration.getRules().forEach(rule -> ruleRejections.put(rule.getName(), rejections(rule.getName())));
+
+        Gauge.builder("fund.load.batch.size", batchSize, AtomicInteger::get)
+                .description("Number of funds in the chunk loaded last")
+                .register(meterRegistry);
+        Gauge.builder("fund.load.customers.in.flight", inFlightCustomers, AtomicInteger::get)
+                .description("Number of customers whose loads are being validated")
+                .register(meterRegistry);
+        Gauge.builder("fund.customers.cached", customerStates, CustomerStateRegistry::size)
+                .description("Number of customers whose validation state is cached")
+                .register(meterRegistry);
+        FunctionCounter.builder("fund.customers.cache.requests", customerStates, CustomerStateRegistry::getHits)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("fund.customers.cache.requests", customerStates, CustomerStateRegistry::getMisses)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("fund.customers.cache.evictions", customerStates, CustomerStateRegistry::getEvictions)
+                .register(meterRegistry);
+        Gauge.builder("fund.load.ids.indexed", duplicateLoadIndex, DuplicateLoadIndex::size)
+                .description("Number of fund IDs in the duplicate load index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the time a stage took since it started.
+     *
+     * @param stage      The stage.
+     * @param startNanos The {@link System#nanoTime()} when the stage started.
+     */
+    public void recordStage(Stage stage, long startNanos) {
+        stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts the decisions of a chunk.
+     *
+     * @param acceptedCount The number of accepted loads.
+     * @param rejectedCount The number of rejected loads.
+     */
+    public void recordDecisions(int acceptedCount, int rejectedCount) {
+        accepted.increment(acceptedCount);
+        rejected.increment(rejectedCount);
+    }
+
+    public void recordDuplicate() {
+        duplicates.increment();
+    }
+
+    /**
+     * Counts a rejection under every rule the load violated.
+     *
+     * @param violatedRules The rules the rejected load violated.
+     */
+    public void recordViolations(List<VelocityRule> violatedRules) {
+        for (VelocityRule rule : violatedRules) {
+            ruleRejections.computeIfAbsent(rule.getName(), this::rejections).increment();
+        }
+    }
+
+    /**
+     * Marks the start of a chunk's validation, until {@link #validationDone(int)}.
+     *
+     * @param funds     The number of funds in the chunk.
+     * @param customers The number of distinct customers in the chunk.
+     */
+    public void validationStarted(int funds, int customers) {
+        batchSize.set(funds);
+        inFlightCustomers.addAndGet(customers);
+    }
+
+    public void validationDone(int customers) {
+        inFlightCustomers.addAndGet(-customers);
+    }
+
+    private Counter decisions(String outcome) {
+        return Counter.builder(DECISIONS)
+                .tag("outcome", outcome)
+                .description("Number of fund load decisions")
+                .register(meterRegistry);
+    }
+
+    private Counter rejections(String reason) {
+        return Counter.builder(REJECTIONS)
+                .tag("reason", reason)
+                .description("Number of rejected loads by violated rule; a load violating several rules counts under each")
+                .register(meterRegistry);
+    }
+}
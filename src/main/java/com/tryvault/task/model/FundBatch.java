@@ -0,0 +1,162 @@
+package com.tryvault.task.model;
+
+import com.tryvault.task.aggregate.VelocityCalendar;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.entity.Fund;
+
+import java.util.Arrays;
+
+/**
+ * Fund loads held as parallel primitive columns (ID, customer ID, amount in cents, epoch second) instead of one
+ * {@link Fund} entity per load. A batch takes 32 bytes per load and is reused from chunk to chunk through
+ * {@link #clear()}; Fund entities are only built at the persistence boundary through {@link #toFund(int)}.
+ *
+ * A batch created with a {@link VelocityCalendar} also holds the bucket key of every velocity window of each load,
+ * 16 more bytes per load, computed once when the load is added, so validation only compares ints.
+ *
+ * This class is not thread-safe; concurrent readers are fine once the batch is no longer written.
+ */
+public class FundBatch {
+
+    private long[] ids;
+    private long[] customerIds;
+    private long[] amountCents;
+    private long[] epochSeconds;
+    // Bucket keys of load i from i * VelocityCalendar.keyCount(), by window ordinal; null without a calendar
+    private int[] bucketKeys;
+    private final VelocityCalendar calendar;
+    private int size;
+
+    /**
+     * @param capacity The number of loads the batch holds before growing.
+     */
+    public FundBatch(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity The number of loads the batch holds before growing.
+     * @param calendar The calendar the bucket keys of the loads are computed with, or null to keep no keys.
+     */
+    public FundBatch(int capacity, VelocityCalendar calendar) {
+        int initial = Math.max(1, capacity);
+        ids = new long[initial];
+        customerIds = new long[initial];
+        amountCents = new long[initial];
+        epochSeconds = new long[initial];
+        this.calendar = calendar;
+        if (calendar != null) {
+            bucketKeys = new int[initial * VelocityCalendar.keyCount()];
+        }
+    }
+
+    /**
+     * @param fund     A fund entity.
+     * @param calendar The calendar the bucket keys of the fund are computed with.
+     * @return A batch holding the single fund.
+     */
+    public static FundBatch of(Fund fund, VelocityCalendar calendar) {
+        FundBatch batch = new FundBatch(1, calendar);
+        batch.add(fund.getFundId().getId(), fund.getFundId().getCustomerId(),
+                FundValues.toCents(fund.getLoadAmount()), FundValues.toEpochSecond(fund.getTime()));
+        return batch;
+    }
+
+    /**
+     * Appends a load to the batch, computing its bucket keys if the batch keeps them.
+     */
+    public void add(long id, long customerId, long amountCents, long epochSecond) {
+        append(id, customerId, amountCents, epochSecond);
+        if (calendar != null) {
+            calendar.bucketKeys(epochSecond, bucketKeys, (size - 1) * VelocityCalendar.keyCount());
+        }
+    }
+
+    /**
+     * Appends the load at an index of another batch, copying its bucket keys when both batches use the same
+     * calendar.
+     */
+    public void add(FundBatch batch, int index) {
+        if (calendar == null || batch.calendar != calendar) {
+            add(batch.ids[index], batch.customerIds[index], batch.amountCents[index], batch.epochSeconds[index]);
+            return;
+        }
+        append(batch.ids[index], batch.customerIds[index], batch.amountCents[index], batch.epochSeconds[index]);
+        int keyCount = VelocityCalendar.keyCount();
+        System.arraycopy(batch.bucketKeys, index * keyCount, bucketKeys, (size - 1) * keyCount, keyCount);
+    }
+
+    private void append(long id, long customerId, long amountCents, long epochSecond) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            customerIds = Arrays.copyOf(customerIds, capacity);
+            this.amountCents = Arrays.copyOf(this.amountCents, capacity);
+            epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+            if (bucketKeys != null) {
+                bucketKeys = Arrays.copyOf(bucketKeys, capacity * VelocityCalendar.keyCount());
+            }
+        }
+        ids[size] = id;
+        customerIds[size] = customerId;
+        this.amountCents[size] = amountCents;
+        epochSeconds[size] = epochSecond;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Empties the batch, keeping its capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public long getCustomerId(int index) {
+        return customerIds[index];
+    }
+
+    public long getAmountCents(int index) {
+        return amountCents[index];
+    }
+
+    public long getEpochSecond(int index) {
+        return epochSeconds[index];
+    }
+
+    /**
+     * @param index  The index of a load in the batch.
+     * @param window A velocity window.
+     * @return The key of the bucket of the window the load falls in.
+     * @throws IllegalStateException If the batch keeps no bucket keys.
+     */
+    public int getBucketKey(int index, VelocityWindow window) {
+        if (bucketKeys == null) {
+            throw new IllegalStateException("The batch was created without a velocity calendar");
+        }
+        return bucketKeys[index * VelocityCalendar.keyCount() + window.ordinal()];
+    }
+
+    public VelocityCalendar getCalendar() {
+        return calendar;
+    }
+
+    /**
+     * @param index The index of a load in the batch.
+     * @return The Fund entity of the load.
+     */
+    public Fund toFund(int index) {
+        return FundValues.toFund(ids[index], customerIds[index], amountCents[index], epochSeconds[index]);
+    }
+}
@@ -0,0 +1,81 @@
+package com.tryvault.task.model;
+
+import com.tryvault.task.entity.Fund;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversions between the {@link Fund} entity and the primitive values validation works on: amounts as whole cents
+ * and load times as epoch seconds (UTC).
+ */
+public final class FundValues {
+
+    /**
+     * The last year of a load time, the input format writing years with four digits. Later times, and times before
+     * year 0, have no bucket keys.
+     */
+    public static final int MAX_YEAR = 9999;
+
+    private FundValues() {
+    }
+
+    /**
+     * @param amount An amount in dollars.
+     * @return The amount in cents, rounded half up.
+     */
+    public static long toCents(double amount) {
+        return BigDecimal.valueOf(amount).movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * @param amount An amount in dollars, as read from the database.
+     * @return The amount in cents, rounded half up.
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    /**
+     * @param amountCents An amount in cents.
+     * @return The amount in dollars.
+     */
+    public static BigDecimal toAmount(long amountCents) {
+        return BigDecimal.valueOf(amountCents, 2);
+    }
+
+    /**
+     * @param time A load time.
+     * @return The load time in epoch seconds (UTC), dropping any fraction of a second.
+     */
+    public static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * @param time A load time.
+     * @return Whether the time lies within years 0 to {@link #MAX_YEAR}, which every load time must.
+     */
+    public static boolean isSupported(LocalDateTime time) {
+        return time.getYear() >= 0 && time.getYear() <= MAX_YEAR;
+    }
+
+    /**
+     * @param epochSecond A load time in epoch seconds (UTC).
+     * @return The load time.
+     */
+    public static LocalDateTime toTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Builds the entity of a load at the persistence boundary.
+     *
+     * @return The Fund entity holding the given values.
+     */
+    public static Fund toFund(long id, long customerId, long amountCents, long epochSecond) {
+        return Fund.create(id, customerId, toAmount(amountCents).doubleValue(), toTime(epochSecond));
+    }
+}
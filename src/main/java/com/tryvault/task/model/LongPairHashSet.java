@@ -0,0 +1,160 @@
+package com.tryvault.task.model;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Open addressing set of pairs of primitive longs, packed side by side in a single array without boxing.
+ *
+ * This class is not thread-safe.
+ */
+public class LongPairHashSet {
+
+    private static final long FREE = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    // Pair i is held in slots[2 * i] and slots[2 * i + 1]; a slot whose first value is FREE is unused
+    private long[] slots;
+    private int mask;
+    private int size;
+    // Pairs whose first value is FREE cannot be held in the slots, so they are kept aside
+    private Set<Long> freeFirstPairs;
+
+    public LongPairHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize The number of pairs the set holds before growing.
+     */
+    public LongPairHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        slots = newSlots(capacity);
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return A well mixed 64-bit hash of the pair.
+     */
+    public static long hash(long first, long second) {
+        long h = first * 0x9E3779B97F4A7C15L + second;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * @return {@code true} if the pair was not in the set.
+     */
+    public boolean add(long first, long second) {
+        if (first == FREE) {
+            if (freeFirstPairs == null) {
+                freeFirstPairs = new HashSet<>();
+            }
+            boolean added = freeFirstPairs.add(second);
+            size += added ? 1 : 0;
+            return added;
+        }
+        for (int slot = (int) hash(first, second) & mask; ; slot = (slot + 1) & mask) {
+            long slotFirst = slots[2 * slot];
+            if (slotFirst == FREE) {
+                slots[2 * slot] = first;
+                slots[2 * slot + 1] = second;
+                if (++size > (mask + 1) * LOAD_FACTOR) {
+                    grow();
+                }
+                return true;
+            }
+            if (slotFirst == first && slots[2 * slot + 1] == second) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the pair is in the set.
+     */
+    public boolean contains(long first, long second) {
+        if (first == FREE) {
+            return freeFirstPairs != null && freeFirstPairs.contains(second);
+        }
+        for (int slot = (int) hash(first, second) & mask; ; slot = (slot + 1) & mask) {
+            long slotFirst = slots[2 * slot];
+            if (slotFirst == FREE) {
+                return false;
+            }
+            if (slotFirst == first && slots[2 * slot + 1] == second) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes a pair, moving the pairs probed after it back so that no lookup stops early at the freed slot.
+     *
+     * @return {@code true} if the pair was in the set.
+     */
+    public boolean remove(long first, long second) {
+        if (first == FREE) {
+            boolean removed = freeFirstPairs != null && freeFirstPairs.remove(second);
+            size -= removed ? 1 : 0;
+            return removed;
+        }
+        for (int slot = (int) hash(first, second) & mask; ; slot = (slot + 1) & mask) {
+            long slotFirst = slots[2 * slot];
+            if (slotFirst == FREE) {
+                return false;
+            }
+            if (slotFirst == first && slots[2 * slot + 1] == second) {
+                shiftBack(slot);
+                size--;
+                return true;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Frees a slot, first filling it with the next pair of its probe run that may move there: a pair whose home
+     * slot is not between the freed slot and its own slot.
+     */
+    private void shiftBack(int freed) {
+        for (int slot = (freed + 1) & mask; slots[2 * slot] != FREE; slot = (slot + 1) & mask) {
+            int home = (int) hash(slots[2 * slot], slots[2 * slot + 1]) & mask;
+            if (((slot - home) & mask) >= ((slot - freed) & mask)) {
+                slots[2 * freed] = slots[2 * slot];
+                slots[2 * freed + 1] = slots[2 * slot + 1];
+                freed = slot;
+            }
+        }
+        slots[2 * freed] = FREE;
+    }
+
+    private void grow() {
+        long[] old = slots;
+        int capacity = (mask + 1) * 2;
+        slots = newSlots(capacity);
+        mask = capacity - 1;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != FREE) {
+                int slot = (int) hash(old[i], old[i + 1]) & mask;
+                while (slots[2 * slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[2 * slot] = old[i];
+                slots[2 * slot + 1] = old[i + 1];
+            }
+        }
+    }
+
+    private static long[] newSlots(int capacity) {
+        long[] slots = new long[capacity * 2];
+        for (int i = 0; i < slots.length; i += 2) {
+            slots[i] = FREE;
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,67 @@
+package com.tryvault.task.parser;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Detects gzip and zstd compressed input from its magic bytes, so compressed fund files are decompressed while they
+ * are parsed, without a temporary file.
+ */
+public final class Decompression {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int GZIP_MAGIC = 0x1f8b;
+    // Little-endian frame magic number 0xFD2FB528
+    private static final int ZSTD_MAGIC = 0x28b52ffd;
+
+    private Decompression() {
+    }
+
+    /**
+     * @param input The raw input, plain or compressed.
+     * @return A stream of the decompressed input, or of the input as is if it is not compressed.
+     * @throws IOException If the input cannot be read.
+     */
+    public static InputStream decompress(InputStream input) throws IOException {
+        InputStream buffered = new BufferedInputStream(input, BUFFER_SIZE);
+        buffered.mark(4);
+        byte[] magic = buffered.readNBytes(4);
+        buffered.reset();
+
+        if (isGzip(magic)) {
+            return new GZIPInputStream(buffered, BUFFER_SIZE);
+        }
+        if (isZstd(magic)) {
+            return new ZstdInputStream(buffered);
+        }
+        return buffered;
+    }
+
+    /**
+     * @param file A file, plain or compressed.
+     * @return Whether the file starts with the gzip or zstd magic number.
+     * @throws IOException If the file cannot be read.
+     */
+    public static boolean isCompressed(Path file) throws IOException {
+        byte[] magic;
+        try (InputStream input = Files.newInputStream(file)) {
+            magic = input.readNBytes(4);
+        }
+        return isGzip(magic) || isZstd(magic);
+    }
+
+    private static boolean isGzip(byte[] magic) {
+        return magic.length >= 2 && ((magic[0] & 0xff) << 8 | (magic[1] & 0xff)) == GZIP_MAGIC;
+    }
+
+    private static boolean isZstd(byte[] magic) {
+        return magic.length == 4 && ((magic[0] & 0xff) << 24 | (magic[1] & 0xff) << 16 | (magic[2] & 0xff) << 8
+                | (magic[3] & 0xff)) == ZSTD_MAGIC;
+    }
+}
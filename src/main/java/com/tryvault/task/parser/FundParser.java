@@ -0,0 +1,34 @@
+package com.tryvault.task.parser;
+
+import com.tryvault.task.entity.Fund;
+import com.tryvault.task.model.FundValues;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+public interface FundParser {
+
+    /**
+     * Parses fund load lines from the given stream and passes each parsed load to the sink in input order.
+     * Lines that cannot be parsed are logged and skipped.
+     *
+     * @param input The stream containing one fund load JSON object per line.
+     * @param sink  The sink receiving the values of the parsed loads.
+     * @throws IOException If the stream cannot be read.
+     */
+    void parse(InputStream input, FundSink sink) throws IOException;
+
+    /**
+     * Parses fund load lines from the given stream and passes each parsed Fund to the consumer in input order.
+     * Lines that cannot be parsed are logged and skipped.
+     *
+     * @param input    The stream containing one fund load JSON object per line.
+     * @param consumer The consumer receiving the parsed Fund objects.
+     * @throws IOException If the stream cannot be read.
+     */
+    default void parse(InputStream input, Consumer<Fund> consumer) throws IOException {
+        parse(input, (id, customerId, amountCents, epochSecond) ->
+                consumer.accept(FundValues.toFund(id, customerId, amountCents, epochSecond)));
+    }
+}
@@ -0,0 +1,16 @@
+package com.tryvault.task.parser;
+
+/**
+ * Receives parsed fund loads as primitive values, so that no object is created per load.
+ */
+@FunctionalInterface
+public interface FundSink {
+
+    /**
+     * @param id          The load ID.
+     * @param customerId  The customer ID.
+     * @param amountCents The load amount in cents.
+     * @param epochSecond The load time in epoch seconds (UTC).
+     */
+    void accept(long id, long customerId, long amountCents, long epochSecond);
+}
@@ -0,0 +1,59 @@
+package com.tryvault.task.parser;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tryvault.task.entity.Fund;
+import com.tryvault.task.model.FundValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Parses fund load lines with Jackson data binding through {@link Fund#create(String, String, String, java.time.LocalDateTime)}.
+ */
+@Component
+@ConditionalOnProperty(name = "fund.parser", havingValue = "jackson")
+public class JacksonFundParser implements FundParser {
+    private static final Logger log = LoggerFactory.getLogger(JacksonFundParser.class);
+
+    // ObjectReader is immutable and thread-safe, so a single instance is shared by all parse calls
+    private static final ObjectReader FUND_READER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .readerFor(Fund.class);
+
+    @Override
+    public void parse(InputStream input, FundSink sink) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        reader.lines().map(this::populateFundObject).filter(Objects::nonNull).forEach(fund ->
+                sink.accept(fund.getFundId().getId(), fund.getFundId().getCustomerId(),
+                        FundValues.toCents(fund.getLoadAmount()), FundValues.toEpochSecond(fund.getTime())));
+    }
+
+    /**
+     * Populates a Fund object from the given JSON string.
+     *
+     * If the deserialization fails, a warning log is generated, and null is returned.
+     *
+     * @param fundStr The JSON string representing the Fund object.
+     * @return A Fund object populated from the JSON string, or null if deserialization fails.
+     */
+    Fund populateFundObject(String fundStr) {
+        try {
+            //removing $ from load_amount value to be able to convert it ot double
+            return FUND_READER.readValue(fundStr.replace("$", ""));
+        } catch (JsonProcessingException e) {
+            log.warn("Unable to convert fund string to Fund object. error: {}", e.getMessage(), e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,167 @@
+package com.tryvault.task.parser;
+
+import com.tryvault.task.aggregate.VelocityCalendar;
+import com.tryvault.task.model.FundBatch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Parses a plain fund file in parallel. The file is split into regions of about {@code regionSize} bytes that end at
+ * a line break, each region is memory-mapped and parsed into its own batch on the executor, and the batches are
+ * passed to the consumer in file order. The bucket keys of the loads are computed while the regions are parsed, so
+ * that work is spread over the executor too.
+ *
+ * At most {@code maxInFlight} regions are parsed or waiting for the consumer at a time, so memory is bounded by the
+ * region size rather than the file size. Line numbers in parse warnings count from the start of their region.
+ */
+public class MappedFileParser {
+
+    // Average length of a fund line, used to size the batch of a region
+    private static final int ESTIMATED_LINE_LENGTH = 96;
+    private static final int SCAN_BUFFER_SIZE = 4096;
+
+    private final FundParser fundParser;
+    private final VelocityCalendar calendar;
+    private final ExecutorService executor;
+    private final long regionSize;
+    private final int maxInFlight;
+
+    /**
+     * @param fundParser  The parser of the lines of a region.
+     * @param calendar    The calendar the bucket keys of the loads are computed with while parsing, or null for none.
+     * @param executor    The executor parsing the regions.
+     * @param regionSize  The size of a region in bytes, extended to the end of the line it splits.
+     * @param maxInFlight The maximum number of regions parsed ahead of the consumer.
+     */
+    public MappedFileParser(FundParser fundParser, VelocityCalendar calendar, ExecutorService executor,
+                            long regionSize, int maxInFlight) {
+        if (regionSize <= 0 || regionSize >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The region size must be between 1 byte and 2GB: " + regionSize);
+        }
+        this.fundParser = fundParser;
+        this.calendar = calendar;
+        this.executor = executor;
+        this.regionSize = regionSize;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Parses the file and passes the loads of each region to the consumer, in file order. A batch is only valid
+     * until the consumer returns.
+     *
+     * @param file     The plain file containing one fund load JSON object per line.
+     * @param consumer The consumer receiving the parsed loads, one batch per region.
+     * @throws IOException If the file cannot be read.
+     */
+    public void parse(Path file, Consumer<FundBatch> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Deque<Future<FundBatch>> regions = new ArrayDeque<>(maxInFlight);
+            long position = 0;
+            try {
+                while (position < size || !regions.isEmpty()) {
+                    while (position < size && regions.size() < maxInFlight) {
+                        long end = lineEnd(channel, position + regionSize, size);
+                        if (end - position > Integer.MAX_VALUE) {
+                            throw new IOException("A line starting before offset " + position + " is too long");
+                        }
+                        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+                        regions.add(executor.submit(() -> parseRegion(region)));
+                        position = end;
+                    }
+                    consumer.accept(await(regions.remove()));
+                }
+            } finally {
+                regions.forEach(region -> region.cancel(true));
+            }
+        }
+    }
+
+    private FundBatch parseRegion(ByteBuffer region) throws IOException {
+        FundBatch batch = new FundBatch(region.remaining() / ESTIMATED_LINE_LENGTH + 1, calendar);
+        fundParser.parse(new RegionInputStream(region), batch::add);
+        return batch;
+    }
+
+    /**
+     * @return The offset after the first line break at or after the position, or the file size if there is none.
+     */
+    private static long lineEnd(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static FundBatch await(Future<FundBatch> region) throws IOException {
+        try {
+            return region.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing the file", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IllegalStateException("Unable to parse the file. error: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Reads a mapped region, so the lines of a region are parsed by the same parser as uploaded streams.
+     */
+    private static final class RegionInputStream extends InputStream {
+
+        private final ByteBuffer region;
+
+        RegionInputStream(ByteBuffer region) {
+            this.region = region;
+        }
+
+        @Override
+        public int read() {
+            return region.hasRemaining() ? region.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!region.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, region.remaining());
+            region.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return region.remaining();
+        }
+    }
+}
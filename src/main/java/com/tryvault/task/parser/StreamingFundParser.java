@@ -0,0 +1,452 @@
+package com.tryvault.task.parser;
+
+import com.tryvault.task.config.FundConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Month;
+import java.time.Year;
+import java.util.Arrays;
+
+/**
+ * Parses fund load lines of the fixed {@code {"id","customer_id","load_amount","time"}} schema directly from the
+ * raw bytes of the stream.
+ *
+ * Lines are parsed in place from the read buffer, the {@code $} prefix of the load amount is skipped inline and
+ * amounts (to cents) and timestamps (to epoch seconds) are decoded from their digits, so no object is created for a
+ * well-formed line.
+ * The accepted input matches {@link JacksonFundParser}: field order is free, unknown fields reject the line and a
+ * trailing {@code Z} on the time is ignored.
+ * A line longer than {@code fund.maxLineSize} bytes is skipped like a malformed line, so the read buffer never grows
+ * beyond that size however long the input goes without a line break.
+ */
+@Component
+@ConditionalOnProperty(name = "fund.parser", havingValue = "streaming", matchIfMissing = true)
+public class StreamingFundParser implements FundParser {
+    private static final Logger log = LoggerFactory.getLogger(StreamingFundParser.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[] ID = "id".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CUSTOMER_ID = "customer_id".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LOAD_AMOUNT = "load_amount".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIME = "time".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+    private static final long SECONDS_PER_DAY = 86400;
+
+    private final int maxLineSize;
+
+    public StreamingFundParser() {
+        this(new FundConfiguration());
+    }
+
+    @Autowired
+    public StreamingFundParser(FundConfiguration fundConfiguration) {
+        this.maxLineSize = Math.toIntExact(fundConfiguration.getMaxLineSize().toBytes());
+    }
+
+    @Override
+    public void parse(InputStream input, FundSink sink) throws IOException {
+        LineParser parser = new LineParser();
+        // One byte more than the longest line, so that a full buffer without a line break is a line that is too long
+        byte[] buffer = new byte[Math.min(BUFFER_SIZE, maxLineSize + 1)];
+        int start = 0;
+        int end = 0;
+        long lineNumber = 0;
+        boolean skipping = false;
+
+        while (true) {
+            int newline = indexOf(buffer, start, end, (byte) '\n');
+            if (newline >= 0) {
+                if (skipping) {
+                    skipping = false;
+                } else {
+                    lineNumber++;
+                    parser.parseLine(buffer, start, newline, lineNumber, sink);
+                }
+                start = newline + 1;
+                continue;
+            }
+            // No complete line left in the buffer, keep the partial line and read more
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+            } else if (end == buffer.length) {
+                if (buffer.length <= maxLineSize) {
+                    buffer = Arrays.copyOf(buffer, (int) Math.min(buffer.length * 2L, maxLineSize + 1L));
+                } else {
+                    // Drop the line read so far and the rest of it up to the next line break
+                    if (!skipping) {
+                        lineNumber++;
+                        log.warn("Unable to convert fund line {} to Fund object, it is longer than {} bytes.",
+                                lineNumber, maxLineSize);
+                        skipping = true;
+                    }
+                    end = 0;
+                }
+            }
+            int read = input.read(buffer, end, buffer.length - end);
+            if (read < 0) {
+                break;
+            }
+            end += read;
+        }
+        if (end > start && !skipping) {
+            parser.parseLine(buffer, start, end, lineNumber + 1, sink);
+        }
+    }
+
+    private static int indexOf(byte[] buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a single line held in a byte range. One instance is used per parse call so the position and the
+     * decoded fields are reused from line to line.
+     */
+    private static final class LineParser {
+        private byte[] buf;
+        private int pos;
+        private int end;
+
+        private long id;
+        private long customerId;
+        private long amountCents;
+        private long epochSecond;
+        private long parsedLong;
+
+        void parseLine(byte[] buffer, int from, int to, long lineNumber, FundSink sink) {
+            buf = buffer;
+            pos = from;
+            end = to;
+            if (isBlank()) {
+                return;
+            }
+            if (parseObject()) {
+                sink.accept(id, customerId, amountCents, epochSecond);
+            } else {
+                log.warn("Unable to convert fund line {} to Fund object at column {}.", lineNumber, pos - from + 1);
+            }
+        }
+
+        private boolean isBlank() {
+            for (int i = pos; i < end; i++) {
+                if (!isWhitespace(buf[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean parseObject() {
+            boolean hasId = false;
+            boolean hasCustomerId = false;
+            boolean hasLoadAmount = false;
+            boolean hasTime = false;
+
+            skipWhitespace();
+            if (!consume('{')) {
+                return false;
+            }
+            skipWhitespace();
+            if (consume('}')) {
+                return false;
+            }
+            do {
+                skipWhitespace();
+                if (!consume('"')) {
+                    return false;
+                }
+                int keyStart = pos;
+                int keyEnd = indexOf(buf, pos, end, (byte) '"');
+                if (keyEnd < 0) {
+                    return false;
+                }
+                pos = keyEnd + 1;
+                skipWhitespace();
+                if (!consume(':')) {
+                    return false;
+                }
+                skipWhitespace();
+
+                if (keyEquals(keyStart, keyEnd, ID)) {
+                    hasId = parseLongValue();
+                    if (!hasId) {
+                        return false;
+                    }
+                    id = parsedLong;
+                } else if (keyEquals(keyStart, keyEnd, CUSTOMER_ID)) {
+                    hasCustomerId = parseLongValue();
+                    if (!hasCustomerId) {
+                        return false;
+                    }
+                    customerId = parsedLong;
+                } else if (keyEquals(keyStart, keyEnd, LOAD_AMOUNT)) {
+                    hasLoadAmount = parseAmountValue();
+                    if (!hasLoadAmount) {
+                        return false;
+                    }
+                } else if (keyEquals(keyStart, keyEnd, TIME)) {
+                    hasTime = parseTimeValue();
+                    if (!hasTime) {
+                        return false;
+                    }
+                } else {
+                    return false;
+                }
+                skipWhitespace();
+            } while (consume(','));
+
+            return consume('}') && hasId && hasCustomerId && hasLoadAmount && hasTime;
+        }
+
+        /**
+         * Parses a quoted or bare integer value into {@link #parsedLong}.
+         */
+        private boolean parseLongValue() {
+            boolean quoted = consume('"');
+            boolean negative = false;
+            if (pos < end && (buf[pos] == '-' || buf[pos] == '+')) {
+                negative = buf[pos] == '-';
+                pos++;
+            }
+            int digitsStart = pos;
+            long value = 0;
+            try {
+                while (pos < end && isDigit(buf[pos])) {
+                    value = Math.addExact(Math.multiplyExact(value, 10), buf[pos] - '0');
+                    pos++;
+                }
+            } catch (ArithmeticException e) {
+                return false;
+            }
+            if (pos == digitsStart || (quoted && !consume('"'))) {
+                return false;
+            }
+            parsedLong = negative ? -value : value;
+            return true;
+        }
+
+        /**
+         * Parses a quoted or bare decimal amount into {@link #amountCents}, skipping any {@code $} sign. Digits beyond
+         * the cents are rounded half up.
+         */
+        private boolean parseAmountValue() {
+            boolean quoted = consume('"');
+            int valueStart = pos;
+            skipDollarSigns();
+            boolean negative = false;
+            if (pos < end && (buf[pos] == '-' || buf[pos] == '+')) {
+                negative = buf[pos] == '-';
+                pos++;
+                skipDollarSigns();
+            }
+
+            long unscaled = 0;
+            int digits = 0;
+            int scale = 0;
+            boolean fraction = false;
+            boolean exact = true;
+            while (pos < end) {
+                byte b = buf[pos];
+                if (isDigit(b)) {
+                    if (unscaled < Long.MAX_VALUE / 1000) {
+                        unscaled = unscaled * 10 + (b - '0');
+                    } else {
+                        exact = false;
+                    }
+                    digits++;
+                    if (fraction) {
+                        scale++;
+                    }
+                } else if (b == '.' && !fraction) {
+                    fraction = true;
+                } else if (b != '$') {
+                    break;
+                }
+                pos++;
+            }
+            if (pos < end && (buf[pos] == 'e' || buf[pos] == 'E')) {
+                // Exponent notation is rare enough to hand over to BigDecimal
+                return parseAmountFallback(valueStart, quoted);
+            }
+            if (digits == 0 || (quoted && !consume('"'))) {
+                return false;
+            }
+            if (!exact || scale - 2 >= POWERS_OF_TEN.length) {
+                return parseAmountFallback(valueStart, quoted);
+            }
+            long cents;
+            if (scale <= 2) {
+                cents = unscaled * POWERS_OF_TEN[2 - scale];
+            } else {
+                long divisor = POWERS_OF_TEN[scale - 2];
+                cents = unscaled / divisor;
+                if ((unscaled % divisor) * 2 >= divisor) {
+                    cents++;
+                }
+            }
+            amountCents = negative ? -cents : cents;
+            return true;
+        }
+
+        private boolean parseAmountFallback(int valueStart, boolean quoted) {
+            int valueEnd = valueStart;
+            while (valueEnd < end && buf[valueEnd] != '"' && buf[valueEnd] != ',' && buf[valueEnd] != '}'
+                    && !isWhitespace(buf[valueEnd])) {
+                valueEnd++;
+            }
+            pos = valueEnd;
+            if (quoted && !consume('"')) {
+                return false;
+            }
+            try {
+                String value = new String(buf, valueStart, valueEnd - valueStart, StandardCharsets.US_ASCII);
+                amountCents = new BigDecimal(value.replace("$", "")).movePointRight(2)
+                        .setScale(0, RoundingMode.HALF_UP).longValueExact();
+                return true;
+            } catch (NumberFormatException | ArithmeticException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Parses an ISO local date time ({@code yyyy-MM-ddTHH:mm[:ss[.fffffffff]]}) with an optional trailing
+         * {@code Z} into {@link #epochSecond}, dropping the fraction of a second.
+         */
+        private boolean parseTimeValue() {
+            if (!consume('"')) {
+                return false;
+            }
+            int year = digits(4);
+            if (year < 0 || !consume('-')) {
+                return false;
+            }
+            int month = digits(2);
+            if (month < 0 || !consume('-')) {
+                return false;
+            }
+            int day = digits(2);
+            if (day < 0 || !consume('T')) {
+                return false;
+            }
+            int hour = digits(2);
+            if (hour < 0 || !consume(':')) {
+                return false;
+            }
+            int minute = digits(2);
+            if (minute < 0) {
+                return false;
+            }
+            int second = 0;
+            if (consume(':')) {
+                second = digits(2);
+                if (second < 0) {
+                    return false;
+                }
+                if (consume('.')) {
+                    int fractionDigits = 0;
+                    while (pos < end && isDigit(buf[pos])) {
+                        if (++fractionDigits > 9) {
+                            return false;
+                        }
+                        pos++;
+                    }
+                    if (fractionDigits == 0) {
+                        return false;
+                    }
+                }
+            }
+            consume('Z');
+            if (!consume('"')) {
+                return false;
+            }
+            if (month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                    || hour > 23 || minute > 59 || second > 59) {
+                return false;
+            }
+            epochSecond = epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+            return true;
+        }
+
+        /**
+         * Days since 1970-01-01 of a valid proleptic Gregorian date, counted from March so that the leap day is
+         * the last day of the shifted year.
+         */
+        private static long epochDay(int year, int month, int day) {
+            long y = month <= 2 ? year - 1 : year;
+            long era = Math.floorDiv(y, 400);
+            long yearOfEra = y - era * 400;
+            long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+            long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+            return era * 146097 + dayOfEra - 719468;
+        }
+
+        private int digits(int count) {
+            if (end - pos < count) {
+                return -1;
+            }
+            int value = 0;
+            for (int i = 0; i < count; i++) {
+                byte b = buf[pos + i];
+                if (!isDigit(b)) {
+                    return -1;
+                }
+                value = value * 10 + (b - '0');
+            }
+            pos += count;
+            return value;
+        }
+
+        private boolean keyEquals(int from, int to, byte[] key) {
+            return Arrays.equals(buf, from, to, key, 0, key.length);
+        }
+
+        private void skipDollarSigns() {
+            while (pos < end && buf[pos] == '$') {
+                pos++;
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < end && isWhitespace(buf[pos])) {
+                pos++;
+            }
+        }
+
+        private boolean consume(char expected) {
+            if (pos < end && buf[pos] == expected) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+}
@@ -0,0 +1,88 @@
+package com.tryvault.task.repository;
+
+import com.tryvault.task.model.FundBatch;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Storage engine for accepted funds, selected with {@code fund.storage}.
+ */
+public interface FundStore {
+
+    /**
+     * Passes the stored funds of the customers loaded at or after the start date to the consumer, without building
+     * Fund entities. A store may pass the funds of a customer's day as one total, at the start of the day in the
+     * configured zone, when no velocity rule has a window shorter than a day.
+     *
+     * @param customerIds The customers whose funds are requested.
+     * @param startDate   The earliest load time to return.
+     * @param consumer    The consumer receiving the funds, in no particular order.
+     */
+    void forEachHistoryLoad(Set<Long> customerIds, LocalDateTime startDate, HistoryLoadConsumer consumer);
+
+    /**
+     * Inserts funds that are known to be new, without loading or merging existing entity state.
+     *
+     * @param funds The accepted funds to insert.
+     */
+    void insertAll(FundBatch funds);
+
+    /**
+     * Passes the customer ID, load ID and load time of every stored fund to the consumer.
+     *
+     * @param consumer The consumer receiving the ID pairs.
+     */
+    void forEachLoadId(LoadIdConsumer consumer);
+
+    /**
+     * Passes every stored fund of the customers to the consumer as a single fund, so that their history can be
+     * copied to another store.
+     *
+     * @param customerIds The customers whose funds are requested.
+     * @param consumer    The consumer receiving the funds, in no particular order.
+     */
+    void forEachLoad(Set<Long> customerIds, LoadConsumer consumer);
+
+    /**
+     * @return How long a fund is kept behind the latest stored load, or zero if every fund is kept.
+     */
+    Duration getRetention();
+
+    /**
+     * @param latestEpochSecond The time of the latest stored load, as sent by the client.
+     * @param maxSkew           How far ahead of the clock a load time is trusted, {@code fund.retentionMaxSkew}.
+     * @return The time the retention of a store is counted back from: the latest stored load, but no further ahead
+     * of the clock than the skew, so a single load dated far in the future does not expire every other fund.
+     */
+    static long retentionEnd(long latestEpochSecond, Duration maxSkew) {
+        return Math.min(latestEpochSecond, Instant.now().getEpochSecond() + maxSkew.getSeconds());
+    }
+
+    /**
+     * Receives the values of stored funds that the velocity limits depend on: a single fund with a load count of 1,
+     * or the total of the funds in the velocity buckets of the given time.
+     */
+    @FunctionalInterface
+    interface HistoryLoadConsumer {
+        void accept(long customerId, int loadCount, long amountCents, long epochSecond);
+    }
+
+    /**
+     * Receives the values of a stored fund.
+     */
+    @FunctionalInterface
+    interface LoadConsumer {
+        void accept(long id, long customerId, long amountCents, long epochSecond);
+    }
+
+    /**
+     * Receives the IDs and load time of a stored fund.
+     */
+    @FunctionalInterface
+    interface LoadIdConsumer {
+        void accept(long customerId, long id, long epochSecond);
+    }
+}
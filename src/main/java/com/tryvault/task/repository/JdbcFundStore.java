@@ -0,0 +1,336 @@
+package com.tryvault.task.repository;
+
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.model.FundValues;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores accepted funds in the Fund table through plain JDBC. Inserts use JDBC batch statements rather than a JPA
+ * save, which merges every entity with an assigned composite {@code FundId} key and so selects each row before
+ * inserting it. History is read with a JDBC query too, so the store works without JPA being started, as in the
+ * command line run.
+ *
+ * History is read for {@code fund.historyQueryBatchSize} customers per query, selecting only the columns the
+ * velocity limits need, which the {@code (customer_id, time, load_amount)} index covers. The rows are streamed to the
+ * consumer rather than collected. When {@code fund.jdbcRetention} is set, funds that no velocity window can reach
+ * anymore are deleted as newer loads are inserted, so the table does not grow with the age of the service.
+ *
+ * Every insert also adds the funds to the FundDaily rollup table, in the same transaction. It holds the load count
+ * and amount sum of each customer's day in {@code fund.zone}. When no velocity rule has an hourly window, history is
+ * read from the rollup: one row per customer and day, however many loads the customer made that day. A rollup that
+ * is still empty while the Fund table is not, as after an upgrade from a version without it, is filled from the Fund
+ * table at startup.
+ */
+@Repository
+@ConditionalOnProperty(name = "fund.storage", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcFundStore implements FundStore {
+    private static final Logger log = LoggerFactory.getLogger(JdbcFundStore.class);
+
+    private static final String SELECT_HISTORY =
+            "SELECT customer_id, load_amount, time FROM Fund WHERE customer_id IN (%s) AND time >= ?";
+    private static final String SELECT_LOAD_IDS = "SELECT customer_id, id, time FROM Fund";
+    private static final String SELECT_LOADS =
+            "SELECT id, customer_id, load_amount, time FROM Fund WHERE customer_id IN (%s)";
+    private static final String INSERT_FUND = "INSERT INTO Fund (id, customer_id, load_amount, time) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_EXPIRED = "DELETE FROM Fund WHERE time < ?";
+    private static final String SELECT_DAILY_HISTORY = "SELECT customer_id, load_day, load_count, amount_cents "
+            + "FROM FundDaily WHERE customer_id IN (%s) AND load_day >= ?";
+    private static final String MERGE_DAILY = """
+            MERGE INTO FundDaily d
+            USING (SELECT CAST(? AS INT) customer_id, CAST(? AS DATE) load_day, CAST(? AS INT) load_count,
+                          CAST(? AS BIGINT) amount_cents) s
+            ON d.customer_id = s.customer_id AND d.load_day = s.load_day
+            WHEN MATCHED THEN UPDATE SET load_count = d.load_count + s.load_count,
+                                         amount_cents = d.amount_cents + s.amount_cents
+            WHEN NOT MATCHED THEN INSERT (customer_id, load_day, load_count, amount_cents)
+                                  VALUES (s.customer_id, s.load_day, s.load_count, s.amount_cents)""";
+    private static final String DELETE_EXPIRED_DAILY = "DELETE FROM FundDaily WHERE load_day < ?";
+    private static final String SELECT_DAILY_EXISTS = "SELECT EXISTS (SELECT 1 FROM FundDaily)";
+    private static final String SELECT_FUNDS = "SELECT customer_id, load_amount, time FROM Fund";
+    private static final String INSERT_DAILY =
+            "INSERT INTO FundDaily (customer_id, load_day, load_count, amount_cents) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FundConfiguration fundConfiguration;
+    // Zone of the days of the rollup table, and whether history is read from it
+    private final ZoneId zone;
+    private final boolean dailyHistory;
+    // Seconds a fund is kept behind the latest stored load, 0 to keep every fund
+    private final long retentionSeconds;
+    private final AtomicLong latestEpochSecond = new AtomicLong(Long.MIN_VALUE);
+    private long lastPurgeEpochSecond = Long.MIN_VALUE;
+
+    @Autowired
+    public JdbcFundStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                         FundConfiguration fundConfiguration) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.fundConfiguration = fundConfiguration;
+        this.zone = fundConfiguration.getZone();
+        this.dailyHistory = fundConfiguration.getRules().stream()
+                .noneMatch(rule -> rule.getWindow() == VelocityWindow.HOUR);
+        Duration retention = fundConfiguration.getJdbcRetention();
+        this.retentionSeconds = retention.isZero() || retention.isNegative() ? 0
+                : Math.max(retention.getSeconds(), fundConfiguration.getHistoryRetention().getSeconds());
+    }
+
+    /**
+     * Fills the empty rollup table from the funds already stored. Days are computed in {@code fund.zone} here rather
+     * than in SQL, as converting a timestamp to another zone differs between databases. The rows are inserted rather
+     * than merged, so a node filling the table at the same time fails on a duplicate key instead of counting the funds
+     * twice.
+     */
+    @PostConstruct
+    public void backfillDaily() {
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(SELECT_DAILY_EXISTS, Boolean.class))) {
+            return;
+        }
+        Map<CustomerDay, DailyTotal> totals = new HashMap<>();
+        jdbcTemplate.query(SELECT_FUNDS, (RowCallbackHandler) resultSet -> {
+            long customerId = resultSet.getLong(1);
+            LocalDate day = toDay(FundValues.toEpochSecond(resultSet.getObject(3, LocalDateTime.class)));
+            totals.merge(new CustomerDay(customerId, day),
+                    new DailyTotal(customerId, day, 1, FundValues.toCents(resultSet.getBigDecimal(2))),
+                    DailyTotal::plus);
+        });
+        if (totals.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_DAILY,
+                    new ArrayList<>(totals.values()), fundConfiguration.getInsertBatchSize(), this::setDailyTotal));
+            log.info("Daily rollup filled with {} customer days.", totals.size());
+        } catch (DuplicateKeyException e) {
+            log.info("Daily rollup filled concurrently. error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the history in queries of {@code fund.historyQueryBatchSize} customers, from the daily rollup unless a
+     * rule has an hourly window. The last query is padded with its first customer ID, so every query has the same
+     * shape and its statement can be reused.
+     */
+    @Override
+    public void forEachHistoryLoad(Set<Long> customerIds, LocalDateTime startDate, HistoryLoadConsumer consumer) {
+        if (customerIds.isEmpty()) {
+            return;
+        }
+        if (dailyHistory) {
+            queryByCustomers(SELECT_DAILY_HISTORY, customerIds, toDay(FundValues.toEpochSecond(startDate)),
+                    resultSet -> consumer.accept(resultSet.getLong(1), resultSet.getInt(3), resultSet.getLong(4),
+                            resultSet.getObject(2, LocalDate.class).atStartOfDay(zone).toEpochSecond()));
+        } else {
+            queryByCustomers(SELECT_HISTORY, customerIds, startDate,
+                    resultSet -> consumer.accept(resultSet.getLong(1), 1,
+                            FundValues.toCents(resultSet.getBigDecimal(2)),
+                            FundValues.toEpochSecond(resultSet.getObject(3, LocalDateTime.class))));
+        }
+    }
+
+    @Override
+    public void forEachLoadId(LoadIdConsumer consumer) {
+        jdbcTemplate.query(SELECT_LOAD_IDS, (RowCallbackHandler) resultSet ->
+                consumer.accept(resultSet.getLong(1), resultSet.getLong(2),
+                        FundValues.toEpochSecond(resultSet.getObject(3, LocalDateTime.class))));
+    }
+
+    @Override
+    public Duration getRetention() {
+        return Duration.ofSeconds(retentionSeconds);
+    }
+
+    /**
+     * Reads the funds from the Fund table rather than the rollup, in queries of {@code fund.historyQueryBatchSize}
+     * customers.
+     */
+    @Override
+    public void forEachLoad(Set<Long> customerIds, LoadConsumer consumer) {
+        if (customerIds.isEmpty()) {
+            return;
+        }
+        queryByCustomers(SELECT_LOADS, customerIds, null,
+                resultSet -> consumer.accept(resultSet.getLong(1), resultSet.getLong(2),
+                        FundValues.toCents(resultSet.getBigDecimal(3)),
+                        FundValues.toEpochSecond(resultSet.getObject(4, LocalDateTime.class))));
+    }
+
+    /**
+     * Runs a query selecting rows of the given customers, with {@code fund.historyQueryBatchSize} customers per
+     * query.
+     *
+     * @param sql         The query, with a {@code %s} placeholder for the customer ID parameters.
+     * @param customerIds The customers to select.
+     * @param last        The parameter following the customer IDs, or {@code null} if there is none.
+     * @param handler     The handler receiving the rows.
+     */
+    private void queryByCustomers(String sql, Set<Long> customerIds, Object last, RowCallbackHandler handler) {
+        int batchSize = Math.min(Math.max(1, fundConfiguration.getHistoryQueryBatchSize()), customerIds.size());
+        String batchSql = sql.formatted(String.join(",", Collections.nCopies(batchSize, "?")));
+        Object[] parameters = new Object[last != null ? batchSize + 1 : batchSize];
+        if (last != null) {
+            parameters[batchSize] = last;
+        }
+        int size = 0;
+        for (Long customerId : customerIds) {
+            parameters[size++] = customerId;
+            if (size == batchSize) {
+                jdbcTemplate.query(batchSql, handler, parameters);
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            Arrays.fill(parameters, size, batchSize, parameters[0]);
+            jdbcTemplate.query(batchSql, handler, parameters);
+        }
+    }
+
+    /**
+     * Inserts the funds in transactions of {@code fund.insertCommitSize} rows, each sent as JDBC batches of
+     * {@code fund.insertBatchSize} statements, and adds them to the daily rollup in the same transactions.
+     *
+     * @param funds The accepted funds to insert.
+     */
+    @Override
+    public void insertAll(FundBatch funds) {
+        int commitSize = fundConfiguration.getInsertCommitSize();
+        for (int from = 0; from < funds.size(); from += commitSize) {
+            int commitFrom = from;
+            int commitTo = Math.min(from + commitSize, funds.size());
+            List<DailyTotal> dailyTotals = toDailyTotals(funds, commitFrom, commitTo);
+            try {
+                insert(funds, commitFrom, commitTo, dailyTotals);
+            } catch (DuplicateKeyException e) {
+                // A concurrent transaction created the rollup row of one of the days first; it is updated on retry
+                log.debug("Retrying the insert of {} funds. error: {}", commitTo - commitFrom, e.getMessage());
+                insert(funds, commitFrom, commitTo, dailyTotals);
+            }
+            log.debug("{} funds inserted.", commitTo - commitFrom);
+        }
+        if (retentionSeconds > 0 && !funds.isEmpty()) {
+            long latest = Long.MIN_VALUE;
+            for (int i = 0; i < funds.size(); i++) {
+                latest = Math.max(latest, funds.getEpochSecond(i));
+            }
+            latestEpochSecond.accumulateAndGet(latest, Math::max);
+            purgeExpired();
+        }
+    }
+
+    private void insert(FundBatch funds, int from, int to, List<DailyTotal> dailyTotals) {
+        int batchSize = fundConfiguration.getInsertBatchSize();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int batchFrom = from; batchFrom < to; batchFrom += batchSize) {
+                jdbcTemplate.batchUpdate(INSERT_FUND,
+                        new FundBatchSetter(funds, batchFrom, Math.min(batchSize, to - batchFrom)));
+            }
+            jdbcTemplate.batchUpdate(MERGE_DAILY, dailyTotals, batchSize, this::setDailyTotal);
+        });
+    }
+
+    private void setDailyTotal(PreparedStatement statement, DailyTotal total) throws SQLException {
+        statement.setLong(1, total.customerId());
+        statement.setObject(2, total.day());
+        statement.setInt(3, total.loadCount());
+        statement.setLong(4, total.amountCents());
+    }
+
+    /**
+     * @return The load count and amount sum of each customer's day among the funds in the range.
+     */
+    private List<DailyTotal> toDailyTotals(FundBatch funds, int from, int to) {
+        Map<CustomerDay, DailyTotal> totals = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            long customerId = funds.getCustomerId(i);
+            LocalDate day = toDay(funds.getEpochSecond(i));
+            totals.merge(new CustomerDay(customerId, day), new DailyTotal(customerId, day, 1, funds.getAmountCents(i)),
+                    DailyTotal::plus);
+        }
+        return new ArrayList<>(totals.values());
+    }
+
+    private LocalDate toDay(long epochSecond) {
+        return LocalDate.ofInstant(Instant.ofEpochSecond(epochSecond), zone);
+    }
+
+    /**
+     * Deletes the funds older than the retention behind the latest stored load, and the rollup days before the day
+     * of the cutoff. The latest load counts as no further ahead of the clock than {@code fund.retentionMaxSkew}. The
+     * delete scans the time column, so it only runs once the loads have moved on by a retention period since the
+     * last one.
+     */
+    private synchronized void purgeExpired() {
+        long latest = FundStore.retentionEnd(latestEpochSecond.get(), fundConfiguration.getRetentionMaxSkew());
+        if (lastPurgeEpochSecond != Long.MIN_VALUE && latest - lastPurgeEpochSecond < retentionSeconds) {
+            return;
+        }
+        long cutoff = latest - retentionSeconds;
+        Integer deleted = transactionTemplate.execute(status -> {
+            jdbcTemplate.update(DELETE_EXPIRED_DAILY, toDay(cutoff));
+            return jdbcTemplate.update(DELETE_EXPIRED, FundValues.toTime(cutoff));
+        });
+        lastPurgeEpochSecond = latest;
+        log.debug("{} expired funds deleted.", deleted);
+    }
+
+    private record CustomerDay(long customerId, LocalDate day) {
+    }
+
+    /**
+     * The load count and amount sum of a customer's day.
+     */
+    private record DailyTotal(long customerId, LocalDate day, int loadCount, long amountCents) {
+
+        DailyTotal plus(DailyTotal other) {
+            return new DailyTotal(customerId, day, loadCount + other.loadCount, amountCents + other.amountCents);
+        }
+    }
+
+    /**
+     * Binds a range of the batch to the insert statement, building no Fund entity.
+     */
+    private record FundBatchSetter(FundBatch funds, int from, int size) implements BatchPreparedStatementSetter {
+
+        @Override
+        public void setValues(PreparedStatement statement, int i) throws SQLException {
+            int index = from + i;
+            statement.setLong(1, funds.getId(index));
+            statement.setLong(2, funds.getCustomerId(index));
+            statement.setBigDecimal(3, FundValues.toAmount(funds.getAmountCents(index)));
+            statement.setObject(4, FundValues.toTime(funds.getEpochSecond(index)));
+        }
+
+        @Override
+        public int getBatchSize() {
+            return size;
+        }
+    }
+}
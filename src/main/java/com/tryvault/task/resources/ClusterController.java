@@ -0,0 +1,139 @@
+package com.tryvault.task.resources;
+
+import com.tryvault.task.Response.ClusterNodesResponse;
+import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.cluster.ClusterClient;
+import com.tryvault.task.cluster.ClusterMembership;
+import com.tryvault.task.cluster.ClusterService;
+import com.tryvault.task.service.FundService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Cluster mode: the nodes customers are partitioned across, and the requests the nodes send each other. Loads
+ * forwarded by another node are decided here without upload admission, so that a node waiting for its forwarded
+ * loads never holds up the owner's uploads.
+ *
+ * The requests that change the nodes, decide loads or save funds are only taken from the nodes and operators holding
+ * {@code fund.clusterSecret}, sent in the {@value ClusterClient#TOKEN_HEADER} header, and answered with 403 otherwise.
+ */
+@RestController
+@RequestMapping("/api/cluster")
+public class ClusterController {
+
+    private final ClusterService clusterService;
+    private final ClusterMembership clusterMembership;
+    private final FundService fundService;
+
+    public ClusterController(ClusterService clusterService, ClusterMembership clusterMembership,
+                             FundService fundService) {
+        this.clusterService = clusterService;
+        this.clusterMembership = clusterMembership;
+        this.fundService = fundService;
+    }
+
+    @GetMapping(value = "/nodes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ClusterNodesResponse> getNodes() {
+        return ResponseEntity.ok(new ClusterNodesResponse(clusterMembership.getSelf(), clusterService.getNodes(),
+                null));
+    }
+
+    /**
+     * Hands the customers this node no longer owns off to their new owners, then replaces the nodes of the cluster.
+     * Every node, the joining or leaving one included, is sent the same nodes. Answers 400 if this node is not one
+     * of them.
+     */
+    @PutMapping(value = "/nodes", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ClusterNodesResponse> updateNodes(@RequestBody List<String> nodes,
+                                                            HttpServletRequest request) {
+        if (!isPeer(request)) {
+            return forbidden();
+        }
+        int handedOff;
+        try {
+            handedOff = clusterService.updateNodes(nodes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(new ClusterNodesResponse(clusterMembership.getSelf(), clusterService.getNodes(),
+                handedOff));
+    }
+
+    /**
+     * Decides loads forwarded by another node, which found this node to own their customers, and writes each result
+     * back as one NDJSON line once its load is saved. Loads sent from the chunk after the checkpoint of a resumed
+     * upload report their stored loads as accepted.
+     */
+    @PostMapping(value = "/loads", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> decideLoads(InputStream input, HttpServletRequest request) {
+        if (!isPeer(request)) {
+            return forbidden();
+        }
+        boolean resumed = Boolean.parseBoolean(request.getHeader(ClusterClient.RESUMED_HEADER));
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try (input) {
+                fundService.loadOwnedFunds(input, response -> writeLine(writer, response), resumed);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Saves the stored funds of customers handed off to this node by their previous owner. Funds of customers this
+     * node does not own are skipped. Answers 400 if the sender's nodes do not include this node.
+     */
+    @PostMapping(value = "/handoff", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Void> takeOver(InputStream input, HttpServletRequest request) throws IOException {
+        if (!isPeer(request)) {
+            return forbidden();
+        }
+        String nodes = request.getHeader(ClusterClient.NODES_HEADER);
+        try (input) {
+            clusterService.importFunds(input, nodes == null ? null : List.of(nodes.split(",")));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private boolean isPeer(HttpServletRequest request) {
+        return clusterMembership.isPeer(request.getHeader(ClusterClient.TOKEN_HEADER));
+    }
+
+    private static <T> ResponseEntity<T> forbidden() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+    }
+
+    private static void writeLine(Writer writer, FundLoadResponse response) {
+        try {
+            writer.write(response.toString());
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,44 +2,291 @@ package com.tryvault.task.resources;
 
 
 import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.entity.Fund;
 import com.tryvault.task.service.FundService;
+import com.tryvault.task.service.LoadProgress;
+import com.tryvault.task.service.ResultCache;
+import com.tryvault.task.service.UploadAdmission;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/funds")
 public class FundController {
 
+    // Compressed fund files, decompressed while they are parsed
+    static final String GZIP_VALUE = "application/gzip";
+    static final String ZSTD_VALUE = "application/zstd";
+    // Header naming the client an upload is counted against, only read from fund.uploadTrustedProxies
+    static final String CLIENT_ID_HEADER = "X-Client-Id";
+    // RFC 9530 header with the SHA-256 hash of a streamed upload, letting a retried upload be answered from the
+    // result cache once its body is checked against it, for example "sha-256=:<Base64 hash>:"
+    static final String CONTENT_DIGEST_HEADER = "Content-Digest";
+    private static final String SHA_256_DIGEST = "sha-256=:";
+
     private final FundService fundService;
+    private final UploadAdmission uploadAdmission;
+    private final Set<String> trustedProxies;
 
-    public FundController(FundService fundService) {
+    public FundController(FundService fundService, UploadAdmission uploadAdmission,
+                          FundConfiguration fundConfiguration) {
         this.fundService = fundService;
+        this.uploadAdmission = uploadAdmission;
+        this.trustedProxies = Set.copyOf(fundConfiguration.getUploadTrustedProxies());
     }
 
-    @PostMapping("/load")
-    public ResponseEntity<List<FundLoadResponse>> loadFunds(@RequestParam("file") MultipartFile file) throws IOException {
-        File inputFile = convertMultipartFileToFile(file);
-        List<FundLoadResponse> responses = fundService.loadFunds(inputFile);
+    /**
+     * Decides every fund loading operation of the uploaded file and returns the results together. The upload is
+     * admitted against its request size, or refused with 429 and a Retry-After header when the service is
+     * saturated; multipart requests are resolved lazily, so the body is only read once admitted. A request larger
+     * than {@code fund.uploadMaxInFlightBytes} is refused with 413. Once admitted, the file is hashed, and a file
+     * whose results are still cached from an earlier upload is answered with those results instead of being decided
+     * again. A file identical to one still being decided waits for that upload's results.
+     */
+    @PostMapping(value = "/load", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<List<FundLoadResponse>> loadFunds(MultipartHttpServletRequest request) throws IOException {
+        UploadAdmission.Permit permit;
+        try {
+            // An upload of unknown length is weighed as the largest one, so it runs alone
+            long length = request.getContentLengthLong();
+            permit = uploadAdmission.admit(clientId(request), length < 0 ? Long.MAX_VALUE : length);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        }
+        List<FundLoadResponse> responses = new ArrayList<>();
+        try (permit) {
+            MultipartFile file = request.getFile("file");
+            if (file == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            String contentHash;
+            try (InputStream input = file.getInputStream()) {
+                contentHash = ResultCache.hash(input);
+            }
+            try (ResultCache.Claim claim = fundService.replayOrClaim(contentHash, responses::add)) {
+                if (claim == null) {
+                    return ResponseEntity.ok(responses);
+                }
+                try (InputStream input = file.getInputStream()) {
+                    fundService.loadFunds(input, responses::add, contentHash);
+                }
+            }
+        }
         return ResponseEntity.ok(responses);
     }
 
-    private File convertMultipartFileToFile(MultipartFile multipartFile) throws IOException {
-        // Use the original filename without spaces
-        String originalFilename = Objects.requireNonNull(multipartFile.getOriginalFilename());
-        String sanitizedFilename = originalFilename.replaceAll("\\s", "_");
-        File convertedFile = new File("/tmp/" + sanitizedFilename);
-        multipartFile.transferTo(convertedFile);
-        return convertedFile;
+    /**
+     * Decides a single fund loading operation, given in the same JSON format as a line of the input file. A body
+     * missing a field or with a malformed field is refused with 400, as it cannot be converted to a {@link Fund}.
+     */
+    @PostMapping(value = "/load", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<FundLoadResponse> loadFund(@RequestBody Fund fund) {
+        return ResponseEntity.ok(fundService.loadFund(fund));
+    }
+
+    /**
+     * Streams fund loading operations from the raw request body and writes each result back as one NDJSON line, in
+     * input order, flushing the results of every chunk as soon as the chunk is committed, so neither the upload nor
+     * the results are buffered in memory. The body may be gzip
+     * or zstd compressed. The upload takes one of the upload slots until its last result is written, or is refused
+     * with 429 and a Retry-After header when the service is saturated. The slot is also given back when the
+     * asynchronous request completes, times out or fails, so it is not kept by a response whose body never runs.
+     *
+     * A streamed upload is only recognized as a retry when it is sent with a Content-Digest header, as its hash is
+     * not known before it is decided; a retry without one is decided again, and every load it saved the first time
+     * is rejected as a duplicate. An upload sent with the header whose results are still cached has its body hashed
+     * as it is read. If the body matches the header, it is answered with the cached results instead of being decided
+     * again; otherwise it is refused with 400. An upload with the same header as one still being decided waits for
+     * that upload's results; the claim on the header's hash is given back with the upload slot.
+     */
+    @PostMapping(value = "/load",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                    GZIP_VALUE, ZSTD_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFunds(InputStream input, HttpServletRequest request)
+            throws IOException {
+        UploadAdmission.Permit permit;
+        try {
+            // Streamed uploads hold one chunk at a time, so they only take a slot
+            permit = uploadAdmission.admit(clientId(request), 0);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        }
+        String contentHash = contentHash(request);
+        ResultCache.Claim claim = null;
+        if (contentHash != null) {
+            List<FundLoadResponse> responses = new ArrayList<>();
+            try {
+                claim = fundService.replayOrClaim(contentHash, responses::add);
+            } catch (IOException e) {
+                permit.close();
+                throw e;
+            }
+            if (claim == null) {
+                try (permit; input) {
+                    if (!contentHash.equals(ResultCache.hash(input))) {
+                        return ResponseEntity.badRequest().build();
+                    }
+                }
+                StreamingResponseBody body = outputStream -> {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                    responses.forEach(response -> writeLine(writer, response));
+                    writer.flush();
+                };
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+            }
+        }
+        ResultCache.Claim uploadClaim = claim;
+        WebAsyncUtils.getAsyncManager(request)
+                .registerCallableInterceptor(UploadRelease.class, new UploadRelease(permit, uploadClaim));
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            LoadProgress progress = new LoadProgress();
+            progress.setCheckpointListener(committed -> flush(writer));
+            try (permit; uploadClaim; input) {
+                fundService.loadFunds(input, response -> writeLine(writer, response), progress);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
+    /**
+     * Gives back the upload slot and the result cache claim, if any, of a streamed upload when its asynchronous
+     * request ends without the response body having closed them, which closing again leaves as is.
+     */
+    private static final class UploadRelease implements CallableProcessingInterceptor {
+        private final UploadAdmission.Permit permit;
+        private final ResultCache.Claim claim;
+
+        private UploadRelease(UploadAdmission.Permit permit, ResultCache.Claim claim) {
+            this.permit = permit;
+            this.claim = claim;
+        }
+
+        @Override
+        public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+            close();
+            return RESULT_NONE;
+        }
+
+        @Override
+        public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+            close();
+            return RESULT_NONE;
+        }
+
+        @Override
+        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+            close();
+        }
+
+        private void close() {
+            if (claim != null) {
+                claim.close();
+            }
+            permit.close();
+        }
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Void> payloadTooLarge() {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+    }
+
+    private <T> ResponseEntity<T> tooManyRequests() {
+        long seconds = Math.max(1, uploadAdmission.getRetryAfter().toSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(seconds))
+                .build();
+    }
+
+    /**
+     * @return The client an upload is counted against: the authenticated user, or else the client named in the
+     * X-Client-Id header by a trusted proxy, or else the remote address. The header of any other sender is ignored,
+     * as a client could otherwise get more uploads by naming itself differently each time.
+     */
+    private String clientId(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return "user:" + principal.getName();
+        }
+        String remoteAddress = request.getRemoteAddr();
+        if (trustedProxies.contains(remoteAddress)) {
+            String clientId = request.getHeader(CLIENT_ID_HEADER);
+            if (clientId != null && !clientId.isBlank()) {
+                return "client:" + clientId;
+            }
+        }
+        return "address:" + remoteAddress;
+    }
+
+    /**
+     * @return The Base64 SHA-256 hash given in the Content-Digest header, or null if there is none.
+     */
+    private static String contentHash(HttpServletRequest request) {
+        String digest = request.getHeader(CONTENT_DIGEST_HEADER);
+        if (digest == null) {
+            return null;
+        }
+        // The header may list several algorithms, separated by commas
+        for (String member : digest.split(",")) {
+            member = member.trim();
+            if (member.regionMatches(true, 0, SHA_256_DIGEST, 0, SHA_256_DIGEST.length()) && member.endsWith(":")
+                    && member.length() > SHA_256_DIGEST.length()) {
+                return member.substring(SHA_256_DIGEST.length(), member.length() - 1);
+            }
+        }
+        return null;
+    }
+
+    private static void writeLine(Writer writer, FundLoadResponse response) {
+        try {
+            writer.write(response.toString());
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void flush(Writer writer) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,143 @@
+package com.tryvault.task.resources;
+
+import com.tryvault.task.Response.FundJobResponse;
+import com.tryvault.task.Response.FundJobResultsPage;
+import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.job.FundJob;
+import com.tryvault.task.job.FundJobService;
+import com.tryvault.task.job.FundJobStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Load jobs: an upload is accepted right away and processed in the background, while its progress is polled and its
+ * decisions are fetched page by page or streamed once it is completed.
+ */
+@RestController
+@RequestMapping("/api/funds/jobs")
+public class FundJobController {
+
+    private static final int MAX_PAGE_SIZE = 10000;
+    // Seconds a client is asked to wait before submitting again when the job queue is full
+    private static final String QUEUE_FULL_RETRY_AFTER = "30";
+
+    private final FundJobService fundJobService;
+
+    public FundJobController(FundJobService fundJobService) {
+        this.fundJobService = fundJobService;
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<FundJobResponse> submitFile(@RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream input = file.getInputStream()) {
+            return submit(input);
+        }
+    }
+
+    @PostMapping(consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            FundController.GZIP_VALUE, FundController.ZSTD_VALUE})
+    public ResponseEntity<FundJobResponse> submitBody(InputStream input) throws IOException {
+        try (input) {
+            return submit(input);
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<FundJobResponse> getJob(@PathVariable("id") String id) {
+        return ResponseEntity.of(fundJobService.get(id).map(FundJobResponse::of));
+    }
+
+    /**
+     * Returns a page of the decisions of a completed job, in input order, or 409 with the job status while the job is
+     * not completed.
+     */
+    @GetMapping(value = "/{id}/results", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getResults(@PathVariable("id") String id,
+                                        @RequestParam(value = "offset", defaultValue = "0") long offset,
+                                        @RequestParam(value = "limit", defaultValue = "1000") int limit) throws IOException {
+        Optional<FundJob> job = fundJobService.get(id);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.get().getStatus() != FundJobStatus.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(FundJobResponse.of(job.get()));
+        }
+        if (offset < 0 || limit < 1) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<FundLoadResponse> results = fundJobService.readResults(job.get(), offset, Math.min(limit, MAX_PAGE_SIZE));
+        long total = job.get().getResultCount();
+        long next = offset + results.size();
+        return ResponseEntity.ok(new FundJobResultsPage(id, offset, total, next < total ? next : null, results));
+    }
+
+    /**
+     * Streams every decision of a completed job as NDJSON lines, or answers 409 with the job status while the job is
+     * not completed.
+     */
+    @GetMapping(value = "/{id}/results", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> streamResults(@PathVariable("id") String id) {
+        Optional<FundJob> job = fundJobService.get(id);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.get().getStatus() != FundJobStatus.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).contentType(MediaType.APPLICATION_JSON)
+                    .body(FundJobResponse.of(job.get()));
+        }
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            try {
+                fundJobService.streamResults(job.get(), response -> writeLine(writer, response));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private ResponseEntity<FundJobResponse> submit(InputStream input) throws IOException {
+        FundJob job;
+        try {
+            job = fundJobService.submit(input);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, QUEUE_FULL_RETRY_AFTER)
+                    .build();
+        }
+        return ResponseEntity.accepted()
+                .header(HttpHeaders.LOCATION, "/api/funds/jobs/" + job.getId())
+                .body(FundJobResponse.of(job));
+    }
+
+    private static void writeLine(Writer writer, FundLoadResponse response) {
+        try {
+            writer.write(response.toString());
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
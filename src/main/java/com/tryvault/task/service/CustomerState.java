@@ -0,0 +1,106 @@
+package com.tryvault.task.service;
+
+import com.tryvault.task.aggregate.CustomerAggregates;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.validator.FundValidationProcessor;
+import com.tryvault.task.validator.VelocityRule;
+
+import java.util.List;
+
+/**
+ * Validation state of one customer, shared by every upload and single load: the velocity window aggregates of the
+ * customer's loads. Access is serialized through the customer's lock in {@link CustomerStateRegistry}.
+ *
+ * A load older than the buckets the aggregates keep is checked against its buckets read from the stored history.
+ * Such loads are not added to the aggregates, so the ones accepted are also held here until the customer has no
+ * unsaved loads left, as the stored history lacks them until then.
+ */
+public class CustomerState {
+
+    final long customerId;
+    private final CustomerAggregates aggregates;
+    // Number of validated chunks and single loads with loads of the customer not saved yet, guarded by the registry
+    // segment of the customer
+    int pins;
+    // Accepted loads older than the kept buckets that may not be saved yet, null if none
+    private FundBatch olderLoads;
+
+    /**
+     * @param customerId The customer ID.
+     * @param history    The aggregates of the customer's stored funds within the longest velocity window.
+     */
+    CustomerState(long customerId, CustomerAggregates history) {
+        this.customerId = customerId;
+        this.aggregates = history;
+    }
+
+    /**
+     * Validates a load against the customer's earlier loads and records it when accepted.
+     *
+     * @param funds         The batch holding the load, with the bucket keys of the validator's calendar.
+     * @param index         The index of the load in the batch.
+     * @param validator     The validator applying the velocity rules.
+     * @param storedBuckets Reads the buckets of a load older than the kept buckets from the stored history.
+     * @return The violated rules, empty if the load is accepted.
+     */
+    List<VelocityRule> accept(FundBatch funds, int index, FundValidationProcessor validator,
+                              StoredBuckets storedBuckets) {
+        if (aggregates.isComplete(funds, index)) {
+            List<VelocityRule> violatedRules = validator.validate(aggregates, funds, index);
+            if (violatedRules.isEmpty()) {
+                aggregates.add(funds, index);
+            }
+            return violatedRules;
+        }
+        // Unsaved older loads are read before the stored history, so a load saved in between is counted twice at
+        // worst rather than missed
+        CustomerAggregates buckets = aggregates.newEmpty();
+        synchronized (this) {
+            if (olderLoads != null) {
+                for (int i = 0; i < olderLoads.size(); i++) {
+                    buckets.addToBucketsOf(funds, index, 1, olderLoads.getAmountCents(i), olderLoads.getEpochSecond(i));
+                }
+            }
+        }
+        storedBuckets.addTo(funds, index, buckets);
+        List<VelocityRule> violatedRules = validator.validate(buckets, funds, index);
+        if (violatedRules.isEmpty()) {
+            synchronized (this) {
+                if (olderLoads == null) {
+                    olderLoads = new FundBatch(4, funds.getCalendar());
+                }
+                olderLoads.add(funds, index);
+            }
+        }
+        return violatedRules;
+    }
+
+    /**
+     * Forgets the accepted older loads once every load of the customer is saved, or taken back.
+     */
+    synchronized void olderLoadsSaved() {
+        olderLoads = null;
+    }
+
+    /**
+     * Takes back an accepted load that could not be saved.
+     *
+     * @param funds The batch holding the load.
+     * @param index The index of the load in the batch.
+     */
+    void revert(FundBatch funds, int index) {
+        aggregates.remove(funds.getAmountCents(index), funds.getEpochSecond(index));
+    }
+
+    /**
+     * Reads the buckets of a load older than the buckets kept in memory from the stored history.
+     */
+    @FunctionalInterface
+    interface StoredBuckets {
+
+        /**
+         * Adds the stored loads of the load's customer that fall in the buckets of the load to the aggregates.
+         */
+        void addTo(FundBatch funds, int index, CustomerAggregates buckets);
+    }
+}
@@ -0,0 +1,315 @@
+package com.tryvault.task.service;
+
+import com.tryvault.task.aggregate.CustomerAggregates;
+import com.tryvault.task.aggregate.VelocityCalendar;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.validator.FundValidationProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory validation state of recently seen customers, shared by all uploads and single loads so that
+ * concurrent requests for the same customer validate against the same state.
+ *
+ * The registry is a cache in front of the stored history: it holds about {@code fund.customerCacheSize}
+ * customers, evicting the least recently used ones when full, and drops customers not used for
+ * {@code fund.customerCacheTtl}. Accepted loads update the cached state as they are saved, so a cached customer
+ * never needs its history fetched again. An evicted customer is rebuilt from the stored history the next time it
+ * is seen. A customer whose accepted loads are not saved yet is pinned and not evicted, as the stored history it would
+ * be rebuilt from lacks those loads; the cache may exceed its size while every customer beyond it is pinned.
+ *
+ * Customers are guarded by a fixed set of {@code fund.lockStripes} locks: loads of the same customer are
+ * serialized, while different customers only contend when they hash to the same stripe. The cache itself is split
+ * into segments by the same hash, each an access-ordered map with its own share of the cache size and its own
+ * monitor, so lookups of different customers rarely contend either. Eviction is least recently used within a
+ * segment, and expired customers are dropped from the segment being used and from one other segment in turn.
+ */
+@Component
+public class CustomerStateRegistry {
+    private static final Logger log = LoggerFactory.getLogger(CustomerStateRegistry.class);
+
+    // Fewest customers a segment is sized for, so that a small cache keeps a meaningful least recently used order
+    private static final int MIN_SEGMENT_SIZE = 64;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final AtomicInteger sweepCursor = new AtomicInteger();
+    private final VelocityCalendar calendar;
+    private final VelocityWindow[] windows;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Lock[] locks;
+    private final int stripeMask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public CustomerStateRegistry(FundValidationProcessor validator, FundConfiguration fundConfiguration) {
+        this(validator, fundConfiguration, System::nanoTime);
+    }
+
+    CustomerStateRegistry(FundValidationProcessor validator, FundConfiguration fundConfiguration, LongSupplier clock) {
+        this.calendar = validator.getCalendar();
+        this.windows = validator.getWindows();
+        this.ttlNanos = fundConfiguration.getCustomerCacheTtl().toNanos();
+        this.clock = clock;
+        // Round up to a power of two so the stripe is a mask of the hash
+        int stripes = 1;
+        while (stripes < fundConfiguration.getLockStripes()) {
+            stripes <<= 1;
+        }
+        this.locks = new Lock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.stripeMask = stripes - 1;
+        // One segment per stripe, or fewer when the cache is too small to give each segment its minimum size
+        int maxSize = fundConfiguration.getCustomerCacheSize();
+        int segmentCount = stripes;
+        while (segmentCount > 1 && (long) segmentCount * MIN_SEGMENT_SIZE > maxSize) {
+            segmentCount >>= 1;
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment((maxSize + segmentCount - 1) / segmentCount);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    /**
+     * @param customerId The customer ID.
+     * @return The state of the customer, or {@code null} if the customer is not cached and its history has to be
+     * registered.
+     */
+    public CustomerState get(Long customerId) {
+        return get(customerId, false);
+    }
+
+    /**
+     * Looks up a customer like {@link #get(Long)} and pins it, so that it is not evicted before {@link #unpin}.
+     */
+    CustomerState getPinned(Long customerId) {
+        return get(customerId, true);
+    }
+
+    /**
+     * Registers the state of a customer built from its stored history, evicting the least recently used customers
+     * beyond the cache size. If another request registered the customer first, its state is kept and the given
+     * history is ignored.
+     *
+     * @param customerId The customer ID.
+     * @param history    The aggregates of the customer's stored funds within the longest velocity window, created
+     *                   with {@link #newAggregates()}.
+     * @return The registered state of the customer.
+     */
+    public CustomerState register(Long customerId, CustomerAggregates history) {
+        return register(customerId, history, false);
+    }
+
+    /**
+     * Registers a customer like {@link #register(Long, CustomerAggregates)} and pins it, so that it is not evicted
+     * before {@link #unpin}.
+     */
+    CustomerState registerPinned(Long customerId, CustomerAggregates history) {
+        return register(customerId, history, true);
+    }
+
+    /**
+     * Releases customers pinned by {@link #getPinned} or {@link #registerPinned} once their accepted loads are saved,
+     * or taken back, evicting the customers beyond the cache size that are no longer pinned.
+     *
+     * @param states The pinned states, once for every time they were pinned.
+     */
+    void unpin(Collection<CustomerState> states) {
+        for (CustomerState state : states) {
+            Segment segment = segmentOf(state.customerId);
+            synchronized (segment) {
+                if (--state.pins == 0) {
+                    state.olderLoadsSaved();
+                }
+                segment.evictOverflow();
+            }
+        }
+    }
+
+    /**
+     * Drops the state of a customer, so it is rebuilt from the stored history the next time the customer is seen,
+     * after funds were added to the store without going through this registry.
+     *
+     * @param customerId The customer ID.
+     */
+    public void remove(Long customerId) {
+        Segment segment = segmentOf(customerId);
+        synchronized (segment) {
+            segment.customers.remove(customerId);
+        }
+    }
+
+    /**
+     * @return Empty aggregates of the configured velocity windows, to fold a customer's stored funds into before
+     * registering the customer.
+     */
+    public CustomerAggregates newAggregates() {
+        return new CustomerAggregates(calendar, windows);
+    }
+
+    /**
+     * @param customerId The customer ID.
+     * @return The lock that must be held while validating a load of the customer.
+     */
+    public Lock lockFor(long customerId) {
+        return locks[spread(customerId) & stripeMask];
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.customers.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Spreads sequential customer IDs evenly over the low bits.
+     */
+    static int spread(long customerId) {
+        return Long.hashCode(customerId * 0x9E3779B97F4A7C15L);
+    }
+
+    private Segment segmentOf(long customerId) {
+        return segments[spread(customerId) & segmentMask];
+    }
+
+    private CustomerState get(Long customerId, boolean pin) {
+        long now = clock.getAsLong();
+        Segment segment = segmentOf(customerId);
+        CustomerState state;
+        synchronized (segment) {
+            segment.evictExpired(now);
+            Entry entry = segment.customers.get(customerId);
+            if (entry == null) {
+                state = null;
+            } else {
+                entry.lastAccess = now;
+                entry.state.pins += pin ? 1 : 0;
+                state = entry.state;
+            }
+        }
+        (state == null ? misses : hits).increment();
+        return state;
+    }
+
+    private CustomerState register(Long customerId, CustomerAggregates history, boolean pin) {
+        long now = clock.getAsLong();
+        Segment segment = segmentOf(customerId);
+        CustomerState state;
+        synchronized (segment) {
+            segment.evictExpired(now);
+            Entry entry = segment.customers.get(customerId);
+            boolean added = entry == null;
+            if (added) {
+                entry = new Entry(new CustomerState(customerId, history));
+                segment.customers.put(customerId, entry);
+            }
+            entry.lastAccess = now;
+            // Pinned before evicting, so the customer is not evicted itself when every other customer is pinned
+            entry.state.pins += pin ? 1 : 0;
+            if (added) {
+                segment.evictOverflow();
+            }
+            state = entry.state;
+        }
+        sweep(segment, now);
+        return state;
+    }
+
+    /**
+     * Drops the expired customers of the next segment in turn, so that segments nobody uses are emptied too.
+     */
+    private void sweep(Segment used, long now) {
+        Segment segment = segments[sweepCursor.getAndIncrement() & segmentMask];
+        if (segment != used) {
+            synchronized (segment) {
+                segment.evictExpired(now);
+            }
+        }
+    }
+
+    /**
+     * The customers of the segment of a stripe, guarded by the segment's monitor.
+     */
+    private final class Segment {
+        // Ordered from least to most recently used
+        private final LinkedHashMap<Long, Entry> customers = new LinkedHashMap<>(16, 0.75f, true);
+        private final int maxSize;
+
+        private Segment(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        private void evictExpired(long now) {
+            // Entries are in access order, so the expired ones are at the head
+            Iterator<Entry> iterator = customers.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (now - entry.lastAccess < ttlNanos) {
+                    return;
+                }
+                if (entry.state.pins == 0) {
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+        }
+
+        private void evictOverflow() {
+            Iterator<Map.Entry<Long, Entry>> iterator = customers.entrySet().iterator();
+            while (customers.size() > maxSize && iterator.hasNext()) {
+                Map.Entry<Long, Entry> entry = iterator.next();
+                if (entry.getValue().state.pins == 0) {
+                    log.debug("Evicting customer {} from the state cache.", entry.getKey());
+                    iterator.remove();
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final CustomerState state;
+        private long lastAccess;
+
+        private Entry(CustomerState state) {
+            this.state = state;
+        }
+    }
+}
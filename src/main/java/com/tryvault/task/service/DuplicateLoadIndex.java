@@ -0,0 +1,280 @@
+package com.tryvault.task.service;
+
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.model.BloomFilter;
+import com.tryvault.task.model.LongPairHashSet;
+import com.tryvault.task.repository.FundStore;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of the {@code (customerId, id)} pairs of the loads seen, accepted or rejected, so that a load repeating a load
+ * of any earlier batch or request is rejected without a database query. The pairs of accepted loads are rebuilt from
+ * the stored funds at startup. The pairs of rejected loads are only held in memory, as rejected loads are not stored:
+ * after a restart, a rejected load sent again is decided again rather than rejected as a duplicate, and is accepted
+ * if the customer's limits allow it by then.
+ *
+ * Each pair is kept in a primitive {@link LongPairHashSet}, fronted by a {@link BloomFilter} sized by
+ * {@code fund.dedupExpectedLoads} that answers the common case of a new pair without probing the set. The index is
+ * split into segments by customer, each locked on its own, so that concurrent requests rarely contend.
+ *
+ * When the store drops funds older than a retention period behind the latest load, the pairs of accepted and rejected
+ * loads are kept in generations of one retention period of load time. Only the generation of the latest load and the
+ * one before are kept, so the pairs span at most two retention periods of loads however long the service runs, and
+ * accepted pairs are forgotten once the store no longer has them either. When the store keeps every fund, a single
+ * generation is kept, so the rejected pairs grow with the input like the accepted ones grow with the store.
+ */
+@Component
+public class DuplicateLoadIndex {
+    private static final Logger log = LoggerFactory.getLogger(DuplicateLoadIndex.class);
+
+    private static final int SEGMENTS = 64;
+
+    private final FundStore fundStore;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long expectedPerSegment;
+    private final double falsePositiveRate;
+    // Seconds of load time covered by a generation, 0 to keep a single generation when the store keeps every fund
+    private final long generationSeconds;
+    // The generation of the latest load recorded
+    private final AtomicLong latestGeneration = new AtomicLong(Long.MIN_VALUE);
+
+    @Autowired
+    public DuplicateLoadIndex(FundStore fundStore, FundConfiguration fundConfiguration) {
+        this.fundStore = fundStore;
+        this.expectedPerSegment = fundConfiguration.getDedupExpectedLoads() / SEGMENTS;
+        this.falsePositiveRate = fundConfiguration.getDedupFalsePositiveRate();
+        Duration retention = fundStore.getRetention();
+        this.generationSeconds = retention == null || retention.isNegative() ? 0 : retention.getSeconds();
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Adds the ID of every stored fund to the index.
+     */
+    @PostConstruct
+    public void rebuild() {
+        long[] count = new long[1];
+        fundStore.forEachLoadId((customerId, id, epochSecond) -> {
+            add(customerId, id, epochSecond);
+            count[0]++;
+        });
+        log.info("Duplicate load index rebuilt from {} stored funds.", count[0]);
+    }
+
+    /**
+     * @param customerId The customer ID.
+     * @param id         The load ID.
+     * @return Whether a load of the customer had the ID, accepted or rejected.
+     */
+    public boolean contains(long customerId, long id) {
+        Segment segment = segmentOf(customerId);
+        long hash = LongPairHashSet.hash(customerId, id);
+        synchronized (segment) {
+            return segment.containsAccepted(latestGeneration.get(), customerId, id, hash)
+                    || segment.containsRejected(customerId, id, hash);
+        }
+    }
+
+    /**
+     * @param customerId The customer ID.
+     * @param id         The load ID.
+     * @return Whether an accepted load of the customer had the ID.
+     */
+    public boolean isAccepted(long customerId, long id) {
+        Segment segment = segmentOf(customerId);
+        long hash = LongPairHashSet.hash(customerId, id);
+        synchronized (segment) {
+            return segment.containsAccepted(latestGeneration.get(), customerId, id, hash);
+        }
+    }
+
+    /**
+     * Records the pair of an accepted load, in place of the pair of a rejected load with the same ID. A load older
+     * than the generation before the latest one is not recorded, as the store drops it too.
+     *
+     * @param customerId  The customer ID.
+     * @param id          The load ID.
+     * @param epochSecond The load time.
+     * @return {@code true} if the pair was not recorded as accepted before.
+     */
+    public boolean add(long customerId, long id, long epochSecond) {
+        Segment segment = segmentOf(customerId);
+        long hash = LongPairHashSet.hash(customerId, id);
+        long generation = generationOf(epochSecond);
+        long latest = latestGeneration.accumulateAndGet(generation, Math::max);
+        synchronized (segment) {
+            if (segment.containsAccepted(latest, customerId, id, hash)) {
+                return false;
+            }
+            segment.removeRejected(customerId, id);
+            if (generation == segment.generation) {
+                segment.current.add(customerId, id, hash);
+            } else if (generation == segment.generation - 1) {
+                if (segment.previous == null) {
+                    segment.previous = newGeneration();
+                }
+                segment.previous.add(customerId, id, hash);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Records the pair of a rejected load, so that the ID is rejected when it is sent again. Like an accepted load,
+     * a load older than the generation before the latest one is not recorded.
+     *
+     * @param customerId  The customer ID.
+     * @param id          The load ID.
+     * @param epochSecond The load time.
+     */
+    public void addRejected(long customerId, long id, long epochSecond) {
+        Segment segment = segmentOf(customerId);
+        long hash = LongPairHashSet.hash(customerId, id);
+        long generation = generationOf(epochSecond);
+        long latest = latestGeneration.accumulateAndGet(generation, Math::max);
+        synchronized (segment) {
+            segment.roll(latest);
+            if (generation == segment.generation) {
+                if (segment.currentRejected == null) {
+                    segment.currentRejected = newGeneration();
+                }
+                segment.currentRejected.add(customerId, id, hash);
+            } else if (generation == segment.generation - 1) {
+                if (segment.previousRejected == null) {
+                    segment.previousRejected = newGeneration();
+                }
+                segment.previousRejected.add(customerId, id, hash);
+            }
+        }
+    }
+
+    /**
+     * Forgets the pair of a load recorded by {@link #add} that could not be saved after all. The Bloom filters keep
+     * its bits, which only costs a probe of the set when the pair is looked up again.
+     *
+     * @param customerId The customer ID.
+     * @param id         The load ID.
+     */
+    public void remove(long customerId, long id) {
+        Segment segment = segmentOf(customerId);
+        synchronized (segment) {
+            if (!segment.current.ids.remove(customerId, id) && segment.previous != null) {
+                segment.previous.ids.remove(customerId, id);
+            }
+        }
+    }
+
+    /**
+     * @return The number of load pairs in the index.
+     */
+    public long size() {
+        long latest = latestGeneration.get();
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.roll(latest);
+                size += sizeOf(segment.current) + sizeOf(segment.previous) + sizeOf(segment.currentRejected)
+                        + sizeOf(segment.previousRejected);
+            }
+        }
+        return size;
+    }
+
+    private static long sizeOf(Generation generation) {
+        return generation != null ? generation.ids.size() : 0;
+    }
+
+    private Segment segmentOf(long customerId) {
+        return segments[CustomerStateRegistry.spread(customerId) & (SEGMENTS - 1)];
+    }
+
+    private long generationOf(long epochSecond) {
+        return generationSeconds == 0 ? 0 : Math.floorDiv(epochSecond, generationSeconds);
+    }
+
+    private Generation newGeneration() {
+        return new Generation(expectedPerSegment, falsePositiveRate);
+    }
+
+    /**
+     * The pairs of the customers of a segment, of accepted and of rejected loads, in the generation of the latest
+     * load it has rolled to and the one before. Rejected pairs are few, so their generations are created on demand.
+     */
+    private final class Segment {
+        private Generation current = newGeneration();
+        private Generation previous;
+        private Generation currentRejected;
+        private Generation previousRejected;
+        private long generation = Long.MIN_VALUE;
+
+        private boolean containsAccepted(long latest, long customerId, long id, long hash) {
+            roll(latest);
+            return current.contains(customerId, id, hash)
+                    || previous != null && previous.contains(customerId, id, hash);
+        }
+
+        /**
+         * Called after {@link #containsAccepted}, which rolls the segment.
+         */
+        private boolean containsRejected(long customerId, long id, long hash) {
+            return currentRejected != null && currentRejected.contains(customerId, id, hash)
+                    || previousRejected != null && previousRejected.contains(customerId, id, hash);
+        }
+
+        private void removeRejected(long customerId, long id) {
+            if (currentRejected != null) {
+                currentRejected.ids.remove(customerId, id);
+            }
+            if (previousRejected != null) {
+                previousRejected.ids.remove(customerId, id);
+            }
+        }
+
+        /**
+         * Moves the segment to the generation of the latest load, dropping the pairs of older generations.
+         */
+        private void roll(long latest) {
+            if (latest <= generation) {
+                return;
+            }
+            if (generation == Long.MIN_VALUE) {
+                // No load was recorded before, so the empty generation is reused
+                generation = latest;
+                return;
+            }
+            boolean next = latest == generation + 1;
+            previous = next ? current : null;
+            previousRejected = next ? currentRejected : null;
+            current = newGeneration();
+            currentRejected = null;
+            generation = latest;
+        }
+    }
+
+    private static final class Generation {
+        private final LongPairHashSet ids = new LongPairHashSet();
+        private final BloomFilter filter;
+
+        private Generation(long expectedSize, double falsePositiveRate) {
+            this.filter = new BloomFilter(expectedSize, falsePositiveRate);
+        }
+
+        private boolean contains(long customerId, long id, long hash) {
+            return filter.mightContain(hash) && ids.contains(customerId, id);
+        }
+
+        private void add(long customerId, long id, long hash) {
+            filter.put(hash);
+            ids.add(customerId, id);
+        }
+    }
+}
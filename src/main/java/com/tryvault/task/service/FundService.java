@@ -1,36 +1,82 @@
 package com.tryvault.task.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.aggregate.CustomerAggregates;
+import com.tryvault.task.cluster.ClusterClient;
+import com.tryvault.task.cluster.ClusterMembership;
+import com.tryvault.task.config.FundConfiguration;
 import com.tryvault.task.entity.Fund;
-import com.tryvault.task.entity.FundId;
-import com.tryvault.task.repository.FundRepository;
+import com.tryvault.task.metrics.FundMetrics;
+import com.tryvault.task.metrics.FundMetrics.Stage;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.model.FundValues;
+import com.tryvault.task.model.LongPairHashSet;
+import com.tryvault.task.parser.Decompression;
+import com.tryvault.task.parser.FundParser;
+import com.tryvault.task.parser.MappedFileParser;
+import com.tryvault.task.repository.FundStore;
 import com.tryvault.task.validator.FundValidationProcessor;
+import com.tryvault.task.validator.VelocityRule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 @Service
 public class FundService {
     private static final Logger log = LoggerFactory.getLogger(FundService.class);
 
     private final FundValidationProcessor validator;
-    private final FundRepository fundRepository;
+    private final FundStore fundStore;
+    private final CustomerStateRegistry customerStates;
+    private final DuplicateLoadIndex duplicateLoadIndex;
+    private final FundParser fundParser;
+    private final FundConfiguration fundConfiguration;
+    private final FundMetrics fundMetrics;
+    private final ExecutorService validationExecutor;
+    private final ExecutorService persistExecutor;
+    private final MappedFileParser mappedFileParser;
+    private final ResultCache resultCache;
+    private final ClusterMembership clusterMembership;
+    private final ClusterClient clusterClient;
 
     @Autowired
-    public FundService(FundRepository fundRepository, FundValidationProcessor validator) {
-        this.fundRepository = fundRepository;
+    public FundService(FundStore fundStore, CustomerStateRegistry customerStates, DuplicateLoadIndex duplicateLoadIndex,
+                       FundValidationProcessor validator, FundParser fundParser, FundConfiguration fundConfiguration,
+                       FundMetrics fundMetrics, @Qualifier("fundValidationExecutor") ExecutorService validationExecutor,
+                       @Qualifier("fundPersistExecutor") ExecutorService persistExecutor, ResultCache resultCache,
+                       ClusterMembership clusterMembership, ClusterClient clusterClient) {
+        this.fundStore = fundStore;
+        this.customerStates = customerStates;
+        this.duplicateLoadIndex = duplicateLoadIndex;
         this.validator = validator;
+        this.fundParser = fundParser;
+        this.fundConfiguration = fundConfiguration;
+        this.fundMetrics = fundMetrics;
+        this.validationExecutor = validationExecutor;
+        this.persistExecutor = persistExecutor;
+        this.resultCache = resultCache;
+        this.clusterMembership = clusterMembership;
+        this.clusterClient = clusterClient;
+        // One region more than there are workers, so a parsed region is ready when the previous one is validated
+        this.mappedFileParser = new MappedFileParser(fundParser, validator.getCalendar(), validationExecutor,
+                fundConfiguration.getMappedRegionSize().toBytes(), fundConfiguration.getEffectiveParallelism() + 1);
     }
 
     /**
@@ -42,102 +88,715 @@ public class FundService {
      *
      * After processing, the valid funds are saved to the database.
      *
-     * @param input The file containing fund loading information in JSON format.
+     * @param input The file containing fund loading information in JSON format, plain or gzip or zstd compressed.
      * @return A list of FundLoadResponse objects representing the results of the fund loading operations.
      */
     public List<FundLoadResponse> loadFunds(File input) {
         List<FundLoadResponse> responses = new ArrayList<>();
-
-        var funds = extractsFunds(input);
-        if (Objects.isNull(funds) || funds.isEmpty()) {
+        try {
+            loadFunds(input.toPath(), responses::add);
+        } catch (IOException e) {
+            log.error("Unable to load input file. error: {}", e.getMessage(), e);
+        }
+        if (responses.isEmpty()) {
             log.error("input file is empty");
-            return responses;
-        }
-        var customersExistingFund = getExistingFunds(funds);
-
-        Map<Long, Set<Long>> seenIds = new HashMap<>();
-        List<Fund> newFunds = new ArrayList<>();
-
-        funds.forEach(newFund -> {
-            var customerExistingFunds = customersExistingFund.get(newFund.getFundId().getCustomerId());
-            // Check if the fund with the same customer ID and fund ID has not been seen before
-            // (seenIds is a map to keep track of seen fund IDs for each customer)
-            // If it hasn't been seen or the fund ID is not in the set, proceed with validation
-            boolean isValid = (Objects.isNull(seenIds.get(newFund.getFundId().getCustomerId()))
-                    || !seenIds.get(newFund.getFundId().getCustomerId()).contains(newFund.getFundId().getId()))
-                    && validator.isValid(customerExistingFunds, newFund);
-            log.info("Fund ID {} validation status: {}", newFund.getFundId().getId(), isValid ? "Accepted" : "Rejected");
-            responses.add(populateResponse(isValid, newFund));
-            seenIds.computeIfAbsent(newFund.getFundId().getCustomerId(), k -> new HashSet<>()).add(newFund.getFundId().getId());
-
-            if (isValid) {
-                customersExistingFund.computeIfAbsent(newFund.getFundId().getCustomerId(), k -> new ArrayList<>()).add(newFund);
-                newFunds.add(newFund);
+        }
+        return responses;
+    }
+
+    /**
+     * Processes fund loading operations read from the input file, passing each FundLoadResponse to the consumer
+     * in input order as soon as it is decided.
+     *
+     * A plain file is memory-mapped and parsed in parallel, region by region, when {@code fund.mappedInput} is set;
+     * the regions are validated in file order, chunk by chunk, like {@link #loadFunds(InputStream, Consumer)}.
+     * A compressed file is decompressed and parsed as a stream.
+     *
+     * @param input    The file containing fund loading information in JSON format, plain or gzip or zstd compressed.
+     * @param consumer The consumer receiving the result of every fund loading operation.
+     * @throws IOException If the file cannot be read.
+     */
+    public void loadFunds(Path input, Consumer<FundLoadResponse> consumer) throws IOException {
+        loadFunds(input, consumer, new LoadProgress());
+    }
+
+    /**
+     * Processes fund loading operations read from the input file like {@link #loadFunds(Path, Consumer)},
+     * reporting the progress of every chunk.
+     *
+     * @param input    The file containing fund loading information in JSON format, plain or gzip or zstd compressed.
+     * @param consumer The consumer receiving the result of every fund loading operation.
+     * @param progress The progress updated after each chunk is parsed, validated and saved.
+     * @throws IOException If the file cannot be read.
+     */
+    public void loadFunds(Path input, Consumer<FundLoadResponse> consumer, LoadProgress progress) throws IOException {
+        if (!fundConfiguration.isMappedInput() || Decompression.isCompressed(input)) {
+            try (InputStream inputStream = Files.newInputStream(input)) {
+                loadFunds(inputStream, consumer, progress);
             }
-        });
+            return;
+        }
+        int chunkSize = fundConfiguration.getChunkSize();
+        int shards = fundConfiguration.getEffectiveParallelism();
+        FundBatch chunk = new FundBatch(chunkSize, validator.getCalendar());
+        // Time spent waiting for the regions to be parsed, since the last processed chunk
+        long[] parseStart = {System.nanoTime()};
+        // Loads committed by an earlier run that are still to be skipped
+        long[] skip = {progress.getResumeFrom()};
+        long inDoubtUntil = inDoubtUntil(progress);
 
-        log.info("{} funds are saving.", newFunds.size());
-        fundRepository.saveAll(newFunds);
-        log.info("{} funds saved successfully.", newFunds.size());
-        return responses;
+        try (PersistPipeline pipeline = newPipeline(consumer, progress)) {
+            mappedFileParser.parse(input, region -> {
+                for (int i = 0; i < region.size(); i++) {
+                    if (skip[0] > 0) {
+                        skip[0]--;
+                        progress.addParsed(1);
+                        continue;
+                    }
+                    chunk.add(region, i);
+                    if (chunk.size() >= chunkSize) {
+                        fundMetrics.recordStage(Stage.PARSE, parseStart[0]);
+                        processChunk(chunk, shards, pipeline, progress, true, inDoubtUntil);
+                        chunk.clear();
+                        parseStart[0] = System.nanoTime();
+                    }
+                }
+            });
+            fundMetrics.recordStage(Stage.PARSE, parseStart[0]);
+            processChunk(chunk, shards, pipeline, progress, true, inDoubtUntil);
+        }
     }
 
-    private Map<Long,List<Fund>> getExistingFunds(List<Fund> funds) {
-        var customerIds = funds.stream().map(Fund::getFundId)
-                .map(FundId::getCustomerId).collect(Collectors.toSet());
-        // Assume the earliest date in the input file as the reference point.
-        // To perform weekly limit validation, retrieve data from one week before the earliest date.
-        var startDate = funds.get(0).getTime().minusWeeks(1);
-        var customersExistingFund = fundRepository.findByCustomerIdsAndDate(customerIds, startDate);
-        return customersExistingFund.stream().collect(Collectors.groupingBy(fund-> fund.getFundId().getCustomerId()));
+    /**
+     * Processes fund loading operations read from the input stream, passing each FundLoadResponse to the consumer
+     * in input order as soon as it is decided.
+     *
+     * The stream is processed in chunks of {@code fund.chunkSize} lines: the history of the customers first seen in
+     * a chunk is fetched and the chunk is validated, then its valid funds are saved on the persist executor while the
+     * next chunks are read. At most {@code fund.persistQueueCapacity} validated chunks wait to be saved; reading
+     * blocks beyond that. The results of a chunk are passed to the consumer once its funds are committed, so every
+     * reported decision is durable.
+     * Customers are split into {@code fund.parallelism} shards validated in parallel, keeping each customer's loads
+     * in input order, and the results are emitted in input order.
+     * Only per-customer velocity window aggregates and the seen fund IDs are kept between chunks, so memory does not
+     * grow with the number of lines in the input. That state is shared with concurrent requests through the
+     * {@link CustomerStateRegistry} and the {@link DuplicateLoadIndex}.
+     * Gzip and zstd compressed input is detected from its magic bytes and decompressed while it is parsed.
+     * The raw stream is hashed as it is read, and the results of a completed upload are kept in the
+     * {@link ResultCache} under that hash, so the same upload sent again can be answered with
+     * {@link #replayResults(String, Consumer)}.
+     * In cluster mode, the loads of customers owned by another node are forwarded to it, chunk by chunk, and decided
+     * there while the local loads are decided here.
+     *
+     * @param input    The stream containing fund loading information in JSON format, one fund per line.
+     * @param consumer The consumer receiving the result of every fund loading operation.
+     * @throws IOException If the input stream cannot be read.
+     */
+    public void loadFunds(InputStream input, Consumer<FundLoadResponse> consumer) throws IOException {
+        loadFunds(input, consumer, new LoadProgress());
     }
 
     /**
-     * Creates a FundLoadResponse object based on the provided validity and Fund details.
+     * Processes fund loading operations read from the input stream like
+     * {@link #loadFunds(InputStream, Consumer)}, reporting the progress of every chunk. The results of a resumed
+     * upload are not cached, as the loads skipped at its start have no results.
      *
-     * @param isValid The validity status of the fund load operation.
-     * @param newFund The Fund object for which the response is being created.
-     * @return A FundLoadResponse object representing the result of the fund load operation.
+     * The chunk after the checkpoint of a resumed upload may have been saved by the interrupted run, if it stopped
+     * between saving the chunk and moving the checkpoint past it. A load of that chunk whose ID is already stored for
+     * its customer is taken to be that saved load: it is reported as accepted, the decision the interrupted run
+     * saved, and is not saved or counted again. A later load of the upload with the same ID is a duplicate.
+     *
+     * @param input    The stream containing fund loading information in JSON format, one fund per line.
+     * @param consumer The consumer receiving the result of every fund loading operation.
+     * @param progress The progress updated after each chunk is parsed, validated and saved.
+     * @throws IOException If the input stream cannot be read.
      */
-    private FundLoadResponse populateResponse(boolean isValid, Fund newFund) {
-        return new FundLoadResponse(newFund.getFundId().getId().toString(), newFund.getFundId().getCustomerId().toString(), isValid);
+    public void loadFunds(InputStream input, Consumer<FundLoadResponse> consumer, LoadProgress progress)
+            throws IOException {
+        loadFunds(input, consumer, progress, true, inDoubtUntil(progress), null);
     }
 
     /**
-     * Extracts Fund objects from the specified file.
-     * This method reads each line from the input file, populates Fund objects, and returns a list
-     * containing the extracted Fund objects.
+     * Processes fund loading operations read from the input stream like {@link #loadFunds(InputStream, Consumer)},
+     * for content whose hash was computed already, so that the results are cached under it without the stream being
+     * hashed again.
      *
-     * @param input The file containing data to extract Fund objects.
-     * @return A list of Fund objects extracted from the input file.
+     * @param input       The stream containing fund loading information in JSON format, one fund per line.
+     * @param consumer    The consumer receiving the result of every fund loading operation.
+     * @param contentHash The Base64 encoded SHA-256 hash of the raw stream, as computed by {@link ResultCache#hash}.
+     * @throws IOException If the input stream cannot be read.
      */
-    private List<Fund> extractsFunds(File input) {
-        List<Fund> funds = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(input))) {
-            reader.lines().map(this::populateFundObject).filter(Objects::nonNull).forEach(funds::add);
-        } catch (IOException e) {
-            log.error("Unable to load input file. error: {}", e.getMessage(), e);
+    public void loadFunds(InputStream input, Consumer<FundLoadResponse> consumer, String contentHash)
+            throws IOException {
+        loadFunds(input, consumer, new LoadProgress(), true, 0, contentHash);
+    }
+
+    /**
+     * Decides the loads forwarded by another node of the cluster, like {@link #loadFunds(InputStream, Consumer)} but
+     * without forwarding any of them again: the sending node found this node to own their customers. The results are
+     * not cached, as the sending node caches the results of the whole upload.
+     *
+     * @param input    The stream containing fund loading information in JSON format, one fund per line.
+     * @param consumer The consumer receiving the result of every fund loading operation.
+     * @param resumed  Whether the loads are from the chunk after the checkpoint of a resumed upload, whose stored
+     *                 loads are reported as accepted as in {@link #loadFunds(InputStream, Consumer, LoadProgress)}.
+     * @throws IOException If the input stream cannot be read.
+     */
+    public void loadOwnedFunds(InputStream input, Consumer<FundLoadResponse> consumer, boolean resumed)
+            throws IOException {
+        loadFunds(input, consumer, new LoadProgress(), false, resumed ? Long.MAX_VALUE : 0, null);
+    }
+
+    /**
+     * @param inDoubtUntil The number of loads at the start of the input, skipped ones included, that an interrupted
+     *                     run may have saved after its last checkpoint.
+     * @param contentHash  The hash of the raw stream if it is known already, {@code null} to hash the stream.
+     */
+    private void loadFunds(InputStream input, Consumer<FundLoadResponse> consumer, LoadProgress progress,
+                           boolean routed, long inDoubtUntil, String contentHash) throws IOException {
+        int chunkSize = fundConfiguration.getChunkSize();
+        int shards = fundConfiguration.getEffectiveParallelism();
+        FundBatch chunk = new FundBatch(chunkSize, validator.getCalendar());
+        // Start of the parsing of the current chunk, reset after every processed chunk
+        long[] parseStart = {System.nanoTime()};
+        // Loads committed by an earlier run that are still to be skipped
+        long[] skip = {progress.getResumeFrom()};
+        // The raw input is hashed and its results recorded for the result cache
+        boolean cached = routed && resultCache.isEnabled() && progress.getResumeFrom() == 0;
+        DigestInputStream hashedInput = cached && contentHash == null ? ResultCache.digest(input) : null;
+        ResultCache.Recorder recorder = cached ? resultCache.newRecorder() : null;
+        InputStream source = hashedInput != null ? hashedInput : input;
+
+        try (PersistPipeline pipeline = newPipeline(cached ? consumer.andThen(recorder) : consumer, progress)) {
+            fundParser.parse(Decompression.decompress(source), (id, customerId, amountCents, epochSecond) -> {
+                if (skip[0] > 0) {
+                    skip[0]--;
+                    progress.addParsed(1);
+                    return;
+                }
+                chunk.add(id, customerId, amountCents, epochSecond);
+                if (chunk.size() >= chunkSize) {
+                    fundMetrics.recordStage(Stage.PARSE, parseStart[0]);
+                    processChunk(chunk, shards, pipeline, progress, routed, inDoubtUntil);
+                    chunk.clear();
+                    parseStart[0] = System.nanoTime();
+                }
+            });
+            fundMetrics.recordStage(Stage.PARSE, parseStart[0]);
+            processChunk(chunk, shards, pipeline, progress, routed, inDoubtUntil);
+        }
+        if (cached) {
+            resultCache.put(hashedInput != null ? ResultCache.finish(hashedInput) : contentHash, recorder);
+        }
+    }
+
+    /**
+     * Passes the results of an earlier upload with the given content to the consumer, in input order, if they are
+     * still cached. A client retrying an upload gets the decisions of the first run, without the upload being decided
+     * again and its loads rejected as duplicates of themselves.
+     *
+     * @param contentHash The Base64 encoded SHA-256 hash of the raw upload, as read by
+     *                    {@link #loadFunds(InputStream, Consumer)}.
+     * @param consumer    The consumer receiving the result of every fund loading operation.
+     * @return Whether the results were cached; if not, nothing was passed to the consumer.
+     */
+    public boolean replayResults(String contentHash, Consumer<FundLoadResponse> consumer) {
+        return resultCache.replay(contentHash, consumer);
+    }
+
+    /**
+     * Passes the results of an earlier upload with the given content to the consumer like
+     * {@link #replayResults(String, Consumer)}, first waiting for an identical upload that is being decided to
+     * complete. If no results are cached, the content is claimed for the caller to decide, so that an identical
+     * upload sent meanwhile waits for its results rather than being decided concurrently.
+     *
+     * @param contentHash The Base64 encoded SHA-256 hash of the raw upload.
+     * @param consumer    The consumer receiving the result of every fund loading operation.
+     * @return The claim to close once the upload is decided, or null if the cached results were passed to the
+     * consumer.
+     * @throws IOException If the thread is interrupted while waiting.
+     */
+    public ResultCache.Claim replayOrClaim(String contentHash, Consumer<FundLoadResponse> consumer)
+            throws IOException {
+        return resultCache.replayOrClaim(contentHash, consumer);
+    }
+
+    /**
+     * Decides a single fund loading operation against the in-memory state of its customer and saves the fund when
+     * it is accepted. The customer's history is fetched only when the customer is not cached. In cluster mode, a
+     * load of a customer owned by another node is forwarded to it.
+     * An accepted fund is saved in its own transaction before this returns, rather than batched with other loads like
+     * the chunks of {@link #loadFunds(InputStream, Consumer)}.
+     *
+     * @param newFund The fund to load.
+     * @return The FundLoadResponse representing the result of the fund loading operation.
+     */
+    public FundLoadResponse loadFund(Fund newFund) {
+        FundBatch fund = FundBatch.of(newFund, validator.getCalendar());
+        long customerId = fund.getCustomerId(0);
+        if (!clusterMembership.isLocal(customerId)) {
+            boolean accepted = join(clusterClient.decide(clusterMembership.ownerOf(customerId), fund, false))[0];
+            return populateResponse(accepted, fund, 0);
+        }
+        // The customer is pinned until the fund is saved, so it is not rebuilt from a history lacking the fund
+        CustomerState customerState = customerStates.getPinned(customerId);
+        if (customerState == null) {
+            long fetchStart = System.nanoTime();
+            var startDate = newFund.getTime().minus(fundConfiguration.getHistoryRetention());
+            CustomerAggregates history = customerStates.newAggregates();
+            history.startHistoryAt(FundValues.toEpochSecond(startDate));
+            fundStore.forEachHistoryLoad(Set.of(customerId), startDate, (storedCustomerId, loadCount, amountCents,
+                    epochSecond) -> history.add(loadCount, amountCents, epochSecond));
+            customerState = customerStates.registerPinned(customerId, history);
+            fundMetrics.recordStage(Stage.FETCH, fetchStart);
+        }
+
+        try {
+            long validateStart = System.nanoTime();
+            fundMetrics.validationStarted(1, 1);
+            boolean accepted;
+            try {
+                accepted = accept(fund, 0, customerState, null);
+            } finally {
+                fundMetrics.validationDone(1);
+            }
+            fundMetrics.recordStage(Stage.VALIDATE, validateStart);
+            fundMetrics.recordDecisions(accepted ? 1 : 0, accepted ? 0 : 1);
+
+            log.info("Fund ID {} validation status: {}", fund.getId(0), accepted ? "Accepted" : "Rejected");
+            if (accepted) {
+                long persistStart = System.nanoTime();
+                try {
+                    fundStore.insertAll(fund);
+                } catch (RuntimeException e) {
+                    revert(fund, 0, customerState);
+                    throw e;
+                }
+                fundMetrics.recordStage(Stage.PERSIST, persistStart);
+            }
+            return populateResponse(accepted, fund, 0);
+        } finally {
+            customerStates.unpin(List.of(customerState));
+        }
+    }
+
+    private PersistPipeline newPipeline(Consumer<FundLoadResponse> consumer, LoadProgress progress) {
+        return new PersistPipeline(persistExecutor, chunk -> persistChunk(chunk, consumer, progress),
+                this::releaseChunk, fundConfiguration.getChunkSize(), fundConfiguration.getPersistQueueCapacity());
+    }
+
+    /**
+     * Validates a chunk and hands its decisions and accepted funds to the pipeline to be saved. Waits first for a
+     * free slot in the pipeline, so no chunk is validated while the pipeline is full. When the chunk is routed, the
+     * loads owned by other nodes are decided and saved by them. The customers decided here stay pinned until the
+     * pipeline releases the chunk.
+     *
+     * @param inDoubtUntil The number of loads at the start of the input that an interrupted run may have saved; a
+     *                     chunk starting before it reports its stored loads as accepted instead of saving them.
+     */
+    private void processChunk(FundBatch funds, int shards, PersistPipeline pipeline, LoadProgress progress,
+                              boolean routed, long inDoubtUntil) {
+        if (funds.isEmpty()) {
+            return;
+        }
+        PersistPipeline.ValidatedChunk validated = pipeline.acquire();
+        try {
+            LongPairHashSet recovered = progress.getParsed() < inDoubtUntil ? new LongPairHashSet() : null;
+            progress.addParsed(funds.size());
+            String[] owners = routed ? clusterMembership.remoteOwners(funds) : null;
+            Map<Long, CustomerState> chunkStates = validated.getStates();
+            boolean[] accepted = owners == null ? decide(funds, shards, chunkStates, recovered)
+                    : decideAcrossCluster(funds, shards, owners, chunkStates, recovered);
+
+            FundBatch newFunds = validated.getAccepted();
+            int acceptedCount = 0;
+            for (int i = 0; i < funds.size(); i++) {
+                log.info("Fund ID {} validation status: {}", funds.getId(i), accepted[i] ? "Accepted" : "Rejected");
+                validated.getResponses().add(populateResponse(accepted[i], funds, i));
+                if (accepted[i]) {
+                    acceptedCount++;
+                    if ((owners == null || owners[i] == null) && !isRecovered(recovered, funds, i)) {
+                        newFunds.add(funds, i);
+                    }
+                }
+            }
+            progress.addValidated(funds.size(), acceptedCount);
+            // Forwarded loads were saved by their owner before it answered, and recovered loads by the earlier run
+            progress.addPersisted(acceptedCount - newFunds.size());
+        } catch (RuntimeException e) {
+            pipeline.discard(validated);
+            throw e;
+        }
+        pipeline.submit(validated);
+    }
+
+    /**
+     * Releases the customers of a chunk leaving the pipeline. The accepted funds of a chunk that was not saved,
+     * because it or an earlier chunk failed, are first taken back from the customer state and the duplicate load
+     * index, so they are decided again when the upload is resumed.
+     */
+    private void releaseChunk(PersistPipeline.ValidatedChunk chunk) {
+        FundBatch newFunds = chunk.getAccepted();
+        if (!chunk.isPersisted() && !newFunds.isEmpty()) {
+            log.warn("{} accepted funds were not saved and are taken back.", newFunds.size());
+            for (int i = 0; i < newFunds.size(); i++) {
+                revert(newFunds, i, chunk.getStates().get(newFunds.getCustomerId(i)));
+            }
+        }
+        customerStates.unpin(chunk.getStates().values());
+    }
+
+    /**
+     * Takes back an accepted fund that could not be saved from its customer's state and the duplicate load index,
+     * while holding the customer's lock.
+     */
+    private void revert(FundBatch funds, int index, CustomerState customerState) {
+        long customerId = funds.getCustomerId(index);
+        Lock lock = customerStates.lockFor(customerId);
+        lock.lock();
+        try {
+            customerState.revert(funds, index);
+            duplicateLoadIndex.remove(customerId, funds.getId(index));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Decides the loads of a chunk on this node. If the chunk cannot be validated, the loads it accepted so far are
+     * taken back before the failure is thrown.
+     *
+     * @param chunkStates Receives the pinned state of each customer of the chunk, by customer ID.
+     * @param recovered   Receives the stored loads reported as accepted when the chunk may have been saved by an
+     *                    interrupted run, {@code null} otherwise.
+     * @return The validation result of each fund, indexed like the chunk.
+     */
+    private boolean[] decide(FundBatch funds, int shards, Map<Long, CustomerState> chunkStates,
+                             LongPairHashSet recovered) {
+        getCustomerStates(funds, chunkStates);
+
+        long validateStart = System.nanoTime();
+        fundMetrics.validationStarted(funds.size(), chunkStates.size());
+        boolean[] accepted = new boolean[funds.size()];
+        try {
+            validateChunk(funds, chunkStates, shards, accepted, recovered);
+        } catch (RuntimeException e) {
+            revertAccepted(funds, accepted, chunkStates, recovered);
+            throw e;
+        } finally {
+            fundMetrics.validationDone(chunkStates.size());
+        }
+        fundMetrics.recordStage(Stage.VALIDATE, validateStart);
+
+        int acceptedCount = 0;
+        for (boolean fundAccepted : accepted) {
+            acceptedCount += fundAccepted ? 1 : 0;
+        }
+        fundMetrics.recordDecisions(acceptedCount, funds.size() - acceptedCount);
+        return accepted;
+    }
+
+    /**
+     * Sends the loads of the chunk owned by other nodes to their owners, one request per node, and decides the local
+     * loads while the owners decide theirs. A customer has a single owner, so all its loads of the chunk are decided
+     * in input order by the same node, and the next chunk is only read once every owner answered. If an owner
+     * fails, the accepted local loads are taken back once the other owners answered, and the failure is thrown; the
+     * owners that answered saved their loads, which a resumed upload reports again.
+     *
+     * @param owners      The owner of each load, {@code null} for the local loads.
+     * @param chunkStates Receives the pinned state of each customer of the local loads, by customer ID.
+     * @param recovered   Receives the stored local loads reported as accepted when the chunk may have been saved by
+     *                    an interrupted run, {@code null} otherwise; the owners are told to do the same.
+     * @return The validation result of each fund, indexed like the chunk.
+     */
+    private boolean[] decideAcrossCluster(FundBatch funds, int shards, String[] owners,
+                                          Map<Long, CustomerState> chunkStates, LongPairHashSet recovered) {
+        FundBatch localFunds = new FundBatch(funds.size(), validator.getCalendar());
+        Map<String, FundBatch> forwardedFunds = new HashMap<>();
+        // Position of each load in the batch of its owner
+        int[] positions = new int[funds.size()];
+        for (int i = 0; i < funds.size(); i++) {
+            FundBatch ownerFunds = owners[i] == null ? localFunds
+                    : forwardedFunds.computeIfAbsent(owners[i], owner -> new FundBatch(funds.size()));
+            positions[i] = ownerFunds.size();
+            ownerFunds.add(funds, i);
+        }
+        Map<String, CompletableFuture<boolean[]>> forwarded = new HashMap<>();
+        forwardedFunds.forEach((owner, ownerFunds) ->
+                forwarded.put(owner, clusterClient.decide(owner, ownerFunds, recovered != null)));
+        boolean[] localAccepted = localFunds.isEmpty() ? new boolean[0]
+                : decide(localFunds, shards, chunkStates, recovered);
+
+        Map<String, boolean[]> forwardedAccepted = new HashMap<>();
+        RuntimeException failure = null;
+        for (Map.Entry<String, CompletableFuture<boolean[]>> entry : forwarded.entrySet()) {
+            try {
+                forwardedAccepted.put(entry.getKey(), join(entry.getValue()));
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            revertAccepted(localFunds, localAccepted, chunkStates, recovered);
+            throw failure;
+        }
+        boolean[] accepted = new boolean[funds.size()];
+        for (int i = 0; i < funds.size(); i++) {
+            accepted[i] = owners[i] == null ? localAccepted[positions[i]]
+                    : forwardedAccepted.get(owners[i])[positions[i]];
+        }
+        return accepted;
+    }
+
+    /**
+     * Takes back the accepted loads of a chunk that will not be saved, except the recovered ones saved by an earlier
+     * run.
+     */
+    private void revertAccepted(FundBatch funds, boolean[] accepted, Map<Long, CustomerState> chunkStates,
+                                LongPairHashSet recovered) {
+        for (int i = 0; i < accepted.length; i++) {
+            if (accepted[i] && !isRecovered(recovered, funds, i)) {
+                revert(funds, i, chunkStates.get(funds.getCustomerId(i)));
+            }
+        }
+    }
+
+    private static boolean[] join(CompletableFuture<boolean[]> decisions) {
+        try {
+            return decisions.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Unable to forward funds. error: " + e.getCause().getMessage(),
+                    e.getCause());
         }
-        return funds;
     }
 
     /**
-     * Populates a Fund object from the given JSON string.
+     * Saves the accepted funds of a validated chunk, then passes its decisions to the consumer and moves the
+     * checkpoint past the chunk. Runs on the persist executor, one chunk of an upload at a time.
+     */
+    private void persistChunk(PersistPipeline.ValidatedChunk chunk, Consumer<FundLoadResponse> consumer,
+                              LoadProgress progress) {
+        FundBatch newFunds = chunk.getAccepted();
+        log.info("{} funds are saving.", newFunds.size());
+        long persistStart = System.nanoTime();
+        fundStore.insertAll(newFunds);
+        chunk.markPersisted();
+        fundMetrics.recordStage(Stage.PERSIST, persistStart);
+        progress.addPersisted(newFunds.size());
+        log.info("{} funds saved successfully.", newFunds.size());
+
+        chunk.getResponses().forEach(consumer);
+        progress.addCommitted(chunk.getResponses().size());
+    }
+
+    /**
+     * Validates the funds of a chunk, shard by shard. Each shard validates its customers' funds in input order,
+     * and the shards run in parallel on the validation executor when there is more than one. When a shard fails,
+     * the other shards are still waited for, so the results filled in are final once the failure is thrown.
      *
-     * This method uses Jackson's ObjectMapper to deserialize the JSON string into a Fund object.
-     * If the deserialization fails, a warning log is generated, and null is returned.
+     * @param accepted  Receives the validation result of each fund, indexed like the chunk.
+     * @param recovered Receives the stored loads reported as accepted, or {@code null}.
+     */
+    private void validateChunk(FundBatch funds, Map<Long, CustomerState> chunkStates, int shards,
+                               boolean[] accepted, LongPairHashSet recovered) {
+        if (shards == 1) {
+            for (int i = 0; i < funds.size(); i++) {
+                accepted[i] = accept(funds, i, chunkStates.get(funds.getCustomerId(i)), recovered);
+            }
+            return;
+        }
+
+        int[][] shardIndexes = partition(funds, shards);
+        List<Future<?>> futures = new ArrayList<>(shards);
+        for (int[] indexes : shardIndexes) {
+            if (indexes.length == 0) {
+                continue;
+            }
+            futures.add(validationExecutor.submit(() -> {
+                for (int index : indexes) {
+                    accepted[index] = accept(funds, index, chunkStates.get(funds.getCustomerId(index)), recovered);
+                }
+            }));
+        }
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new IllegalStateException("Unable to validate funds. error: "
+                                + e.getCause().getMessage(), e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            if (failure == null) {
+                failure = new IllegalStateException("Interrupted while validating funds");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Validates a fund against its customer's state while holding the customer's lock. A fund ID seen before for the
+     * customer, in any batch or request, is rejected, whether the fund that had it was accepted or rejected.
+     * Rejections are counted by reason.
      *
-     * @param fundStr The JSON string representing the Fund object.
-     * @return A Fund object populated from the JSON string, or null if deserialization fails.
+     * @param recovered The stored loads already reported as accepted, when the fund may have been saved by an
+     *                  interrupted run, or {@code null}. The first fund with the ID of an accepted fund is reported as
+     *                  accepted and added to them, without changing the customer's state, which already counts the
+     *                  stored fund.
      */
-    private Fund populateFundObject(String fundStr) {
+    private boolean accept(FundBatch funds, int index, CustomerState customerState, LongPairHashSet recovered) {
+        long customerId = funds.getCustomerId(index);
+        long id = funds.getId(index);
+        Lock lock = customerStates.lockFor(customerId);
+        lock.lock();
         try {
-            //removing $ from load_amount value to be able to convert it ot double
-            fundStr = fundStr.replaceAll("\\$", "");
-            return new ObjectMapper().registerModule(new JavaTimeModule()).readValue(fundStr, Fund.class);
-        } catch (JsonProcessingException e) {
-            log.warn("Unable to convert fund string to Fund object. error: {}", e.getMessage(), e);
+            if (duplicateLoadIndex.contains(customerId, id)) {
+                if (recovered != null && duplicateLoadIndex.isAccepted(customerId, id)
+                        && recover(recovered, customerId, id)) {
+                    return true;
+                }
+                fundMetrics.recordDuplicate();
+                return false;
+            }
+            List<VelocityRule> violatedRules = customerState.accept(funds, index, validator, this::addStoredBuckets);
+            if (!violatedRules.isEmpty()) {
+                fundMetrics.recordViolations(violatedRules);
+                duplicateLoadIndex.addRejected(customerId, id, funds.getEpochSecond(index));
+                return false;
+            }
+            duplicateLoadIndex.add(customerId, id, funds.getEpochSecond(index));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the stored funds of a load's customer that fall in the buckets of the load, for a load older than the
+     * buckets its customer's state keeps.
+     */
+    private void addStoredBuckets(FundBatch funds, int index, CustomerAggregates buckets) {
+        long fetchStart = System.nanoTime();
+        var startDate = FundValues.toTime(funds.getEpochSecond(index)).minus(fundConfiguration.getHistoryRetention());
+        fundStore.forEachHistoryLoad(Set.of(funds.getCustomerId(index)), startDate, (customerId, loadCount,
+                amountCents, epochSecond) -> buckets.addToBucketsOf(funds, index, loadCount, amountCents, epochSecond));
+        fundMetrics.recordStage(Stage.FETCH, fetchStart);
+    }
+
+    /**
+     * @return {@code true} if the stored load was not reported as accepted before. Shards add their customers'
+     * loads concurrently.
+     */
+    private static boolean recover(LongPairHashSet recovered, long customerId, long id) {
+        synchronized (recovered) {
+            return recovered.add(customerId, id);
+        }
+    }
+
+    private static boolean isRecovered(LongPairHashSet recovered, FundBatch funds, int index) {
+        return recovered != null && recovered.contains(funds.getCustomerId(index), funds.getId(index));
+    }
+
+    private long inDoubtUntil(LoadProgress progress) {
+        return progress.getResumeFrom() > 0 ? progress.getResumeFrom() + fundConfiguration.getChunkSize() : 0;
+    }
+
+    /**
+     * Groups the chunk positions by customer shard, keeping input order within each shard.
+     */
+    private static int[][] partition(FundBatch funds, int shardCount) {
+        int[] shardOfFund = new int[funds.size()];
+        int[] shardSizes = new int[shardCount];
+        for (int i = 0; i < funds.size(); i++) {
+            shardOfFund[i] = shardOf(funds.getCustomerId(i), shardCount);
+            shardSizes[shardOfFund[i]]++;
         }
-        return null;
+        int[][] shardIndexes = new int[shardCount][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            shardIndexes[shard] = new int[shardSizes[shard]];
+            shardSizes[shard] = 0;
+        }
+        for (int i = 0; i < funds.size(); i++) {
+            int shard = shardOfFund[i];
+            shardIndexes[shard][shardSizes[shard]++] = i;
+        }
+        return shardIndexes;
+    }
+
+    private static int shardOf(long customerId, int shardCount) {
+        return Math.floorMod(CustomerStateRegistry.spread(customerId), shardCount);
+    }
+
+    /**
+     * Looks up and pins the state of every customer in the chunk. The existing funds of the customers that are not
+     * cached are fetched in one query and their state is registered; cached customers are skipped, since their funds
+     * accepted by earlier chunks and requests are tracked in memory.
+     *
+     * @param chunkStates Receives the state of each customer in the chunk, by customer ID, as soon as it is pinned.
+     */
+    private void getCustomerStates(FundBatch funds, Map<Long, CustomerState> chunkStates) {
+        Set<Long> customerIds = new HashSet<>();
+        for (int i = 0; i < funds.size(); i++) {
+            Long customerId = funds.getCustomerId(i);
+            if (!chunkStates.containsKey(customerId) && !customerIds.contains(customerId)) {
+                CustomerState customerState = customerStates.getPinned(customerId);
+                if (customerState == null) {
+                    customerIds.add(customerId);
+                } else {
+                    chunkStates.put(customerId, customerState);
+                }
+            }
+        }
+        if (customerIds.isEmpty()) {
+            return;
+        }
+        // Assume the earliest date in the chunk as the reference point.
+        // To cover the longest velocity window, retrieve data from that long before the earliest date.
+        long fetchStart = System.nanoTime();
+        var startDate = FundValues.toTime(funds.getEpochSecond(0)).minus(fundConfiguration.getHistoryRetention());
+        // The stored loads are folded into aggregates as they are read, so no Fund entity is built
+        Map<Long, CustomerAggregates> history = new HashMap<>();
+        customerIds.forEach(customerId -> {
+            CustomerAggregates aggregates = customerStates.newAggregates();
+            aggregates.startHistoryAt(FundValues.toEpochSecond(startDate));
+            history.put(customerId, aggregates);
+        });
+        fundStore.forEachHistoryLoad(customerIds, startDate, (customerId, loadCount, amountCents, epochSecond) ->
+                history.get(customerId).add(loadCount, amountCents, epochSecond));
+        history.forEach((customerId, aggregates) ->
+                chunkStates.put(customerId, customerStates.registerPinned(customerId, aggregates)));
+        fundMetrics.recordStage(Stage.FETCH, fetchStart);
+    }
+
+    /**
+     * Creates a FundLoadResponse object based on the provided validity and fund details.
+     *
+     * @param isValid The validity status of the fund load operation.
+     * @param funds   The batch holding the fund for which the response is being created.
+     * @param index   The index of the fund in the batch.
+     * @return A FundLoadResponse object representing the result of the fund load operation.
+     */
+    private FundLoadResponse populateResponse(boolean isValid, FundBatch funds, int index) {
+        return new FundLoadResponse(Long.toString(funds.getId(index)), Long.toString(funds.getCustomerId(index)), isValid);
     }
 }
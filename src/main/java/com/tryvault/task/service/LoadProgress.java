@@ -0,0 +1,103 @@
+package com.tryvault.task.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Progress of one upload through {@link FundService#loadFunds(java.io.InputStream, java.util.function.Consumer, LoadProgress)},
+ * updated once per chunk and readable from other threads while the upload runs.
+ *
+ * An upload interrupted after some of its chunks were committed can be resumed from its last checkpoint: a progress
+ * created with the number of committed loads skips that many loads of the input, counting them as parsed and
+ * committed only.
+ */
+public class LoadProgress {
+
+    private final long resumeFrom;
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong validated = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private volatile LongConsumer checkpointListener = committedLoads -> { };
+
+    public LoadProgress() {
+        this(0);
+    }
+
+    /**
+     * @param resumeFrom The number of loads at the start of the input that were committed by an earlier run.
+     */
+    public LoadProgress(long resumeFrom) {
+        this.resumeFrom = resumeFrom;
+        this.committed.set(resumeFrom);
+    }
+
+    /**
+     * @return The number of loads at the start of the input skipped because an earlier run committed them.
+     */
+    public long getResumeFrom() {
+        return resumeFrom;
+    }
+
+    /**
+     * @return The number of lines parsed.
+     */
+    public long getParsed() {
+        return parsed.get();
+    }
+
+    /**
+     * @return The number of loads decided.
+     */
+    public long getValidated() {
+        return validated.get();
+    }
+
+    /**
+     * @return The number of loads accepted.
+     */
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    /**
+     * @return The number of accepted loads saved to the store.
+     */
+    public long getPersisted() {
+        return persisted.get();
+    }
+
+    /**
+     * @return The number of loads at the start of the input whose chunk is saved and whose decisions were passed to
+     * the consumer: the checkpoint an interrupted upload can be resumed from.
+     */
+    public long getCommitted() {
+        return committed.get();
+    }
+
+    /**
+     * @param checkpointListener Called with the new checkpoint on the thread that committed a chunk, after the chunk's
+     *                           decisions were passed to the consumer.
+     */
+    public void setCheckpointListener(LongConsumer checkpointListener) {
+        this.checkpointListener = checkpointListener;
+    }
+
+    void addParsed(int count) {
+        parsed.addAndGet(count);
+    }
+
+    void addValidated(int count, int acceptedCount) {
+        validated.addAndGet(count);
+        accepted.addAndGet(acceptedCount);
+    }
+
+    void addPersisted(int count) {
+        persisted.addAndGet(count);
+    }
+
+    void addCommitted(int count) {
+        checkpointListener.accept(committed.addAndGet(count));
+    }
+}
@@ -0,0 +1,187 @@
+package com.tryvault.task.service;
+
+import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.model.FundBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Persists the validated chunks of one upload on the persist executor while the uploading thread parses and
+ * validates the next ones. Chunks are persisted one at a time and in input order, so the decisions of a chunk are
+ * reported after the chunks before it.
+ *
+ * The pipeline holds {@code capacity + 1} chunks: one being filled by the uploading thread and up to
+ * {@code capacity} waiting for or being persisted. When the store falls behind, {@link #acquire()} blocks until a
+ * chunk is persisted, so the uploading thread never runs more than {@code capacity} chunks ahead of the store.
+ * Once a chunk fails to persist, later chunks are skipped and the failure is thrown by the next
+ * {@link #acquire()} or by {@link #close()}. Every chunk, persisted or not, is passed to the releaser before it is
+ * reused, so the customer state it changed can be released or taken back.
+ */
+class PersistPipeline implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final Consumer<ValidatedChunk> persister;
+    private final Consumer<ValidatedChunk> releaser;
+    private final BlockingQueue<ValidatedChunk> freeChunks;
+    // Completes when the last submitted chunk is persisted, or with the first failure
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+    // Set by the first chunk that fails or is skipped before its slot is freed, so no chunk is filled while the later
+    // chunks are still being released
+    private volatile boolean failed;
+    // Whether the failure was thrown already, so closing the pipeline does not throw it again
+    private boolean failureThrown;
+
+    /**
+     * @param executor  The executor persisting the chunks.
+     * @param persister Persists a chunk and reports its decisions, called for one chunk at a time.
+     * @param releaser  Releases a chunk once it is persisted, skipped after a failure or discarded, in the order the
+     *                  chunks were submitted.
+     * @param chunkSize The maximum number of loads in a chunk.
+     * @param capacity  The maximum number of chunks waiting for or being persisted.
+     */
+    PersistPipeline(ExecutorService executor, Consumer<ValidatedChunk> persister, Consumer<ValidatedChunk> releaser,
+                    int chunkSize, int capacity) {
+        this.executor = executor;
+        this.persister = persister;
+        this.releaser = releaser;
+        int chunks = Math.max(1, capacity) + 1;
+        this.freeChunks = new ArrayBlockingQueue<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            freeChunks.add(new ValidatedChunk(chunkSize));
+        }
+    }
+
+    /**
+     * @return An empty chunk to fill, waiting for an earlier chunk to be persisted if every chunk is in flight.
+     */
+    ValidatedChunk acquire() {
+        ValidatedChunk chunk;
+        try {
+            chunk = freeChunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for funds to be saved", e);
+        }
+        if (failed) {
+            freeChunks.add(chunk);
+            await();
+        }
+        chunk.clear();
+        return chunk;
+    }
+
+    /**
+     * Queues a filled chunk to be persisted after the chunks submitted before it.
+     */
+    void submit(ValidatedChunk chunk) {
+        tail = tail.thenRunAsync(() -> persister.accept(chunk), executor)
+                .whenComplete((result, failure) -> {
+                    if (failure != null) {
+                        failed = true;
+                    }
+                    release(chunk);
+                });
+    }
+
+    /**
+     * Gives up a chunk that could not be filled, releasing it without persisting it.
+     */
+    void discard(ValidatedChunk chunk) {
+        release(chunk);
+    }
+
+    /**
+     * Waits until every submitted chunk is persisted.
+     *
+     * @throws RuntimeException The failure of the first chunk that could not be persisted, unless
+     *                          {@link #acquire()} threw it already.
+     */
+    @Override
+    public void close() {
+        if (!failureThrown) {
+            await();
+        }
+    }
+
+    private void release(ValidatedChunk chunk) {
+        try {
+            releaser.accept(chunk);
+        } finally {
+            freeChunks.add(chunk);
+        }
+    }
+
+    private void await() {
+        try {
+            tail.join();
+        } catch (CompletionException e) {
+            failureThrown = true;
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Unable to save funds. error: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * The decisions of a validated chunk, in input order, its accepted funds and the pinned states of its customers.
+     */
+    static final class ValidatedChunk {
+
+        private final List<FundLoadResponse> responses;
+        private final FundBatch accepted;
+        private final Map<Long, CustomerState> states = new HashMap<>();
+        private boolean persisted;
+
+        private ValidatedChunk(int chunkSize) {
+            this.responses = new ArrayList<>(chunkSize);
+            this.accepted = new FundBatch(chunkSize);
+        }
+
+        List<FundLoadResponse> getResponses() {
+            return responses;
+        }
+
+        FundBatch getAccepted() {
+            return accepted;
+        }
+
+        /**
+         * @return The state of each customer of the chunk decided on this node, by customer ID, pinned while the
+         * chunk is in the pipeline.
+         */
+        Map<Long, CustomerState> getStates() {
+            return states;
+        }
+
+        /**
+         * @return Whether the accepted funds were saved, even if reporting the decisions failed afterwards.
+         */
+        boolean isPersisted() {
+            return persisted;
+        }
+
+        /**
+         * Records that the accepted funds are saved, called by the persister as soon as they are committed.
+         */
+        void markPersisted() {
+            persisted = true;
+        }
+
+        private void clear() {
+            responses.clear();
+            accepted.clear();
+            states.clear();
+            persisted = false;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.tryvault.task.service;
+
+import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.config.FundConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Results of completed uploads by the SHA-256 hash of their content, so an upload sent again, typically retried by a
+ * client after a timeout, gets the decisions of the first run instead of being decided again against its own saved
+ * loads.
+ *
+ * The cache holds at most {@code fund.resultCacheSize} results in total, evicting the least recently used uploads
+ * first; an upload with more results than that is not cached. Results are kept as primitive arrays, about 17 bytes
+ * per result. Hashes are the standard Base64 encoding of the digest, as in a {@code Content-Digest} header.
+ *
+ * An upload whose hash is known before it is decided claims the hash while it runs, so an identical upload sent
+ * meanwhile waits for its results instead of being decided concurrently and rejected as its duplicate.
+ */
+@Component
+public class ResultCache {
+    private static final Logger log = LoggerFactory.getLogger(ResultCache.class);
+
+    static final String ALGORITHM = "SHA-256";
+
+    // Ordered from least to most recently used
+    private final LinkedHashMap<String, Results> uploads = new LinkedHashMap<>(16, 0.75f, true);
+    // Hashes of the uploads being decided under a claim
+    private final Set<String> inFlight = new HashSet<>();
+    private final long maxResults;
+    private long size;
+
+    @Autowired
+    public ResultCache(FundConfiguration fundConfiguration) {
+        this.maxResults = fundConfiguration.getResultCacheSize();
+    }
+
+    /**
+     * @return Whether results are cached at all.
+     */
+    public boolean isEnabled() {
+        return maxResults > 0;
+    }
+
+    /**
+     * Passes the cached results of an upload to the consumer, in input order.
+     *
+     * @param contentHash The hash of the upload's content.
+     * @param consumer    The consumer receiving the results.
+     * @return Whether the upload's results were cached.
+     */
+    public boolean replay(String contentHash, Consumer<FundLoadResponse> consumer) {
+        Results results;
+        synchronized (this) {
+            results = uploads.get(contentHash);
+        }
+        if (results == null) {
+            return false;
+        }
+        replay(contentHash, results, consumer);
+        return true;
+    }
+
+    /**
+     * Waits for an upload with the same content that is being decided under a claim, then passes its cached results
+     * to the consumer, in input order. If no results are cached, the content is claimed for the caller to decide
+     * instead, and identical uploads wait until the claim is closed.
+     *
+     * @param contentHash The hash of the upload's content.
+     * @param consumer    The consumer receiving the results.
+     * @return The claim to close once the upload is decided and its results stored, or null if the cached results
+     * were passed to the consumer.
+     * @throws InterruptedIOException If the thread is interrupted while waiting.
+     */
+    public Claim replayOrClaim(String contentHash, Consumer<FundLoadResponse> consumer) throws InterruptedIOException {
+        Results results;
+        synchronized (this) {
+            try {
+                while (inFlight.contains(contentHash)) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for upload " + contentHash);
+            }
+            results = uploads.get(contentHash);
+            if (results == null) {
+                inFlight.add(contentHash);
+                return new Claim(contentHash);
+            }
+        }
+        replay(contentHash, results, consumer);
+        return null;
+    }
+
+    private static void replay(String contentHash, Results results, Consumer<FundLoadResponse> consumer) {
+        log.info("Replaying {} cached results of upload {}.", results.size, contentHash);
+        for (int i = 0; i < results.size; i++) {
+            consumer.accept(new FundLoadResponse(Long.toString(results.ids[i]), Long.toString(results.customerIds[i]),
+                    results.accepted.get(i)));
+        }
+    }
+
+    /**
+     * @return A recorder collecting the results of one upload as they are decided, to be stored once the upload
+     * completes.
+     */
+    Recorder newRecorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Stores the results collected by the recorder, unless there were too many of them.
+     */
+    synchronized void put(String contentHash, Recorder recorder) {
+        if (recorder.overflowed || recorder.size == 0) {
+            return;
+        }
+        Results results = new Results(Arrays.copyOf(recorder.ids, recorder.size),
+                Arrays.copyOf(recorder.customerIds, recorder.size), recorder.accepted, recorder.size);
+        Results previous = uploads.put(contentHash, results);
+        size += results.size - (previous != null ? previous.size : 0);
+        var iterator = uploads.values().iterator();
+        while (size > maxResults && iterator.hasNext()) {
+            size -= iterator.next().size;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Reads the rest of the stream, hashing every byte the digest stream passes through.
+     *
+     * @return The hash of all the content read through the stream.
+     */
+    static String finish(DigestInputStream input) throws IOException {
+        input.transferTo(OutputStream.nullOutputStream());
+        return Base64.getEncoder().encodeToString(input.getMessageDigest().digest());
+    }
+
+    /**
+     * @param input The content to hash, read to the end.
+     * @return The hash of the content.
+     * @throws IOException If the content cannot be read.
+     */
+    public static String hash(InputStream input) throws IOException {
+        return finish(digest(input));
+    }
+
+    static DigestInputStream digest(InputStream input) {
+        try {
+            return new DigestInputStream(input, MessageDigest.getInstance(ALGORITHM));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private synchronized void release(String contentHash) {
+        inFlight.remove(contentHash);
+        notifyAll();
+    }
+
+    /**
+     * The content of an upload being decided. Closing it lets the identical uploads waiting for it look up its
+     * results; closing it again has no effect.
+     */
+    public final class Claim implements AutoCloseable {
+
+        private final String contentHash;
+        private boolean closed;
+
+        private Claim(String contentHash) {
+            this.contentHash = contentHash;
+        }
+
+        @Override
+        public void close() {
+            synchronized (ResultCache.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(contentHash);
+        }
+    }
+
+    private record Results(long[] ids, long[] customerIds, BitSet accepted, int size) {
+    }
+
+    /**
+     * Collects the results of one upload, giving up once they no longer fit in the cache. Results are added by one
+     * thread at a time.
+     */
+    final class Recorder implements Consumer<FundLoadResponse> {
+
+        private long[] ids = new long[1024];
+        private long[] customerIds = new long[1024];
+        private final BitSet accepted = new BitSet();
+        private int size;
+        private boolean overflowed;
+
+        private Recorder() {
+        }
+
+        @Override
+        public void accept(FundLoadResponse response) {
+            if (overflowed) {
+                return;
+            }
+            if (size >= maxResults) {
+                overflowed = true;
+                ids = null;
+                customerIds = null;
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                customerIds = Arrays.copyOf(customerIds, size * 2);
+            }
+            ids[size] = Long.parseLong(response.getId());
+            customerIds[size] = Long.parseLong(response.getCustomerId());
+            accepted.set(size, response.isAccepted());
+            size++;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.tryvault.task.service;
+
+import com.tryvault.task.config.FundConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for file uploads decided while the client waits, so a burst of large uploads cannot exhaust the
+ * heap. Single loads and background jobs are not admitted here: single loads stay fast while uploads run, and jobs
+ * have their own queue.
+ *
+ * At most {@code fund.uploadConcurrency} uploads run at a time, and the uploads buffered in memory may total at most
+ * {@code fund.uploadMaxInFlightBytes}; a larger upload runs alone. An upload that does not fit waits up to
+ * {@code fund.uploadQueueTimeout}, with at most {@code fund.uploadQueueCapacity} uploads waiting. A client may have at
+ * most {@code fund.uploadsPerClient} uploads running or waiting, so one client cannot take every slot. Uploads
+ * beyond any of these limits are refused right away.
+ *
+ * Waiting uploads are admitted in arrival order: only the upload at the head of the queue may take the capacity that
+ * frees up, and a new upload queues behind waiting ones even if it would fit. A large upload waiting for the memory
+ * of several running ones is thus not overtaken by a stream of small ones.
+ */
+@Component
+public class UploadAdmission {
+    private static final Logger log = LoggerFactory.getLogger(UploadAdmission.class);
+
+    private final int concurrency;
+    private final long maxInFlightBytes;
+    private final int queueCapacity;
+    private final long queueTimeoutNanos;
+    private final int uploadsPerClient;
+    private final Duration retryAfter;
+
+    private final Map<String, Integer> clientUploads = new HashMap<>();
+    // A ticket per waiting upload, in arrival order
+    private final Deque<Object> queue = new ArrayDeque<>();
+    private int running;
+    private long inFlightBytes;
+
+    @Autowired
+    public UploadAdmission(FundConfiguration fundConfiguration) {
+        this.concurrency = Math.max(1, fundConfiguration.getUploadConcurrency());
+        this.maxInFlightBytes = fundConfiguration.getUploadMaxInFlightBytes().toBytes();
+        this.queueCapacity = fundConfiguration.getUploadQueueCapacity();
+        this.queueTimeoutNanos = fundConfiguration.getUploadQueueTimeout().toNanos();
+        this.uploadsPerClient = Math.max(1, fundConfiguration.getUploadsPerClient());
+        // About the time an upload waits for a running one to finish before it is refused
+        this.retryAfter = fundConfiguration.getUploadQueueTimeout().isZero()
+                ? Duration.ofSeconds(1) : fundConfiguration.getUploadQueueTimeout();
+    }
+
+    /**
+     * Admits an upload, waiting for running uploads to finish and for the uploads queued before it to be admitted if
+     * it does not fit or others are waiting.
+     *
+     * @param clientId The client sending the upload.
+     * @param bytes    The size of the upload held in memory while it is decided, 0 if it is streamed.
+     * @return The permit of the upload, to be closed once it is decided.
+     * @throws RejectedExecutionException If the client has too many uploads, the wait queue is full or the upload
+     *                                    did not fit before the queue timeout.
+     */
+    public synchronized Permit admit(String clientId, long bytes) {
+        if (clientUploads.getOrDefault(clientId, 0) >= uploadsPerClient) {
+            throw reject(clientId, "the client has " + uploadsPerClient + " uploads in progress");
+        }
+        // An upload larger than the limit is admitted once nothing else is in flight
+        long weight = Math.min(Math.max(0, bytes), maxInFlightBytes);
+        if (!queue.isEmpty() || !fits(weight)) {
+            if (queue.size() >= queueCapacity) {
+                throw reject(clientId, "the upload queue is full");
+            }
+            Object ticket = new Object();
+            queue.addLast(ticket);
+            clientUploads.merge(clientId, 1, Integer::sum);
+            try {
+                long deadline = System.nanoTime() + queueTimeoutNanos;
+                while (queue.peekFirst() != ticket || !fits(weight)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw reject(clientId, "no upload finished in time");
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject(clientId, "interrupted while waiting");
+            } finally {
+                queue.remove(ticket);
+                release(clientId);
+                // The next upload in the queue may be at the head now, whether this one was admitted or gave up
+                notifyAll();
+            }
+        }
+        clientUploads.merge(clientId, 1, Integer::sum);
+        running++;
+        inFlightBytes += weight;
+        return new Permit(clientId, weight);
+    }
+
+    /**
+     * @return How long a refused client should wait before sending the upload again.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getWaiting() {
+        return queue.size();
+    }
+
+    private boolean fits(long weight) {
+        return running < concurrency && inFlightBytes + weight <= maxInFlightBytes;
+    }
+
+    private synchronized void finish(Permit permit) {
+        running--;
+        inFlightBytes -= permit.weight;
+        release(permit.clientId);
+        notifyAll();
+    }
+
+    private void release(String clientId) {
+        clientUploads.computeIfPresent(clientId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private RejectedExecutionException reject(String clientId, String reason) {
+        log.warn("Upload from {} refused: {}.", clientId, reason);
+        return new RejectedExecutionException("Upload refused: " + reason);
+    }
+
+    /**
+     * An admitted upload. Closing it lets the next upload in; closing it again has no effect.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final String clientId;
+        private final long weight;
+        private boolean closed;
+
+        private Permit(String clientId, long weight) {
+            this.clientId = clientId;
+            this.weight = weight;
+        }
+
+        @Override
+        public void close() {
+            synchronized (UploadAdmission.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            finish(this);
+        }
+    }
+}
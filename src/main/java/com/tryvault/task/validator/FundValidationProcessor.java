@@ -1,6 +1,14 @@
 package com.tryvault.task.validator;
 
+import com.tryvault.task.aggregate.CustomerAggregates;
+import com.tryvault.task.aggregate.VelocityCalendar;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.config.FundConfiguration;
 import com.tryvault.task.entity.Fund;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.model.FundValues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -9,21 +17,71 @@ import java.util.List;
 @Service
 public class FundValidationProcessor {
 
-    private final VelocityLimitValidator velocityLimitValidator;
+    private static final Logger log = LoggerFactory.getLogger(FundValidationProcessor.class);
+
+    private final VelocityCalendar calendar;
+    private final VelocityRuleEvaluator ruleEvaluator;
 
     @Autowired
-    public FundValidationProcessor(DailyVelocityLimitValidator dailyVelocityLimitValidator,
-                                   WeeklyVelocityLimitValidator weeklyVelocityLimitValidator) {
+    public FundValidationProcessor(FundConfiguration fundConfiguration) {
+        calendar = new VelocityCalendar(fundConfiguration.getZone(), fundConfiguration.getWeekStart());
+        // Compiling the velocity rules declared under fund.rules into a single evaluator
+        // so every window is checked in one pass over the customer's aggregates
+        ruleEvaluator = new VelocityRuleEvaluator(fundConfiguration.getRules(), calendar);
+        log.info("Velocity rules: {}, in {}", fundConfiguration.getRules(), calendar);
+    }
 
-        // Creating a chain of fund validators to execute in a specific order
-        // Setting the next validator for daily fund validation to be the weekly fund validator
-        dailyVelocityLimitValidator.setNextValidator(weeklyVelocityLimitValidator);
+    public boolean isValid(CustomerAggregates aggregates, Fund fund) {
+        return isValid(aggregates, fund.getFundId().getId(), FundValues.toCents(fund.getLoadAmount()),
+                FundValues.toEpochSecond(fund.getTime()));
+    }
+
+    public boolean isValid(CustomerAggregates aggregates, long id, long loadAmountCents, long epochSecond) {
+        return validate(aggregates, id, loadAmountCents, epochSecond).isEmpty();
+    }
+
+    /**
+     * Validates a load against every configured velocity rule.
+     *
+     * @param aggregates      The aggregates of the customer's existing funds.
+     * @param id              The ID of the load to be validated.
+     * @param loadAmountCents The amount of the load in cents.
+     * @param epochSecond     The time of the load in epoch seconds (UTC).
+     * @return The violated rules, empty if the load is valid.
+     */
+    public List<VelocityRule> validate(CustomerAggregates aggregates, long id, long loadAmountCents, long epochSecond) {
+        List<VelocityRule> violatedRules = ruleEvaluator.evaluate(aggregates, loadAmountCents, epochSecond);
+        violatedRules.forEach(rule -> log.warn("Validation failed: Fund {} exceeds {} limit ({}).",
+                id, rule.getName(), rule.getLimit()));
+        return violatedRules;
+    }
+
+    /**
+     * Validates a load against every configured velocity rule, using the bucket keys computed with the load.
+     *
+     * @param aggregates The aggregates of the customer's existing funds.
+     * @param funds      The batch holding the load, created with {@link #getCalendar()}.
+     * @param index      The index of the load in the batch.
+     * @return The violated rules, empty if the load is valid.
+     */
+    public List<VelocityRule> validate(CustomerAggregates aggregates, FundBatch funds, int index) {
+        List<VelocityRule> violatedRules = ruleEvaluator.evaluate(aggregates, funds, index);
+        violatedRules.forEach(rule -> log.warn("Validation failed: Fund {} exceeds {} limit ({}).",
+                funds.getId(index), rule.getName(), rule.getLimit()));
+        return violatedRules;
+    }
 
-        // Setting the entry point of the validation chain to be the daily fund validator
-        velocityLimitValidator = dailyVelocityLimitValidator;
+    /**
+     * @return The calendar of the configured time zone and week start, defining the buckets of the velocity windows.
+     */
+    public VelocityCalendar getCalendar() {
+        return calendar;
     }
 
-    public boolean isValid(List<Fund> existingFunds, Fund fund) {
-        return velocityLimitValidator.validate(existingFunds, fund);
+    /**
+     * @return The velocity windows customer aggregates must track for the configured rules.
+     */
+    public VelocityWindow[] getWindows() {
+        return ruleEvaluator.getWindows();
     }
 }
@@ -0,0 +1,15 @@
+package com.tryvault.task.validator;
+
+/**
+ * Quantity a velocity rule limits within its window.
+ */
+public enum VelocityMetric {
+    /**
+     * Sum of the load amounts in the window.
+     */
+    AMOUNT,
+    /**
+     * Number of loads in the window.
+     */
+    COUNT
+}
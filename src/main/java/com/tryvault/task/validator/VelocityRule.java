@@ -0,0 +1,45 @@
+package com.tryvault.task.validator;
+
+import com.tryvault.task.aggregate.VelocityWindow;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * A velocity limit declared under {@code fund.rules}: the {@link VelocityMetric} of a customer's loads within one
+ * {@link VelocityWindow} bucket, including the load being validated, must not exceed {@code limit}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class VelocityRule {
+
+    private String name;
+
+    private VelocityWindow window;
+
+    private VelocityMetric metric;
+
+    private double limit;
+
+    /**
+     * @param count           The number of the customer's existing loads in the bucket of the new load.
+     * @param amountCents     The amount sum in cents of the customer's existing loads in the bucket of the new load.
+     * @param loadAmountCents The amount of the new load in cents.
+     * @return {@code true} if accepting the new load would exceed this rule's limit.
+     */
+    boolean isViolatedBy(int count, long amountCents, long loadAmountCents) {
+        return switch (metric) {
+            // Amount limits are compared in whole cents, so sums do not drift
+            case AMOUNT -> amountCents + loadAmountCents > Math.round(limit * 100);
+            case COUNT -> count + 1 > limit;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + metric + " per " + window + " <= " + limit + ")";
+    }
+}
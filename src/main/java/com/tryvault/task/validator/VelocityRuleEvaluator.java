@@ -0,0 +1,118 @@
+package com.tryvault.task.validator;
+
+import com.tryvault.task.aggregate.CustomerAggregates;
+import com.tryvault.task.aggregate.VelocityCalendar;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.model.FundBatch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Evaluates a set of velocity rules compiled by window, so the customer's totals of each window are looked up
+ * once per load however many rules share that window.
+ */
+public class VelocityRuleEvaluator {
+
+    private final VelocityWindow[] windows;
+    private final VelocityRule[][] rulesByWindow;
+    private final CustomerAggregates emptyAggregates;
+
+    /**
+     * @param rules The velocity rules to evaluate, in the {@link VelocityCalendar#DEFAULT} calendar.
+     */
+    public VelocityRuleEvaluator(List<VelocityRule> rules) {
+        this(rules, VelocityCalendar.DEFAULT);
+    }
+
+    /**
+     * @param rules    The velocity rules to evaluate.
+     * @param calendar The calendar defining the buckets of the rules' windows.
+     */
+    public VelocityRuleEvaluator(List<VelocityRule> rules, VelocityCalendar calendar) {
+        Map<VelocityWindow, List<VelocityRule>> grouped = new LinkedHashMap<>();
+        for (VelocityRule rule : rules) {
+            Objects.requireNonNull(rule.getWindow(), () -> "window is required for velocity rule " + rule.getName());
+            Objects.requireNonNull(rule.getMetric(), () -> "metric is required for velocity rule " + rule.getName());
+            grouped.computeIfAbsent(rule.getWindow(), k -> new ArrayList<>()).add(rule);
+        }
+        windows = grouped.keySet().toArray(new VelocityWindow[0]);
+        rulesByWindow = grouped.values().stream()
+                .map(windowRules -> windowRules.toArray(new VelocityRule[0]))
+                .toArray(VelocityRule[][]::new);
+        emptyAggregates = new CustomerAggregates(calendar, windows);
+    }
+
+    /**
+     * @return The distinct windows the rules are evaluated over, which customer aggregates must track.
+     */
+    public VelocityWindow[] getWindows() {
+        return windows.clone();
+    }
+
+    /**
+     * Evaluates every rule against the customer's aggregates in a single pass over the windows.
+     *
+     * @param aggregates      The aggregates of the customer's existing funds, or {@code null} if the customer has none.
+     * @param loadAmountCents The amount of the load to be validated, in cents.
+     * @param epochSecond     The time of the load to be validated, in epoch seconds (UTC).
+     * @return The rules the load would violate, empty if the load is valid.
+     */
+    public List<VelocityRule> evaluate(CustomerAggregates aggregates, long loadAmountCents, long epochSecond) {
+        if (aggregates == null) {
+            aggregates = emptyAggregates;
+        }
+        List<VelocityRule> violated = null;
+        for (int i = 0; i < windows.length; i++) {
+            violated = evaluateWindow(i, aggregates, aggregates.findBucket(windows[i], epochSecond), loadAmountCents,
+                    violated);
+        }
+        return violated == null ? List.of() : violated;
+    }
+
+    /**
+     * Evaluates every rule against the customer's aggregates using the bucket keys computed with the load, so each
+     * window is matched by int equality.
+     *
+     * @param aggregates The aggregates of the customer's existing funds, or {@code null} if the customer has none.
+     * @param funds      The batch holding the load, created with the calendar of the aggregates.
+     * @param index      The index of the load in the batch.
+     * @return The rules the load would violate, empty if the load is valid.
+     */
+    public List<VelocityRule> evaluate(CustomerAggregates aggregates, FundBatch funds, int index) {
+        if (aggregates == null) {
+            aggregates = emptyAggregates;
+        }
+        aggregates.checkCalendar(funds);
+        long loadAmountCents = funds.getAmountCents(index);
+        List<VelocityRule> violated = null;
+        for (int i = 0; i < windows.length; i++) {
+            int bucket = aggregates.findBucketByKey(windows[i], funds.getBucketKey(index, windows[i]));
+            violated = evaluateWindow(i, aggregates, bucket, loadAmountCents, violated);
+        }
+        return violated == null ? List.of() : violated;
+    }
+
+    /**
+     * Evaluates the rules of one window against the totals of the load's bucket.
+     *
+     * @return The violated rules so far, created when the first rule is violated.
+     */
+    private List<VelocityRule> evaluateWindow(int window, CustomerAggregates aggregates, int bucket,
+                                              long loadAmountCents, List<VelocityRule> violated) {
+        int count = aggregates.getCount(bucket);
+        long amountCents = aggregates.getAmountCents(bucket);
+        for (VelocityRule rule : rulesByWindow[window]) {
+            if (rule.isViolatedBy(count, amountCents, loadAmountCents)) {
+                if (violated == null) {
+                    violated = new ArrayList<>(2);
+                }
+                violated.add(rule);
+            }
+        }
+        return violated;
+    }
+}
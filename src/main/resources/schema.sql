@@ -7,4 +7,16 @@ CREATE TABLE IF NOT EXISTS Fund (
 );
 
 ALTER TABLE Fund ADD CONSTRAINT CK_amount CHECK (load_amount IS NOT NULL AND load_amount >= 0);
-ALTER TABLE Fund ADD CONSTRAINT CK_createdAt CHECK (time IS NOT NULL);
\ No newline at end of file
+ALTER TABLE Fund ADD CONSTRAINT CK_createdAt CHECK (time IS NOT NULL);
+
+-- Covers the history query: the loads of a customer are read in time order from the index alone
+CREATE INDEX IF NOT EXISTS IX_Fund_customer_time ON Fund (customer_id, time, load_amount);
+
+-- Load count and amount sum of each customer's day in fund.zone, updated in the same transaction as the Fund inserts
+CREATE TABLE IF NOT EXISTS FundDaily (
+    customer_id INT NOT NULL,
+    load_day DATE NOT NULL,
+    load_count INT NOT NULL,
+    amount_cents BIGINT NOT NULL,
+    PRIMARY KEY (customer_id, load_day)
+);
@@ -0,0 +1,178 @@
+package com.tryvault.task.aggregate;
+
+import com.tryvault.task.entity.Fund;
+import com.tryvault.task.model.FundBatch;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerAggregatesTest {
+
+    /**
+     * Test that loads on the same day are summed and counted together while other days stay separate.
+     */
+    @Test
+    void testDailyBuckets() {
+        CustomerAggregates aggregates = new CustomerAggregates(VelocityWindow.DAY, VelocityWindow.WEEK);
+        aggregates.add(getFund(100, LocalDateTime.of(2000, 1, 3, 0, 0)));
+        aggregates.add(getFund(250.5, LocalDateTime.of(2000, 1, 3, 23, 59, 59)));
+        aggregates.add(getFund(400, LocalDateTime.of(2000, 1, 4, 0, 0)));
+
+        assertEquals(2, aggregates.getCount(VelocityWindow.DAY, epochSecond(2000, 1, 3, 12)));
+        assertEquals(35050, aggregates.getAmountCents(VelocityWindow.DAY, epochSecond(2000, 1, 3, 12)));
+        assertEquals(1, aggregates.getCount(VelocityWindow.DAY, epochSecond(2000, 1, 4, 12)));
+        assertEquals(0, aggregates.getCount(VelocityWindow.DAY, epochSecond(2000, 1, 5, 12)));
+        assertEquals(0, aggregates.getAmountCents(VelocityWindow.DAY, epochSecond(2000, 1, 5, 12)));
+    }
+
+    /**
+     * Test that loads in the same Sunday to Saturday week are summed together and a new week starts from zero.
+     */
+    @Test
+    void testWeeklyBuckets() {
+        CustomerAggregates aggregates = new CustomerAggregates(VelocityWindow.DAY, VelocityWindow.WEEK);
+        aggregates.add(getFund(1000, LocalDateTime.of(2000, 1, 2, 0, 0)));
+        aggregates.add(getFund(2000, LocalDateTime.of(2000, 1, 8, 23, 0)));
+
+        assertEquals(300000, aggregates.getAmountCents(VelocityWindow.WEEK, epochSecond(2000, 1, 7, 0)));
+        assertEquals(0, aggregates.getAmountCents(VelocityWindow.WEEK, epochSecond(2000, 1, 9, 0)));
+    }
+
+    /**
+     * Test that a day's total counts in the day, week and month like the loads it sums.
+     */
+    @Test
+    void testDailyTotal() {
+        CustomerAggregates aggregates = new CustomerAggregates(VelocityWindow.DAY, VelocityWindow.WEEK, VelocityWindow.MONTH);
+        aggregates.add(3, 450000, epochSecond(2000, 1, 3, 0));
+        aggregates.add(20000, epochSecond(2000, 1, 3, 18));
+
+        assertEquals(4, aggregates.getCount(VelocityWindow.DAY, epochSecond(2000, 1, 3, 12)));
+        assertEquals(470000, aggregates.getAmountCents(VelocityWindow.DAY, epochSecond(2000, 1, 3, 12)));
+        assertEquals(470000, aggregates.getAmountCents(VelocityWindow.WEEK, epochSecond(2000, 1, 7, 0)));
+        assertEquals(4, aggregates.getCount(VelocityWindow.MONTH, epochSecond(2000, 1, 31, 0)));
+    }
+
+    /**
+     * Test that a window keeps the buckets within its own length and the reorder margin of the newest one, and that a
+     * load older than those, such as one a few days or months late, is reported incomplete rather than counted in an
+     * empty bucket.
+     */
+    @Test
+    void testOldestBucketDropped() {
+        CustomerAggregates aggregates = new CustomerAggregates(VelocityWindow.DAY, VelocityWindow.WEEK);
+        int days = CustomerAggregates.bucketCount(VelocityWindow.DAY);
+        for (int day = 1; day <= days + 1; day++) {
+            aggregates.add(10000, epochSecond(2000, 1, day, 12));
+        }
+        FundBatch funds = new FundBatch(3, VelocityCalendar.DEFAULT);
+        funds.add(1, 1, 10000, epochSecond(2000, 1, 1, 18));
+        funds.add(2, 1, 10000, epochSecond(1999, 10, 1, 12));
+        funds.add(3, 1, 10000, epochSecond(2000, 1, 2, 18));
+        aggregates.add(funds, 1);
+
+        assertEquals(-1, aggregates.findBucket(VelocityWindow.DAY, epochSecond(2000, 1, 1, 0)));
+        assertEquals(1, aggregates.getCount(VelocityWindow.DAY, epochSecond(2000, 1, 2, 0)));
+        assertEquals(0, aggregates.getCount(VelocityWindow.DAY, epochSecond(1999, 10, 1, 0)));
+        assertFalse(aggregates.isComplete(funds, 0));
+        assertFalse(aggregates.isComplete(funds, 1));
+        assertTrue(aggregates.isComplete(funds, 2));
+    }
+
+    /**
+     * Test that every window's ring is sized from its own length, so an hourly window next to a monthly one keeps a
+     * day's worth of hours rather than a month's.
+     */
+    @Test
+    void testSlotsSizedPerWindow() {
+        assertEquals(28, CustomerAggregates.bucketCount(VelocityWindow.HOUR));
+        assertEquals(5, CustomerAggregates.bucketCount(VelocityWindow.DAY));
+        assertEquals(4, CustomerAggregates.bucketCount(VelocityWindow.WEEK));
+        assertEquals(4, CustomerAggregates.bucketCount(VelocityWindow.MONTH));
+        assertEquals(32, new CustomerAggregates(VelocityWindow.HOUR, VelocityWindow.MONTH).getSlotCount());
+        assertEquals(41, new CustomerAggregates(VelocityWindow.values()).getSlotCount());
+    }
+
+    /**
+     * Test that the buckets up to the one the stored history starts in are incomplete, in every window.
+     */
+    @Test
+    void testHistoryStartIncomplete() {
+        CustomerAggregates aggregates = new CustomerAggregates(VelocityWindow.DAY, VelocityWindow.WEEK);
+        aggregates.startHistoryAt(epochSecond(2000, 1, 5, 12));
+        FundBatch funds = new FundBatch(3, VelocityCalendar.DEFAULT);
+        funds.add(1, 1, 10000, epochSecond(2000, 1, 5, 18));
+        funds.add(2, 1, 10000, epochSecond(2000, 1, 7, 12));
+        funds.add(3, 1, 10000, epochSecond(2000, 1, 9, 12));
+
+        assertFalse(aggregates.isComplete(funds, 0));
+        // The day is complete but not its Sunday to Saturday week
+        assertFalse(aggregates.isComplete(funds, 1));
+        assertTrue(aggregates.isComplete(funds, 2));
+    }
+
+    /**
+     * Test that stored loads are only added to the buckets they share with a given load.
+     */
+    @Test
+    void testAddToBucketsOfLoad() {
+        CustomerAggregates aggregates = new CustomerAggregates(VelocityWindow.DAY, VelocityWindow.WEEK);
+        FundBatch funds = new FundBatch(1, VelocityCalendar.DEFAULT);
+        funds.add(1, 1, 10000, epochSecond(2000, 1, 4, 12));
+        aggregates.addToBucketsOf(funds, 0, 1, 20000, epochSecond(2000, 1, 4, 8));
+        aggregates.addToBucketsOf(funds, 0, 2, 30000, epochSecond(2000, 1, 3, 8));
+        aggregates.addToBucketsOf(funds, 0, 1, 40000, epochSecond(2000, 1, 10, 8));
+
+        assertEquals(1, aggregates.getCount(VelocityWindow.DAY, epochSecond(2000, 1, 4, 0)));
+        assertEquals(0, aggregates.getCount(VelocityWindow.DAY, epochSecond(2000, 1, 3, 0)));
+        assertEquals(50000, aggregates.getAmountCents(VelocityWindow.WEEK, epochSecond(2000, 1, 4, 0)));
+        assertEquals(0, aggregates.getAmountCents(VelocityWindow.WEEK, epochSecond(2000, 1, 10, 0)));
+    }
+
+    /**
+     * Test that loads added with the bucket keys computed when they were parsed land in the buckets of their time,
+     * and that keys of another calendar are refused.
+     */
+    @Test
+    void testPrecomputedBucketKeys() {
+        VelocityCalendar calendar = new VelocityCalendar(ZoneOffset.UTC, DayOfWeek.MONDAY);
+        CustomerAggregates aggregates = new CustomerAggregates(calendar, VelocityWindow.DAY, VelocityWindow.WEEK);
+        FundBatch funds = new FundBatch(2, calendar);
+        funds.add(1, 1, 10000, epochSecond(2000, 1, 2, 12));
+        funds.add(2, 1, 20000, epochSecond(2000, 1, 3, 12));
+        aggregates.add(funds, 0);
+        aggregates.add(funds, 1);
+
+        // Sunday 2000-01-02 ends a Monday to Sunday week
+        assertEquals(10000, aggregates.getAmountCents(VelocityWindow.WEEK, epochSecond(2000, 1, 1, 0)));
+        assertEquals(20000, aggregates.getAmountCents(VelocityWindow.WEEK, epochSecond(2000, 1, 9, 0)));
+        FundBatch otherCalendar = new FundBatch(1, VelocityCalendar.DEFAULT);
+        otherCalendar.add(3, 1, 100, epochSecond(2000, 1, 3, 12));
+        assertThrows(IllegalArgumentException.class, () -> aggregates.add(otherCalendar, 0));
+    }
+
+    /**
+     * Test that asking for a window the aggregates do not track fails.
+     */
+    @Test
+    void testUntrackedWindow() {
+        CustomerAggregates aggregates = new CustomerAggregates(VelocityWindow.DAY);
+
+        assertThrows(IllegalArgumentException.class, () -> aggregates.getCount(VelocityWindow.WEEK, 0));
+    }
+
+    private static long epochSecond(int year, int month, int day, int hour) {
+        return LocalDateTime.of(year, month, day, hour, 0).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Helper method to create a Fund with the given load amount and time.
+     */
+    private static Fund getFund(double loadAmount, LocalDateTime time) {
+        return Fund.create(1L, 1L, loadAmount, time);
+    }
+}
@@ -0,0 +1,91 @@
+package com.tryvault.task.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VelocityCalendarTest {
+
+    private static final VelocityCalendar ISO_WEEKS = new VelocityCalendar(ZoneOffset.UTC, DayOfWeek.MONDAY);
+    private static final VelocityCalendar NEW_YORK = new VelocityCalendar(ZoneId.of("America/New_York"), DayOfWeek.SUNDAY);
+    private static final VelocityCalendar BERLIN = new VelocityCalendar(ZoneId.of("Europe/Berlin"), DayOfWeek.MONDAY);
+
+    /**
+     * Test that a Sunday to Saturday week spanning New Year is one bucket, and the next week starts on Sunday.
+     */
+    @Test
+    void testSundayWeeksAcrossYears() {
+        VelocityCalendar calendar = VelocityCalendar.DEFAULT;
+
+        // Sunday 1999-12-26 to Saturday 2000-01-01
+        assertEquals(calendar.bucketKey(VelocityWindow.WEEK, epochSecond("1999-12-26T00:00:00Z")),
+                calendar.bucketKey(VelocityWindow.WEEK, epochSecond("2000-01-01T23:59:59Z")));
+        assertEquals(calendar.bucketKey(VelocityWindow.WEEK, epochSecond("2000-01-01T23:59:59Z")) + 1,
+                calendar.bucketKey(VelocityWindow.WEEK, epochSecond("2000-01-02T00:00:00Z")));
+    }
+
+    /**
+     * Test that weeks starting on Monday split a Sunday from the following Monday.
+     */
+    @Test
+    void testMondayWeeks() {
+        assertNotEquals(ISO_WEEKS.bucketKey(VelocityWindow.WEEK, epochSecond("2000-01-02T12:00:00Z")),
+                ISO_WEEKS.bucketKey(VelocityWindow.WEEK, epochSecond("2000-01-03T12:00:00Z")));
+        assertEquals(ISO_WEEKS.bucketKey(VelocityWindow.WEEK, epochSecond("2000-01-03T00:00:00Z")),
+                ISO_WEEKS.bucketKey(VelocityWindow.WEEK, epochSecond("2000-01-09T23:59:59Z")));
+    }
+
+    /**
+     * Test that days, and the weeks and months they make, follow the zone's local time.
+     */
+    @Test
+    void testZoneDays() {
+        // 2000-01-01T22:00 and 2000-01-01T07:00 in New York
+        long lateEvening = epochSecond("2000-01-02T03:00:00Z");
+        long morning = epochSecond("2000-01-01T12:00:00Z");
+
+        assertEquals(NEW_YORK.bucketKey(VelocityWindow.DAY, morning), NEW_YORK.bucketKey(VelocityWindow.DAY, lateEvening));
+        assertEquals(NEW_YORK.bucketKey(VelocityWindow.WEEK, morning), NEW_YORK.bucketKey(VelocityWindow.WEEK, lateEvening));
+        assertNotEquals(VelocityCalendar.DEFAULT.bucketKey(VelocityWindow.DAY, morning),
+                VelocityCalendar.DEFAULT.bucketKey(VelocityWindow.DAY, lateEvening));
+        assertNotEquals(VelocityCalendar.DEFAULT.bucketKey(VelocityWindow.MONTH, epochSecond("2000-02-01T03:00:00Z")),
+                NEW_YORK.bucketKey(VelocityWindow.MONTH, epochSecond("2000-02-01T03:00:00Z")));
+    }
+
+    /**
+     * Test that the day daylight saving time starts is one bucket, from local midnight to local midnight.
+     */
+    @Test
+    void testDaylightSavingDay() {
+        // 2000-03-26 in Berlin runs from 2000-03-25T23:00Z (UTC+1) to 2000-03-26T22:00Z (UTC+2)
+        int day = BERLIN.bucketKey(VelocityWindow.DAY, epochSecond("2000-03-25T23:00:00Z"));
+
+        assertEquals(day - 1, BERLIN.bucketKey(VelocityWindow.DAY, epochSecond("2000-03-25T22:59:59Z")));
+        assertEquals(day, BERLIN.bucketKey(VelocityWindow.DAY, epochSecond("2000-03-26T21:59:59Z")));
+        assertEquals(day + 1, BERLIN.bucketKey(VelocityWindow.DAY, epochSecond("2000-03-26T22:00:00Z")));
+    }
+
+    /**
+     * Test that the keys computed together for a load match the keys computed window by window.
+     */
+    @Test
+    void testBucketKeysOfEveryWindow() {
+        long epochSecond = epochSecond("2000-03-26T01:30:00Z");
+        int[] keys = new int[VelocityCalendar.keyCount() + 1];
+
+        BERLIN.bucketKeys(epochSecond, keys, 1);
+
+        for (VelocityWindow window : VelocityWindow.values()) {
+            assertEquals(BERLIN.bucketKey(window, epochSecond), keys[1 + window.ordinal()], window.name());
+        }
+    }
+
+    private static long epochSecond(String time) {
+        return Instant.parse(time).getEpochSecond();
+    }
+}
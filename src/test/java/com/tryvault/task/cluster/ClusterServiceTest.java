@@ -0,0 +1,304 @@
+package com.tryvault.task.cluster;
+
+import com.sun.net.httpserver.HttpServer;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.parser.StreamingFundParser;
+import com.tryvault.task.repository.FundStore;
+import com.tryvault.task.service.CustomerStateRegistry;
+import com.tryvault.task.service.DuplicateLoadIndex;
+import com.tryvault.task.validator.FundValidationProcessor;
+import com.tryvault.task.validator.VelocityMetric;
+import com.tryvault.task.validator.VelocityRule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ClusterServiceTest {
+
+    private static final String SELF = "http://localhost:1";
+
+    @Mock
+    private FundStore fundStore;
+
+    private HttpServer server;
+    private String other;
+    private List<String> handedOff;
+    private List<String> handOffHeaders;
+    private List<List<String>> nodesDuringHandOff;
+    private volatile ClusterService handingOff;
+    private FundConfiguration fundConfiguration;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        handedOff = Collections.synchronizedList(new ArrayList<>());
+        handOffHeaders = Collections.synchronizedList(new ArrayList<>());
+        nodesDuringHandOff = Collections.synchronizedList(new ArrayList<>());
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(ClusterClient.HANDOFF_PATH, exchange -> {
+            handOffHeaders.add(exchange.getRequestHeaders().getFirst(ClusterClient.TOKEN_HEADER) + " "
+                    + exchange.getRequestHeaders().getFirst(ClusterClient.NODES_HEADER));
+            if (handingOff != null) {
+                nodesDuringHandOff.add(handingOff.getNodes());
+            }
+            handedOff.addAll(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)
+                    .lines().toList());
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        other = "http://localhost:" + server.getAddress().getPort();
+
+        fundConfiguration = new FundConfiguration();
+        fundConfiguration.setClusterSelf(SELF);
+        fundConfiguration.setClusterSecret("secret");
+        fundConfiguration.setChunkSize(2);
+        fundConfiguration.setRules(List.of(
+                new VelocityRule("daily-amount", VelocityWindow.DAY, VelocityMetric.AMOUNT, 5000)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Test that a joining node is sent the stored funds of the customers it takes over, and nothing else.
+     */
+    @Test
+    void testCustomersHandedOffToJoiningNode() {
+        HashRing ring = HashRing.of(List.of(SELF, other), fundConfiguration.getClusterVirtualNodes());
+        long movedCustomer = customerOwnedBy(ring, other);
+        long keptCustomer = customerOwnedBy(ring, SELF);
+        doAnswer(invocation -> {
+            FundStore.LoadIdConsumer consumer = invocation.getArgument(0);
+            consumer.accept(movedCustomer, 1, 0);
+            consumer.accept(keptCustomer, 2, 0);
+            return null;
+        }).when(fundStore).forEachLoadId(any());
+        doAnswer(invocation -> {
+            Set<Long> customerIds = invocation.getArgument(0);
+            assertEquals(Set.of(movedCustomer), customerIds);
+            FundStore.LoadConsumer consumer = invocation.getArgument(1);
+            for (int id = 1; id <= 3; id++) {
+                consumer.accept(id, movedCustomer, 1050, 946684800L + id);
+            }
+            return null;
+        }).when(fundStore).forEachLoad(any(), any());
+
+        ClusterService clusterService = getClusterService();
+        assertEquals(1, clusterService.updateNodes(List.of(SELF, other + "/")));
+
+        assertEquals(List.of(SELF, other).stream().sorted().toList(), clusterService.getNodes());
+        assertEquals(3, handedOff.size());
+        assertEquals("{\"id\":\"1\",\"customer_id\":\"" + movedCustomer
+                + "\",\"load_amount\":\"$10.50\",\"time\":\"2000-01-01T00:00:01Z\"}", handedOff.get(0));
+        String nodes = String.join(",", clusterService.getNodes());
+        assertEquals(List.of("secret " + nodes, "secret " + nodes), handOffHeaders);
+    }
+
+    /**
+     * Test that the nodes are replaced only once the funds are handed off, that the funds saved during the hand-off
+     * are sent after, and that a failed hand-off leaves the nodes unchanged.
+     */
+    @Test
+    void testNodesReplacedAfterHandOff() {
+        HashRing ring = HashRing.of(List.of(SELF, other), fundConfiguration.getClusterVirtualNodes());
+        long movedCustomer = customerOwnedBy(ring, other);
+        doAnswer(invocation -> {
+            FundStore.LoadIdConsumer consumer = invocation.getArgument(0);
+            consumer.accept(movedCustomer, 1, 0);
+            return null;
+        }).when(fundStore).forEachLoadId(any());
+        int[] reads = new int[1];
+        doAnswer(invocation -> {
+            FundStore.LoadConsumer consumer = invocation.getArgument(1);
+            // A fund is saved while the first funds are handed off
+            int funds = ++reads[0] == 1 ? 2 : 3;
+            for (int id = 1; id <= funds; id++) {
+                consumer.accept(id, movedCustomer, 1050, 946684800L + id);
+            }
+            return null;
+        }).when(fundStore).forEachLoad(any(), any());
+
+        ClusterService clusterService = getClusterService();
+        handingOff = clusterService;
+        assertEquals(1, clusterService.updateNodes(List.of(SELF, other)));
+
+        List<String> nodes = List.of(SELF, other).stream().sorted().toList();
+        assertEquals(List.of(List.of(), nodes), nodesDuringHandOff);
+        assertEquals(3, handedOff.size());
+        assertTrue(handedOff.get(2).startsWith("{\"id\":\"3\","));
+
+        server.stop(0);
+        ClusterService unreachable = getClusterService();
+        assertThrows(IllegalStateException.class, () -> unreachable.updateNodes(List.of(SELF, other)));
+        assertEquals(List.of(), unreachable.getNodes());
+    }
+
+    /**
+     * Test that nodes not including this node are refused.
+     */
+    @Test
+    void testNodesWithoutSelfRefused() {
+        ClusterService clusterService = getClusterService();
+        assertThrows(IllegalArgumentException.class, () -> clusterService.updateNodes(List.of(other, "http://b:1")));
+        assertEquals(List.of(), clusterService.getNodes());
+        verify(fundStore, never()).forEachLoadId(any());
+    }
+
+    /**
+     * Test that funds handed off to this node are saved, except the ones it already has.
+     */
+    @Test
+    void testImportSkipsKnownFunds() throws IOException {
+        DuplicateLoadIndex duplicateLoadIndex = new DuplicateLoadIndex(fundStore, fundConfiguration);
+        duplicateLoadIndex.add(7, 1, 0);
+        ClusterService clusterService = getClusterService(duplicateLoadIndex);
+        List<Long> inserted = new ArrayList<>();
+        doAnswer(invocation -> {
+            FundBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                inserted.add(batch.getId(i));
+            }
+            return null;
+        }).when(fundStore).insertAll(any());
+
+        String input = """
+                {"id":"1","customer_id":"7","load_amount":"$10.50","time":"2000-01-01T00:00:01Z"}
+                {"id":"2","customer_id":"7","load_amount":"$10.50","time":"2000-01-01T00:00:02Z"}
+                {"id":"3","customer_id":"8","load_amount":"$10.50","time":"2000-01-01T00:00:03Z"}
+                {"id":"4","customer_id":"8","load_amount":"$10.50","time":"2000-01-01T00:00:04Z"}
+                """;
+        clusterService.importFunds(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), null);
+
+        assertEquals(List.of(2L, 3L, 4L), inserted);
+        assertTrue(duplicateLoadIndex.contains(8, 4));
+    }
+
+    /**
+     * Test that the IDs of handed off funds are added to the dedup index only once they are saved, so a failed insert
+     * can be retried.
+     */
+    @Test
+    void testImportIndexesSavedFundsOnly() throws IOException {
+        DuplicateLoadIndex duplicateLoadIndex = new DuplicateLoadIndex(fundStore, fundConfiguration);
+        ClusterService clusterService = getClusterService(duplicateLoadIndex);
+        List<Long> inserted = new ArrayList<>();
+        doThrow(new IllegalStateException("Database is down")).doAnswer(invocation -> {
+            FundBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                inserted.add(batch.getId(i));
+            }
+            return null;
+        }).when(fundStore).insertAll(any());
+
+        String input = line(1, 7) + line(1, 7) + line(2, 7);
+        assertThrows(IllegalStateException.class, () -> clusterService.importFunds(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), null));
+        assertFalse(duplicateLoadIndex.contains(7, 1));
+
+        clusterService.importFunds(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals(List.of(1L, 2L), inserted);
+        assertTrue(duplicateLoadIndex.contains(7, 1));
+        assertTrue(duplicateLoadIndex.contains(7, 2));
+    }
+
+    /**
+     * Test that funds handed off for customers this node owns neither on its ring nor on the sender's are skipped,
+     * that the sender's ring lets the funds in before this node is told the new nodes, and that a sender whose nodes
+     * do not include this node is refused.
+     */
+    @Test
+    void testImportSkipsCustomersOwnedElsewhere() throws IOException {
+        String leaving = "http://localhost:2";
+        List<String> nodes = List.of(SELF, other);
+        HashRing ring = HashRing.of(nodes, fundConfiguration.getClusterVirtualNodes());
+        HashRing previous = HashRing.of(List.of(SELF, other, leaving), fundConfiguration.getClusterVirtualNodes());
+        long keptCustomer = customerOwnedBy(previous, SELF);
+        long otherCustomer = customerOwnedBy(ring, other);
+        long movedCustomer = 0;
+        while (!SELF.equals(ring.ownerOf(movedCustomer)) || !leaving.equals(previous.ownerOf(movedCustomer))) {
+            movedCustomer++;
+        }
+        // This node still has the nodes before the leaving node was removed
+        fundConfiguration.setClusterNodes(previous.getNodes());
+        ClusterService clusterService = getClusterService();
+        List<Long> inserted = new ArrayList<>();
+        doAnswer(invocation -> {
+            FundBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                inserted.add(batch.getCustomerId(i));
+            }
+            return null;
+        }).when(fundStore).insertAll(any());
+
+        String input = line(1, movedCustomer) + line(2, otherCustomer) + line(3, keptCustomer);
+        clusterService.importFunds(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), nodes);
+        assertEquals(List.of(movedCustomer, keptCustomer), inserted);
+
+        assertThrows(IllegalArgumentException.class, () -> clusterService.importFunds(
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), List.of(other, leaving)));
+    }
+
+    /**
+     * Test that only requests sent with the configured secret are taken as coming from another node, and none when
+     * no secret is configured.
+     */
+    @Test
+    void testPeerNeedsSecret() {
+        ClusterMembership membership = new ClusterMembership(fundConfiguration);
+        assertTrue(membership.isPeer("secret"));
+        assertFalse(membership.isPeer("secreT"));
+        assertFalse(membership.isPeer(null));
+
+        fundConfiguration.setClusterSecret("");
+        ClusterMembership unsecured = new ClusterMembership(fundConfiguration);
+        assertFalse(unsecured.isPeer(""));
+        assertFalse(unsecured.isPeer(null));
+    }
+
+    private ClusterService getClusterService() {
+        return getClusterService(new DuplicateLoadIndex(fundStore, fundConfiguration));
+    }
+
+    private ClusterService getClusterService(DuplicateLoadIndex duplicateLoadIndex) {
+        FundValidationProcessor validator = new FundValidationProcessor(fundConfiguration);
+        return new ClusterService(new ClusterMembership(fundConfiguration), new ClusterClient(fundConfiguration),
+                fundStore, duplicateLoadIndex, new CustomerStateRegistry(validator, fundConfiguration),
+                new StreamingFundParser(), fundConfiguration);
+    }
+
+    private static String line(long id, long customerId) {
+        return "{\"id\":\"" + id + "\",\"customer_id\":\"" + customerId
+                + "\",\"load_amount\":\"$10.50\",\"time\":\"2000-01-01T00:00:0" + id + "Z\"}\n";
+    }
+
+    private static long customerOwnedBy(HashRing ring, String node) {
+        long customerId = 0;
+        while (!node.equals(ring.ownerOf(customerId))) {
+            customerId++;
+        }
+        return customerId;
+    }
+}
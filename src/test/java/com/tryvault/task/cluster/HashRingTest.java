@@ -0,0 +1,63 @@
+package com.tryvault.task.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashRingTest {
+
+    private static final List<String> NODES = List.of("http://a:8080", "http://b:8080", "http://c:8080");
+
+    /**
+     * Test that every node owns a fair share of the customers, and that the owners do not depend on the order the
+     * nodes are listed in.
+     */
+    @Test
+    void testCustomersSpreadOverNodes() {
+        HashRing ring = HashRing.of(NODES, 128);
+        HashRing reordered = HashRing.of(List.of(NODES.get(2), NODES.get(0), NODES.get(1)), 128);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (long customerId = 0; customerId < 30000; customerId++) {
+            String owner = ring.ownerOf(customerId);
+            assertEquals(owner, reordered.ownerOf(customerId));
+            counts.merge(owner, 1, Integer::sum);
+        }
+        assertEquals(NODES.size(), counts.size());
+        counts.values().forEach(count -> assertTrue(count > 7000 && count < 13000, "share of " + count));
+    }
+
+    /**
+     * Test that a joining node only takes customers from the other nodes, about one in every node count, and that
+     * no customer moves between the nodes that stay.
+     */
+    @Test
+    void testJoiningNodeMovesFewCustomers() {
+        HashRing ring = HashRing.of(NODES, 128);
+        String joining = "http://d:8080";
+        HashRing grown = HashRing.of(List.of(NODES.get(0), NODES.get(1), NODES.get(2), joining), 128);
+
+        int moved = 0;
+        for (long customerId = 0; customerId < 40000; customerId++) {
+            String owner = grown.ownerOf(customerId);
+            if (!owner.equals(ring.ownerOf(customerId))) {
+                assertEquals(joining, owner);
+                moved++;
+            }
+        }
+        assertTrue(moved > 7000 && moved < 13000, moved + " customers moved");
+    }
+
+    /**
+     * Test that a ring without nodes has no owner.
+     */
+    @Test
+    void testEmptyRing() {
+        assertNull(HashRing.of(List.of(), 128).ownerOf(1));
+        assertEquals("http://a:8080", HashRing.of(List.of("http://a:8080"), 1).ownerOf(1));
+    }
+}
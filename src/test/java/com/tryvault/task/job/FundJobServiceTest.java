@@ -0,0 +1,203 @@
+package com.tryvault.task.job;
+
+import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.cluster.ClusterClient;
+import com.tryvault.task.cluster.ClusterMembership;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.metrics.FundMetrics;
+import com.tryvault.task.parser.StreamingFundParser;
+import com.tryvault.task.repository.FundStore;
+import com.tryvault.task.service.CustomerStateRegistry;
+import com.tryvault.task.service.DuplicateLoadIndex;
+import com.tryvault.task.service.FundService;
+import com.tryvault.task.service.ResultCache;
+import com.tryvault.task.validator.FundValidationProcessor;
+import com.tryvault.task.validator.VelocityMetric;
+import com.tryvault.task.validator.VelocityRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+class FundJobServiceTest {
+
+    @Mock
+    private FundStore fundStore;
+
+    @TempDir
+    private Path jobDirectory;
+
+    private ExecutorService validationExecutor;
+    private ExecutorService persistExecutor;
+    private ExecutorService jobExecutor;
+    private FundConfiguration fundConfiguration;
+    private FundService fundService;
+    private FundJobService fundJobService;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        fundConfiguration = new FundConfiguration();
+        fundConfiguration.setParallelism(1);
+        fundConfiguration.setRules(List.of(
+                new VelocityRule("daily-amount", VelocityWindow.DAY, VelocityMetric.AMOUNT, 5000),
+                new VelocityRule("daily-count", VelocityWindow.DAY, VelocityMetric.COUNT, 3),
+                new VelocityRule("weekly-amount", VelocityWindow.WEEK, VelocityMetric.AMOUNT, 20000)));
+        fundConfiguration.setJobWorkers(1);
+        fundConfiguration.setJobQueueCapacity(1);
+        fundConfiguration.setJobDirectory(jobDirectory.toString());
+
+        validationExecutor = Executors.newSingleThreadExecutor();
+        persistExecutor = Executors.newSingleThreadExecutor();
+        jobExecutor = Executors.newSingleThreadExecutor();
+        FundValidationProcessor validator = new FundValidationProcessor(fundConfiguration);
+        CustomerStateRegistry customerStates = new CustomerStateRegistry(validator, fundConfiguration);
+        DuplicateLoadIndex duplicateLoadIndex = new DuplicateLoadIndex(fundStore, fundConfiguration);
+        fundService = new FundService(fundStore, customerStates, duplicateLoadIndex, validator,
+                new StreamingFundParser(), fundConfiguration,
+                new FundMetrics(new SimpleMeterRegistry(), fundConfiguration, customerStates, duplicateLoadIndex),
+                validationExecutor, persistExecutor, new ResultCache(fundConfiguration),
+                new ClusterMembership(fundConfiguration), new ClusterClient(fundConfiguration));
+        fundJobService = new FundJobService(fundService, fundConfiguration, jobExecutor);
+        fundJobService.open();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jobExecutor.shutdownNow();
+        validationExecutor.shutdownNow();
+        persistExecutor.shutdownNow();
+    }
+
+    /**
+     * Test that a completed job's decisions can be read page by page and streamed, in input order.
+     */
+    @Test
+    void testCompletedJobResults() throws Exception {
+        FundJob job;
+        try (InputStream input = getResource("input.txt")) {
+            job = fundJobService.submit(input);
+        }
+        awaitFinished(job);
+
+        assertEquals(FundJobStatus.COMPLETED, job.getStatus());
+        assertEquals(1000, job.getProgress().getParsed());
+        assertEquals(1000, job.getResultCount());
+        List<FundLoadResponse> streamed = new ArrayList<>();
+        fundJobService.streamResults(job, streamed::add);
+        assertEquals(1000, streamed.size());
+        assertEquals(job.getProgress().getAccepted(), streamed.stream().filter(FundLoadResponse::isAccepted).count());
+        assertEquals(job.getProgress().getAccepted(), job.getProgress().getPersisted());
+
+        List<FundLoadResponse> page = fundJobService.readResults(job, 10, 5);
+        assertEquals(streamed.subList(10, 15).stream().map(FundLoadResponse::toString).toList(),
+                page.stream().map(FundLoadResponse::toString).toList());
+        assertEquals(List.of(), fundJobService.readResults(job, 1000, 5));
+        assertEquals(1, fundJobService.readResults(job, 999, 5).size());
+    }
+
+    /**
+     * Test that submissions are refused once every worker is busy and the queue is full.
+     */
+    @Test
+    void testSubmissionRefusedWhenQueueFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(fundStore).insertAll(any());
+
+        FundJob running = fundJobService.submit(input(1));
+        FundJob queued = fundJobService.submit(input(2));
+        assertThrows(RejectedExecutionException.class, () -> fundJobService.submit(input(3)));
+
+        release.countDown();
+        awaitFinished(running);
+        awaitFinished(queued);
+        assertEquals(FundJobStatus.COMPLETED, queued.getStatus());
+        FundJob next = fundJobService.submit(input(4));
+        awaitFinished(next);
+        assertEquals(FundJobStatus.COMPLETED, next.getStatus());
+    }
+
+    /**
+     * Test that a job interrupted by a restart is resumed from its checkpoint, keeping the results before it.
+     */
+    @Test
+    void testInterruptedJobResumed() throws Exception {
+        String id = "interrupted";
+        try (InputStream input = getResource("input.txt")) {
+            Files.copy(input, jobDirectory.resolve(id + ".input"));
+        }
+        // 300 results committed before the interruption, and a partly written result after them
+        Path resultsFile = jobDirectory.resolve(id + ".results");
+        try (DataOutputStream results = new DataOutputStream(Files.newOutputStream(resultsFile))) {
+            for (int i = 0; i < 300; i++) {
+                results.writeLong(i);
+                results.writeLong(0);
+                results.writeBoolean(true);
+            }
+            results.writeLong(-1);
+        }
+        Path checkpointFile = jobDirectory.resolve(id + ".checkpoint");
+        try (DataOutputStream checkpoint = new DataOutputStream(Files.newOutputStream(checkpointFile))) {
+            checkpoint.writeLong(300);
+        }
+        Files.writeString(jobDirectory.resolve("finished.results"), "");
+
+        FundJobService restarted = new FundJobService(fundService, fundConfiguration, jobExecutor);
+        restarted.open();
+        FundJob job = restarted.get(id).orElseThrow();
+        awaitFinished(job);
+
+        assertEquals(FundJobStatus.COMPLETED, job.getStatus());
+        assertEquals(1000, job.getResultCount());
+        assertEquals(700, job.getProgress().getValidated());
+        List<FundLoadResponse> results = restarted.readResults(job, 0, 1000);
+        assertEquals("0", results.get(0).getId());
+        assertEquals("299", results.get(299).getId());
+        assertNotEquals("-1", results.get(300).getId());
+        assertFalse(Files.exists(checkpointFile));
+        assertFalse(Files.exists(jobDirectory.resolve("finished.results")));
+    }
+
+    private static InputStream input(long id) {
+        String line = "{\"id\":\"" + id + "\",\"customer_id\":\"1\",\"load_amount\":\"$10.00\",\"time\":\"2000-01-01T00:00:00Z\"}\n";
+        return new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitFinished(FundJob job) throws InterruptedException {
+        for (int i = 0; i < 1000 && job.getFinishedAt() == null; i++) {
+            Thread.sleep(10);
+        }
+        assertNotNull(job.getFinishedAt(), "Job did not finish: " + job.getStatus());
+    }
+
+    private InputStream getResource(String path) {
+        InputStream resource = getClass().getClassLoader().getResourceAsStream(path);
+        assertNotNull(resource, "File not found: " + path);
+        return resource;
+    }
+}
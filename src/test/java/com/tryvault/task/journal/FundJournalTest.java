@@ -0,0 +1,130 @@
+package com.tryvault.task.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FundJournalTest {
+
+    private static final long SEGMENT_SIZE = FundJournal.HEADER_SIZE + 4L * FundJournal.RECORD_SIZE;
+
+    @TempDir
+    private Path directory;
+
+    /**
+     * Test that appended records are replayed in order when the journal is reopened, across segment rollovers.
+     */
+    @Test
+    void testReplayAfterReopen() throws IOException {
+        List<JournalRecord> written = getRecords(10);
+        try (FundJournal journal = FundJournal.open(directory, SEGMENT_SIZE, 100, record -> fail("Journal not empty"))) {
+            for (JournalRecord record : written) {
+                journal.append(record);
+            }
+            journal.sync();
+            assertEquals(3, journal.getSegmentCount());
+        }
+
+        assertEquals(written, replay());
+    }
+
+    /**
+     * Test that appending resumes after the replayed records.
+     */
+    @Test
+    void testAppendAfterReopen() throws IOException {
+        List<JournalRecord> written = getRecords(6);
+        try (FundJournal journal = FundJournal.open(directory, SEGMENT_SIZE, 100, record -> {})) {
+            journal.append(written.get(0));
+        }
+        try (FundJournal journal = FundJournal.open(directory, SEGMENT_SIZE, 100, record -> {})) {
+            for (JournalRecord record : written.subList(1, written.size())) {
+                journal.append(record);
+            }
+        }
+
+        assertEquals(written, replay());
+    }
+
+    /**
+     * Test that a torn record ends the replay, is discarded together with anything behind it, and is overwritten by
+     * the next append.
+     */
+    @Test
+    void testTornRecordDiscarded() throws IOException {
+        List<JournalRecord> written = getRecords(3);
+        try (FundJournal journal = FundJournal.open(directory, SEGMENT_SIZE, 100, record -> {})) {
+            for (JournalRecord record : written) {
+                journal.append(record);
+            }
+        }
+        // Corrupt the amount of the second record
+        Path segment = getSegments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(1).put((byte) 1).flip(),
+                    FundJournal.HEADER_SIZE + FundJournal.RECORD_SIZE + 2 * Long.BYTES);
+        }
+
+        assertEquals(written.subList(0, 1), replay());
+
+        JournalRecord next = new JournalRecord(100, 1, 500, 946684800);
+        try (FundJournal journal = FundJournal.open(directory, SEGMENT_SIZE, 100, record -> {})) {
+            journal.append(next);
+        }
+        assertEquals(List.of(written.get(0), next), replay());
+    }
+
+    /**
+     * Test that only closed segments whose loads are all older than the cutoff are deleted.
+     */
+    @Test
+    void testDeleteSegmentsBefore() throws IOException {
+        List<JournalRecord> written = getRecords(10);
+        try (FundJournal journal = FundJournal.open(directory, SEGMENT_SIZE, 100, record -> {})) {
+            for (JournalRecord record : written) {
+                journal.append(record);
+            }
+            // The first segment holds the records with times 0 to 3, the second 4 to 7
+            assertEquals(1, journal.deleteSegmentsBefore(written.get(4).epochSecond()));
+            assertEquals(0, journal.deleteSegmentsBefore(written.get(7).epochSecond()));
+            assertEquals(1, journal.deleteSegmentsBefore(Long.MAX_VALUE));
+            assertEquals(1, journal.getSegmentCount());
+        }
+
+        assertEquals(written.subList(8, 10), replay());
+    }
+
+    private List<JournalRecord> replay() throws IOException {
+        List<JournalRecord> replayed = new ArrayList<>();
+        FundJournal.open(directory, SEGMENT_SIZE, 100, replayed::add).close();
+        return replayed;
+    }
+
+    private List<Path> getSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    /**
+     * Helper method to create records with increasing IDs and load times.
+     */
+    private static List<JournalRecord> getRecords(int count) {
+        List<JournalRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new JournalRecord(i + 1, i % 3, 1000 + i, 946684800L + i * 3600L));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,67 @@
+package com.tryvault.task.journal;
+
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.model.FundBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalFundStoreTest {
+
+    @TempDir
+    private Path directory;
+
+    private FundConfiguration fundConfiguration;
+
+    @BeforeEach
+    public void setup() {
+        fundConfiguration = new FundConfiguration();
+        fundConfiguration.setJournalDirectory(directory.toString());
+        // Two records per segment, so the segments of the present loads are closed and could be deleted
+        fundConfiguration.setJournalSegmentSize(DataSize.ofBytes(FundJournal.HEADER_SIZE + 2L * FundJournal.RECORD_SIZE));
+    }
+
+    /**
+     * Test that a record dated far in the future does not prune the history and journal segments of the present, in
+     * memory or when the journal is replayed, while records older than the retention behind the clock are dropped.
+     */
+    @Test
+    void testFarFutureRecordKeepsPresentHistory() throws IOException {
+        long now = Instant.now().getEpochSecond();
+        JournalFundStore fundStore = new JournalFundStore(fundConfiguration);
+        fundStore.open();
+        FundBatch present = new FundBatch(3);
+        present.add(1, 1, 10000, now - Duration.ofDays(100).getSeconds());
+        present.add(2, 1, 10000, now - 7200);
+        present.add(3, 1, 10000, now - 3600);
+        fundStore.insertAll(present);
+        FundBatch future = new FundBatch(1);
+        future.add(4, 2, 10000, Instant.parse("2100-01-01T00:00:00Z").getEpochSecond());
+        fundStore.insertAll(future);
+
+        assertEquals(List.of(2L, 3L, 4L), loadIds(fundStore));
+        fundStore.close();
+
+        JournalFundStore reopened = new JournalFundStore(fundConfiguration);
+        reopened.open();
+        assertEquals(List.of(2L, 3L, 4L), loadIds(reopened));
+        reopened.close();
+    }
+
+    private static List<Long> loadIds(JournalFundStore fundStore) {
+        List<Long> ids = new ArrayList<>();
+        fundStore.forEachLoadId((customerId, id, epochSecond) -> ids.add(id));
+        ids.sort(null);
+        return ids;
+    }
+}
@@ -0,0 +1,50 @@
+package com.tryvault.task.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecompressionTest {
+
+    private static final byte[] LINE =
+            "{\"id\":\"1\",\"customer_id\":\"2\",\"load_amount\":\"$3.00\",\"time\":\"2000-01-01T00:00:00Z\"}\n"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Test that gzip compressed input is decompressed.
+     */
+    @Test
+    void testGzipDecompressed() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(LINE);
+        }
+
+        try (InputStream input = Decompression.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertArrayEquals(LINE, input.readAllBytes());
+        }
+    }
+
+    /**
+     * Test that plain input, including input shorter than any magic number, is read as is.
+     */
+    @Test
+    void testPlainInputUnchanged() throws IOException {
+        try (InputStream input = Decompression.decompress(new ByteArrayInputStream(LINE))) {
+            assertArrayEquals(LINE, input.readAllBytes());
+        }
+        try (InputStream input = Decompression.decompress(new ByteArrayInputStream(new byte[]{0x1f}))) {
+            assertArrayEquals(new byte[]{0x1f}, input.readAllBytes());
+        }
+        try (InputStream input = Decompression.decompress(new ByteArrayInputStream(new byte[0]))) {
+            assertArrayEquals(new byte[0], input.readAllBytes());
+        }
+    }
+}
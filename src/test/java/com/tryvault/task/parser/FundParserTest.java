@@ -0,0 +1,164 @@
+package com.tryvault.task.parser;
+
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.entity.Fund;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FundParserTest {
+
+    private final StreamingFundParser streamingFundParser = new StreamingFundParser();
+    private final JacksonFundParser jacksonFundParser = new JacksonFundParser();
+
+    /**
+     * Test that the streaming parser and the Jackson parser extract identical funds from the sample input file.
+     */
+    @Test
+    void testParsersAgreeOnInputFile() throws IOException {
+        var streamingFunds = parse(streamingFundParser, getResource("input.txt"));
+        var jacksonFunds = parse(jacksonFundParser, getResource("input.txt"));
+
+        assertFalse(streamingFunds.isEmpty());
+        assertEquals(jacksonFunds, streamingFunds);
+    }
+
+    /**
+     * Test that the streaming parser reads the $ prefixed amount and the UTC timestamp of a single line.
+     */
+    @Test
+    void testStreamingParserReadsLine() throws IOException {
+        var funds = parse(streamingFundParser,
+                "{\"id\":\"15887\",\"customer_id\":\"528\",\"load_amount\":\"$3318.47\",\"time\":\"2000-01-01T00:00:00Z\"}");
+
+        assertEquals(List.of(Fund.create(15887L, 528L, 3318.47, LocalDateTime.of(2000, 1, 1, 0, 0, 0))), funds);
+    }
+
+    /**
+     * Test that the streaming parser accepts reordered fields, bare numbers, fractional seconds and a missing
+     * trailing newline. Fractions of a second are dropped.
+     */
+    @Test
+    void testStreamingParserAcceptsFlexibleLayout() throws IOException {
+        var input = " { \"time\" : \"2000-01-02T03:04:05.5Z\", \"load_amount\":\"$0.1\", \"customer_id\":7,\"id\":42 }";
+
+        var funds = parse(streamingFundParser, input);
+
+        assertEquals(List.of(Fund.create(42L, 7L, 0.1, LocalDateTime.of(2000, 1, 2, 3, 4, 5))), funds);
+        assertEquals(parse(jacksonFundParser, input), funds);
+    }
+
+    /**
+     * Test that malformed and blank lines are skipped without affecting the surrounding lines.
+     */
+    @Test
+    void testStreamingParserSkipsMalformedLines() throws IOException {
+        var input = """
+                {"id":"1","customer_id":"2","load_amount":"$10.00","time":"2000-01-01T00:00:00Z"}
+                {"id":"x","customer_id":"2","load_amount":"$10.00","time":"2000-01-01T00:00:00Z"}
+
+                {"id":"3","customer_id":"2","load_amount":"$10.00","time":"2000-13-01T00:00:00Z"}
+                {"id":"4","customer_id":"2","load_amount":"$10.00","time":"2000-01-01T00:00:00Z","extra":"1"}
+                {"id":"5","customer_id":"2","load_amount":"$12.5","time":"2000-01-01T00:00:00Z"}
+                """;
+
+        var funds = parse(streamingFundParser, input);
+
+        assertEquals(2, funds.size());
+        assertEquals(1L, funds.get(0).getFundId().getId());
+        assertEquals(5L, funds.get(1).getFundId().getId());
+        assertEquals(12.5, funds.get(1).getLoadAmount());
+    }
+
+    /**
+     * Test that both parsers skip a load dated beyond the four digit years, whose bucket keys would overflow, without
+     * affecting the surrounding lines.
+     */
+    @Test
+    void testParsersSkipExtremeYears() throws IOException {
+        var input = """
+                {"id":"1","customer_id":"2","load_amount":"$10.00","time":"9999-12-31T23:59:59Z"}
+                {"id":"2","customer_id":"2","load_amount":"$10.00","time":"+300000-01-01T00:00:00"}
+                {"id":"3","customer_id":"2","load_amount":"$10.00","time":"-300000-01-01T00:00:00"}
+                {"id":"4","customer_id":"2","load_amount":"$10.00","time":"0000-01-01T00:00:00Z"}
+                """;
+
+        for (FundParser parser : List.of(streamingFundParser, jacksonFundParser)) {
+            var funds = parse(parser, input);
+
+            assertEquals(List.of(1L, 4L), funds.stream().map(fund -> fund.getFundId().getId()).toList());
+        }
+    }
+
+    /**
+     * Test that lines longer than the maximum line size are skipped, whether or not they end with a line break,
+     * without affecting the surrounding lines.
+     */
+    @Test
+    void testStreamingParserSkipsLongLines() throws IOException {
+        FundConfiguration fundConfiguration = new FundConfiguration();
+        fundConfiguration.setMaxLineSize(DataSize.ofBytes(128));
+        StreamingFundParser parser = new StreamingFundParser(fundConfiguration);
+        String padding = " ".repeat(1000);
+        var input = """
+                {"id":"1","customer_id":"2","load_amount":"$10.00","time":"2000-01-01T00:00:00Z"}
+                {"id":"2","customer_id":"2","load_amount":"$10.00","time":"2000-01-01T00:00:00Z"}%s
+                {"id":"3","customer_id":"2","load_amount":"$10.00","time":"2000-01-01T00:00:00Z"}
+                {"id":"4","customer_id":"2","load_amount":"$10.00","time":"2000-01-01T00:00:00Z"}%s"""
+                .formatted(padding, padding);
+
+        var funds = parse(parser, input);
+
+        assertEquals(List.of(1L, 3L), funds.stream().map(fund -> fund.getFundId().getId()).toList());
+    }
+
+    /**
+     * Test that the streaming parser reads amounts as cents, rounding digits beyond the cents half up, and times as
+     * epoch seconds.
+     */
+    @Test
+    void testStreamingParserReadsCents() throws IOException {
+        var input = """
+                {"id":"1","customer_id":"2","load_amount":"$0.125","time":"1970-01-01T00:00:00Z"}
+                {"id":"2","customer_id":"2","load_amount":"$12","time":"2000-02-29T23:59:59Z"}
+                {"id":"3","customer_id":"2","load_amount":"$-1.5e1","time":"1969-12-31T23:59:59Z"}
+                {"id":"4","customer_id":"2","load_amount":"$1.00","time":"2001-02-29T00:00:00Z"}
+                """;
+        List<long[]> loads = new ArrayList<>();
+
+        streamingFundParser.parse(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                (id, customerId, amountCents, epochSecond) -> loads.add(new long[]{id, amountCents, epochSecond}));
+
+        assertEquals(3, loads.size());
+        assertArrayEquals(new long[]{1, 13, 0}, loads.get(0));
+        assertArrayEquals(new long[]{2, 1200, 951868799}, loads.get(1));
+        assertArrayEquals(new long[]{3, -1500, -1}, loads.get(2));
+    }
+
+    private static List<Fund> parse(FundParser parser, String content) throws IOException {
+        return parse(parser, new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<Fund> parse(FundParser parser, InputStream input) throws IOException {
+        List<Fund> funds = new ArrayList<>();
+        try (input) {
+            parser.parse(input, funds::add);
+        }
+        return funds;
+    }
+
+    private InputStream getResource(String path) {
+        InputStream resource = getClass().getClassLoader().getResourceAsStream(path);
+        assertNotNull(resource, "File not found: " + path);
+        return resource;
+    }
+}
@@ -0,0 +1,103 @@
+package com.tryvault.task.parser;
+
+import com.tryvault.task.model.FundBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileParserTest {
+
+    @TempDir
+    private Path directory;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test that parsing the file in regions much smaller than the file gives the loads of the streaming parser, in
+     * the same order.
+     */
+    @Test
+    void testRegionsMatchStreamingParse() throws IOException {
+        Path file = directory.resolve("input.txt");
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream("input.txt")) {
+            assertNotNull(input, "File not found: input.txt");
+            Files.copy(input, file);
+        }
+        List<String> streamed = new ArrayList<>();
+        try (InputStream input = Files.newInputStream(file)) {
+            new StreamingFundParser().parse(input, (id, customerId, amountCents, epochSecond) ->
+                    streamed.add(id + "," + customerId + "," + amountCents + "," + epochSecond));
+        }
+
+        List<String> mapped = new ArrayList<>();
+        int[] regions = {0};
+        new MappedFileParser(new StreamingFundParser(), null, executor, 1000, 3).parse(file, batch -> {
+            regions[0]++;
+            addAll(batch, mapped);
+        });
+
+        assertEquals(streamed, mapped);
+        assertTrue(regions[0] > 1, "The file was parsed as one region");
+    }
+
+    /**
+     * Test that a last line without a line break and a region size that falls inside a line are handled.
+     */
+    @Test
+    void testRegionBoundaries() throws IOException {
+        Path file = directory.resolve("boundaries.txt");
+        Files.writeString(file, line(1) + "\n" + line(2) + "\n" + line(3), StandardCharsets.UTF_8);
+
+        List<String> mapped = new ArrayList<>();
+        new MappedFileParser(new StreamingFundParser(), null, executor, 10, 2).parse(file, batch -> addAll(batch, mapped));
+
+        assertEquals(List.of("1,7,300,946684800", "2,7,300,946684800", "3,7,300,946684800"), mapped);
+    }
+
+    /**
+     * Test that an empty file gives no batch.
+     */
+    @Test
+    void testEmptyFile() throws IOException {
+        Path file = Files.createFile(directory.resolve("empty.txt"));
+
+        List<FundBatch> batches = new ArrayList<>();
+        new MappedFileParser(new StreamingFundParser(), null, executor, 1000, 2).parse(file, batches::add);
+
+        assertTrue(batches.isEmpty());
+    }
+
+    private static String line(long id) {
+        return "{\"id\":\"" + id + "\",\"customer_id\":\"7\",\"load_amount\":\"$3.00\",\"time\":\"2000-01-01T00:00:00Z\"}";
+    }
+
+    private static void addAll(FundBatch batch, List<String> loads) {
+        for (int i = 0; i < batch.size(); i++) {
+            loads.add(batch.getId(i) + "," + batch.getCustomerId(i) + "," + batch.getAmountCents(i) + ","
+                    + batch.getEpochSecond(i));
+        }
+    }
+}
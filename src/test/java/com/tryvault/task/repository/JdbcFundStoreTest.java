@@ -0,0 +1,95 @@
+package com.tryvault.task.repository;
+
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.model.FundBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcFundStoreTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private FundConfiguration fundConfiguration;
+
+    @BeforeEach
+    public void setup() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        fundConfiguration = new FundConfiguration();
+        fundConfiguration.setJdbcRetention(Duration.ofDays(35));
+    }
+
+    /**
+     * Test that a load dated far in the future does not move the retention cutoff past the funds of the present,
+     * while funds older than the retention behind the clock are still deleted.
+     */
+    @Test
+    void testFarFutureLoadKeepsPresentFunds() {
+        JdbcFundStore fundStore = new JdbcFundStore(jdbcTemplate, transactionTemplate, fundConfiguration);
+        long now = Instant.now().getEpochSecond();
+        FundBatch funds = new FundBatch(3);
+        funds.add(1, 1, 10000, now - Duration.ofDays(100).getSeconds());
+        funds.add(2, 1, 10000, now - 3600);
+        funds.add(3, 2, 10000, Instant.parse("2100-01-01T00:00:00Z").getEpochSecond());
+        fundStore.insertAll(funds);
+
+        assertEquals(2, count("SELECT COUNT(*) FROM Fund"));
+        assertEquals(0, count("SELECT COUNT(*) FROM Fund WHERE id = 1"));
+        assertEquals(2, count("SELECT COUNT(*) FROM FundDaily"));
+    }
+
+    /**
+     * Test that funds stored before the rollup table existed are rolled up by day in {@code fund.zone} at startup, so
+     * history read from the rollup includes them, and that a filled rollup is not filled again.
+     */
+    @Test
+    void testDailyRollupFilledFromExistingFunds() {
+        fundConfiguration.setZone(ZoneId.of("America/New_York"));
+        String insert = "INSERT INTO Fund (id, customer_id, load_amount, time) VALUES (?, ?, ?, ?)";
+        jdbcTemplate.update(insert, 1, 1, new BigDecimal("10.00"), LocalDateTime.of(2000, 1, 1, 12, 0));
+        jdbcTemplate.update(insert, 2, 1, new BigDecimal("20.50"), LocalDateTime.of(2000, 1, 2, 3, 0));
+        jdbcTemplate.update(insert, 3, 1, new BigDecimal("5.00"), LocalDateTime.of(2000, 1, 2, 12, 0));
+        jdbcTemplate.update(insert, 4, 2, new BigDecimal("7.00"), LocalDateTime.of(2000, 1, 2, 12, 0));
+
+        JdbcFundStore fundStore = new JdbcFundStore(jdbcTemplate, transactionTemplate, fundConfiguration);
+        fundStore.backfillDaily();
+        fundStore.backfillDaily();
+
+        assertEquals(3, count("SELECT COUNT(*) FROM FundDaily"));
+        // 2000-01-02T03:00Z is still January 1st in New York
+        String customerDays = " FROM FundDaily WHERE customer_id = 1 AND load_day ";
+        assertEquals(2, count("SELECT load_count" + customerDays + "= '2000-01-01'"));
+        assertEquals(3050, count("SELECT amount_cents" + customerDays + "= '2000-01-01'"));
+        assertEquals(500, count("SELECT amount_cents" + customerDays + "= '2000-01-02'"));
+        List<Long> amounts = new ArrayList<>();
+        fundStore.forEachHistoryLoad(Set.of(1L, 2L), LocalDateTime.of(1999, 12, 1, 0, 0),
+                (customerId, loadCount, amountCents, epochSecond) -> amounts.add(amountCents));
+        amounts.sort(null);
+        assertEquals(List.of(500L, 700L, 3050L), amounts);
+    }
+
+    private int count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+}
@@ -0,0 +1,216 @@
+package com.tryvault.task.resources;
+
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.cluster.ClusterClient;
+import com.tryvault.task.cluster.ClusterMembership;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.metrics.FundMetrics;
+import com.tryvault.task.parser.StreamingFundParser;
+import com.tryvault.task.repository.FundStore;
+import com.tryvault.task.service.CustomerStateRegistry;
+import com.tryvault.task.service.DuplicateLoadIndex;
+import com.tryvault.task.service.FundService;
+import com.tryvault.task.service.ResultCache;
+import com.tryvault.task.service.UploadAdmission;
+import com.tryvault.task.validator.FundValidationProcessor;
+import com.tryvault.task.validator.VelocityMetric;
+import com.tryvault.task.validator.VelocityRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class FundControllerTest {
+
+    private static final String PROXY = "10.0.0.1";
+
+    @Mock
+    private FundService fundService;
+
+    @Mock
+    private FundStore fundStore;
+
+    private FundConfiguration fundConfiguration;
+    private UploadAdmission uploadAdmission;
+    private ExecutorService validationExecutor;
+    private ExecutorService persistExecutor;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        fundConfiguration = new FundConfiguration();
+        fundConfiguration.setUploadTrustedProxies(List.of(PROXY));
+        uploadAdmission = spy(new UploadAdmission(fundConfiguration));
+        validationExecutor = Executors.newFixedThreadPool(4);
+        persistExecutor = Executors.newFixedThreadPool(2);
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new FundController(fundService, uploadAdmission, fundConfiguration))
+                .build();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        validationExecutor.shutdownNow();
+        persistExecutor.shutdownNow();
+    }
+
+    /**
+     * Test that a streamed upload is answered with one NDJSON line per fund, in input order, across several chunks.
+     */
+    @Test
+    void testStreamedResultsInInputOrder() throws Exception {
+        byte[] input;
+        try (InputStream resource = getResource("input.txt")) {
+            input = resource.readAllBytes();
+        }
+        MockMvc serviceMvc = MockMvcBuilders
+                .standaloneSetup(new FundController(getFundService(), uploadAdmission, fundConfiguration))
+                .build();
+
+        MvcResult result = serviceMvc.perform(post("/api/funds/load")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .content(input))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = serviceMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<String> lines = body.lines().toList();
+        List<String> inputLines = new String(input, StandardCharsets.UTF_8).lines().toList();
+        assertEquals(inputLines.size(), lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            String id = inputLines.get(i).substring(0, inputLines.get(i).indexOf(','));
+            assertTrue(lines.get(i).startsWith(id + ","), "line " + i + ": " + lines.get(i));
+        }
+        Set<String> seen = new HashSet<>();
+        List<String> firstOccurrences = lines.stream()
+                .filter(line -> seen.add(line.substring(0, line.indexOf(",\"accepted\""))))
+                .toList();
+        assertEquals(readLines("output.txt"), firstOccurrences);
+    }
+
+    /**
+     * Test that an upload is counted against the client named by a trusted proxy, and against the remote address
+     * when anyone else names a client.
+     */
+    @Test
+    void testClientNamedOnlyByTrustedProxy() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "input.txt", "text/plain",
+                "".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(multipart("/api/funds/load").file(file)
+                        .header(FundController.CLIENT_ID_HEADER, "a")
+                        .with(request -> {
+                            request.setRemoteAddr(PROXY);
+                            return request;
+                        }))
+                .andExpect(status().isOk());
+        mockMvc.perform(multipart("/api/funds/load").file(file)
+                        .header(FundController.CLIENT_ID_HEADER, "a")
+                        .with(request -> {
+                            request.setRemoteAddr("10.0.0.2");
+                            return request;
+                        }))
+                .andExpect(status().isOk());
+
+        verify(uploadAdmission).admit(eq("client:a"), anyLong());
+        verify(uploadAdmission).admit(eq("address:10.0.0.2"), anyLong());
+    }
+
+    /**
+     * Test that a single load missing a field or with a malformed or out of range field is refused with 400 without being decided,
+     * while a complete load is decided.
+     */
+    @Test
+    void testIncompleteSingleLoadRefused() throws Exception {
+        List<String> invalid = List.of(
+                "{\"customer_id\":\"528\",\"load_amount\":\"$3318.47\",\"time\":\"2000-01-01T00:00:00Z\"}",
+                "{\"id\":\"15887\",\"load_amount\":\"$3318.47\",\"time\":\"2000-01-01T00:00:00Z\"}",
+                "{\"id\":\"15887\",\"customer_id\":\"528\",\"time\":\"2000-01-01T00:00:00Z\"}",
+                "{\"id\":\"15887\",\"customer_id\":\"528\",\"load_amount\":\"$3318.47\"}",
+                "{\"id\":\"x\",\"customer_id\":\"528\",\"load_amount\":\"$3318.47\",\"time\":\"2000-01-01T00:00:00Z\"}",
+                "{\"id\":\"15887\",\"customer_id\":\"528\",\"load_amount\":\"$3318.47\",\"time\":\"2000-01-01\"}",
+                "{\"id\":\"15887\",\"customer_id\":\"528\",\"load_amount\":\"$3318.47\","
+                        + "\"time\":\"+300000-01-01T00:00:00\"}");
+
+        for (String body : invalid) {
+            mockMvc.perform(post("/api/funds/load").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isBadRequest());
+        }
+        verifyNoInteractions(fundService);
+
+        mockMvc.perform(post("/api/funds/load").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"id\":\"15887\",\"customer_id\":\"528\",\"load_amount\":\"$3318.47\","
+                                + "\"time\":\"2000-01-01T00:00:00Z\"}"))
+                .andExpect(status().isOk());
+        verify(fundService).loadFund(any());
+    }
+
+    private FundService getFundService() {
+        FundConfiguration serviceConfiguration = new FundConfiguration();
+        serviceConfiguration.setChunkSize(100);
+        serviceConfiguration.setPersistQueueCapacity(1);
+        serviceConfiguration.setParallelism(4);
+        serviceConfiguration.setRules(List.of(
+                new VelocityRule("daily-amount", VelocityWindow.DAY, VelocityMetric.AMOUNT, 5000),
+                new VelocityRule("daily-count", VelocityWindow.DAY, VelocityMetric.COUNT, 3),
+                new VelocityRule("weekly-amount", VelocityWindow.WEEK, VelocityMetric.AMOUNT, 20000)));
+        serviceConfiguration.setLockStripes(16);
+        FundValidationProcessor validator = new FundValidationProcessor(serviceConfiguration);
+        CustomerStateRegistry customerStates = new CustomerStateRegistry(validator, serviceConfiguration);
+        DuplicateLoadIndex duplicateLoadIndex = new DuplicateLoadIndex(fundStore, serviceConfiguration);
+        FundMetrics fundMetrics = new FundMetrics(new SimpleMeterRegistry(), serviceConfiguration, customerStates,
+                duplicateLoadIndex);
+        return new FundService(fundStore, customerStates, duplicateLoadIndex, validator, new StreamingFundParser(),
+                serviceConfiguration, fundMetrics, validationExecutor, persistExecutor,
+                new ResultCache(serviceConfiguration), new ClusterMembership(serviceConfiguration),
+                new ClusterClient(serviceConfiguration));
+    }
+
+    private List<String> readLines(String path) throws IOException {
+        try (InputStream resource = getResource(path)) {
+            return new String(resource.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    private InputStream getResource(String path) {
+        InputStream resource = getClass().getClassLoader().getResourceAsStream(path);
+        assertNotNull(resource, "File not found: " + path);
+        return resource;
+    }
+}
@@ -0,0 +1,126 @@
+package com.tryvault.task.service;
+
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.validator.FundValidationProcessor;
+import com.tryvault.task.validator.VelocityMetric;
+import com.tryvault.task.validator.VelocityRule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomerStateRegistryTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private CustomerStateRegistry registry;
+
+    @BeforeEach
+    public void setup() {
+        FundConfiguration fundConfiguration = new FundConfiguration();
+        fundConfiguration.setRules(List.of(new VelocityRule("daily-count", VelocityWindow.DAY, VelocityMetric.COUNT, 3)));
+        fundConfiguration.setCustomerCacheSize(2);
+        fundConfiguration.setCustomerCacheTtl(Duration.ofMinutes(10));
+        registry = new CustomerStateRegistry(new FundValidationProcessor(fundConfiguration), fundConfiguration, clock::get);
+    }
+
+    /**
+     * Test that a registered customer is served from the cache and counted as a hit, and an unknown one as a miss.
+     */
+    @Test
+    void testHitsAndMisses() {
+        assertNull(registry.get(1L));
+        CustomerState state = registry.register(1L, registry.newAggregates());
+
+        assertSame(state, registry.get(1L));
+        assertSame(state, registry.register(1L, registry.newAggregates()));
+        assertEquals(1, registry.getHits());
+        assertEquals(1, registry.getMisses());
+    }
+
+    /**
+     * Test that the least recently used customer is evicted when the cache is full.
+     */
+    @Test
+    void testLeastRecentlyUsedEvicted() {
+        registry.register(1L, registry.newAggregates());
+        registry.register(2L, registry.newAggregates());
+        assertNotNull(registry.get(1L));
+
+        registry.register(3L, registry.newAggregates());
+
+        assertEquals(2, registry.size());
+        assertNull(registry.get(2L));
+        assertNotNull(registry.get(1L));
+        assertNotNull(registry.get(3L));
+        assertEquals(1, registry.getEvictions());
+    }
+
+    /**
+     * Test that a customer not used for the time to live is dropped, while a recently used one stays.
+     */
+    @Test
+    void testExpiredCustomerDropped() {
+        registry.register(1L, registry.newAggregates());
+        registry.register(2L, registry.newAggregates());
+        clock.addAndGet(Duration.ofMinutes(6).toNanos());
+        assertNotNull(registry.get(2L));
+        clock.addAndGet(Duration.ofMinutes(6).toNanos());
+
+        assertNull(registry.get(1L));
+        assertNotNull(registry.get(2L));
+        assertEquals(1, registry.getEvictions());
+    }
+
+    /**
+     * Test that a cache large enough to be split into segments holds its size in total, evicting per segment.
+     */
+    @Test
+    void testSegmentedCacheBounded() {
+        FundConfiguration fundConfiguration = new FundConfiguration();
+        fundConfiguration.setRules(List.of(new VelocityRule("daily-count", VelocityWindow.DAY, VelocityMetric.COUNT, 3)));
+        fundConfiguration.setCustomerCacheSize(1024);
+        fundConfiguration.setLockStripes(16);
+        registry = new CustomerStateRegistry(new FundValidationProcessor(fundConfiguration), fundConfiguration, clock::get);
+
+        for (long customerId = 0; customerId < 4096; customerId++) {
+            registry.register(customerId, registry.newAggregates());
+        }
+
+        assertTrue(registry.size() <= 1024, "size " + registry.size());
+        assertTrue(registry.size() > 512, "size " + registry.size());
+        assertEquals(4096 - registry.size(), registry.getEvictions());
+        assertNotNull(registry.get(4095L));
+    }
+
+    /**
+     * Test that pinned customers are not evicted, even beyond the cache size, until they are unpinned.
+     */
+    @Test
+    void testPinnedCustomerNotEvicted() {
+        CustomerState first = registry.registerPinned(1L, registry.newAggregates());
+        CustomerState second = registry.registerPinned(2L, registry.newAggregates());
+        CustomerState third = registry.registerPinned(3L, registry.newAggregates());
+        clock.addAndGet(Duration.ofMinutes(20).toNanos());
+
+        assertSame(first, registry.getPinned(1L));
+        assertEquals(3, registry.size());
+        assertEquals(0, registry.getEvictions());
+
+        registry.unpin(List.of(second));
+        assertEquals(2, registry.size());
+        assertNull(registry.get(2L));
+        assertSame(third, registry.get(3L));
+
+        registry.unpin(List.of(first, first, third));
+        clock.addAndGet(Duration.ofMinutes(20).toNanos());
+        assertNull(registry.get(3L));
+        assertEquals(0, registry.size());
+        assertEquals(3, registry.getEvictions());
+    }
+}
@@ -0,0 +1,156 @@
+package com.tryvault.task.service;
+
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.repository.FundStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+class DuplicateLoadIndexTest {
+
+    @Mock
+    private FundStore fundStore;
+
+    private DuplicateLoadIndex duplicateLoadIndex;
+
+    private FundConfiguration fundConfiguration;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        fundConfiguration = new FundConfiguration();
+        fundConfiguration.setDedupExpectedLoads(10_000);
+        duplicateLoadIndex = new DuplicateLoadIndex(fundStore, fundConfiguration);
+    }
+
+    /**
+     * Test that a load pair is only new the first time, and the same load ID of another customer is a new pair.
+     */
+    @Test
+    void testRepeatedPairRejected() {
+        assertFalse(duplicateLoadIndex.contains(1L, 100L));
+        assertTrue(duplicateLoadIndex.add(1L, 100L, 0));
+        assertTrue(duplicateLoadIndex.contains(1L, 100L));
+        assertFalse(duplicateLoadIndex.add(1L, 100L, 0));
+        assertFalse(duplicateLoadIndex.contains(2L, 100L));
+        assertTrue(duplicateLoadIndex.add(2L, 100L, 0));
+        assertEquals(2, duplicateLoadIndex.size());
+    }
+
+    /**
+     * Test that the pair of a rejected load is recorded like an accepted one and is taken over when a load with the
+     * same ID is accepted.
+     */
+    @Test
+    void testRejectedPairRecorded() {
+        long day = Duration.ofDays(1).getSeconds();
+        when(fundStore.getRetention()).thenReturn(Duration.ofDays(1));
+        duplicateLoadIndex = new DuplicateLoadIndex(fundStore, fundConfiguration);
+
+        duplicateLoadIndex.addRejected(1L, 100L, 10 * day);
+        assertTrue(duplicateLoadIndex.contains(1L, 100L));
+        assertFalse(duplicateLoadIndex.isAccepted(1L, 100L));
+        assertEquals(1, duplicateLoadIndex.size());
+
+        assertTrue(duplicateLoadIndex.add(1L, 100L, 10 * day));
+        assertTrue(duplicateLoadIndex.isAccepted(1L, 100L));
+        assertEquals(1, duplicateLoadIndex.size());
+    }
+
+    /**
+     * Test that the pairs of rejected loads roll with the generations of the accepted ones, so they are forgotten
+     * once the loads have moved on by two retention periods, and older rejected loads are not recorded.
+     */
+    @Test
+    void testRejectedPairsBoundedByRetention() {
+        long day = Duration.ofDays(1).getSeconds();
+        when(fundStore.getRetention()).thenReturn(Duration.ofDays(1));
+        duplicateLoadIndex = new DuplicateLoadIndex(fundStore, fundConfiguration);
+
+        duplicateLoadIndex.addRejected(1L, 1L, 10 * day);
+        duplicateLoadIndex.add(2L, 2L, 11 * day);
+        assertTrue(duplicateLoadIndex.contains(1L, 1L));
+
+        duplicateLoadIndex.addRejected(3L, 3L, 12 * day);
+        assertFalse(duplicateLoadIndex.contains(1L, 1L));
+        assertTrue(duplicateLoadIndex.contains(3L, 3L));
+        duplicateLoadIndex.addRejected(4L, 4L, 9 * day);
+        assertFalse(duplicateLoadIndex.contains(4L, 4L));
+        assertEquals(2, duplicateLoadIndex.size());
+    }
+
+    /**
+     * Test that removed pairs are forgotten while the pairs probed after them are still found.
+     */
+    @Test
+    void testRemovedPairForgotten() {
+        for (long id = 0; id < 1000; id++) {
+            duplicateLoadIndex.add(1L, id, 0);
+        }
+
+        for (long id = 0; id < 1000; id += 2) {
+            duplicateLoadIndex.remove(1L, id);
+        }
+
+        assertEquals(500, duplicateLoadIndex.size());
+        for (long id = 0; id < 1000; id++) {
+            assertEquals(id % 2 == 1, duplicateLoadIndex.contains(1L, id), "id " + id);
+        }
+        assertTrue(duplicateLoadIndex.add(1L, 0L, 0));
+    }
+
+    /**
+     * Test that pairs are forgotten once the loads have moved on by two retention periods of the store, and older
+     * loads are not recorded.
+     */
+    @Test
+    void testPairsBoundedByRetention() {
+        long day = Duration.ofDays(1).getSeconds();
+        when(fundStore.getRetention()).thenReturn(Duration.ofDays(1));
+        duplicateLoadIndex = new DuplicateLoadIndex(fundStore, fundConfiguration);
+
+        duplicateLoadIndex.add(1L, 1L, 10 * day);
+        duplicateLoadIndex.add(2L, 2L, 11 * day);
+        assertTrue(duplicateLoadIndex.contains(1L, 1L));
+        assertEquals(2, duplicateLoadIndex.size());
+
+        duplicateLoadIndex.add(3L, 3L, 12 * day);
+        assertFalse(duplicateLoadIndex.contains(1L, 1L));
+        assertTrue(duplicateLoadIndex.contains(2L, 2L));
+        assertEquals(2, duplicateLoadIndex.size());
+
+        assertTrue(duplicateLoadIndex.add(4L, 4L, 11 * day));
+        assertTrue(duplicateLoadIndex.contains(4L, 4L));
+        assertTrue(duplicateLoadIndex.add(5L, 5L, 9 * day));
+        assertFalse(duplicateLoadIndex.contains(5L, 5L));
+        assertEquals(3, duplicateLoadIndex.size());
+    }
+
+    /**
+     * Test that the stored loads are indexed on rebuild.
+     */
+    @Test
+    void testRebuildFromStore() {
+        doAnswer(invocation -> {
+            FundStore.LoadIdConsumer consumer = invocation.getArgument(0);
+            for (long id = 0; id < 50_000; id++) {
+                consumer.accept(id % 100, id, id);
+            }
+            return null;
+        }).when(fundStore).forEachLoadId(any());
+
+        duplicateLoadIndex.rebuild();
+
+        assertEquals(50_000, duplicateLoadIndex.size());
+        assertTrue(duplicateLoadIndex.contains(42L, 4242L));
+        assertFalse(duplicateLoadIndex.contains(42L, 4243L));
+    }
+}
@@ -1,5 +1,616 @@
 package com.tryvault.task.service;
 
+import com.sun.net.httpserver.HttpServer;
+import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.cluster.ClusterClient;
+import com.tryvault.task.cluster.ClusterMembership;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.entity.Fund;
+import com.tryvault.task.metrics.FundMetrics;
+import com.tryvault.task.metrics.FundMetrics.Stage;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.model.FundValues;
+import com.tryvault.task.parser.StreamingFundParser;
+import com.tryvault.task.repository.FundStore;
+import com.tryvault.task.validator.FundValidationProcessor;
+import com.tryvault.task.validator.VelocityMetric;
+import com.tryvault.task.validator.VelocityRule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
 class FundServiceTest {
 
-}
\ No newline at end of file
+    @Mock
+    private FundStore fundStore;
+
+    @TempDir
+    private Path directory;
+
+    private ExecutorService validationExecutor;
+    private ExecutorService persistExecutor;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        validationExecutor = Executors.newFixedThreadPool(4);
+        persistExecutor = Executors.newFixedThreadPool(2);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        validationExecutor.shutdownNow();
+        persistExecutor.shutdownNow();
+    }
+
+    /**
+     * Test that validating customer shards in parallel gives the same results, in the same order, as validating
+     * the file sequentially.
+     */
+    @Test
+    void testParallelMatchesSequential() throws IOException {
+        var sequential = loadFunds(getFundService(1), "input.txt");
+        var parallel = loadFunds(getFundService(4), "input.txt");
+
+        assertEquals(sequential, parallel);
+    }
+
+    /**
+     * Test that the parallel results match the expected output file line by line. The expected output has no line
+     * for a repeated fund ID, which is reported as rejected.
+     */
+    @Test
+    void testParallelMatchesOutputFile() throws IOException {
+        var parallel = loadFunds(getFundService(4), "input.txt");
+
+        Set<String> seen = new HashSet<>();
+        var firstOccurrences = parallel.stream()
+                .filter(line -> seen.add(line.substring(0, line.indexOf(",\"accepted\""))))
+                .toList();
+        assertEquals(readLines("output.txt"), firstOccurrences);
+    }
+
+    /**
+     * Test that the results of a completed upload are replayed by the hash of its content, and that the results of
+     * an upload read with the result cache disabled are not kept.
+     */
+    @Test
+    void testRetriedUploadReplayed() throws IOException {
+        FundService fundService = getFundService(4);
+        var first = loadFunds(fundService, "input.txt");
+        String contentHash;
+        try (InputStream input = getResource("input.txt")) {
+            contentHash = ResultCache.hash(input);
+        }
+
+        List<String> replayed = new ArrayList<>();
+        assertTrue(fundService.replayResults(contentHash, response -> replayed.add(response.toString())));
+        assertEquals(first, replayed);
+        assertFalse(getFundService(4).replayResults(contentHash, response -> fail("Nothing is cached")));
+    }
+
+    /**
+     * Test that the results of an upload whose hash was computed before it is read are cached under that hash.
+     */
+    @Test
+    void testUploadWithKnownHashReplayed() throws IOException {
+        FundService fundService = getFundService(4);
+        List<String> first = new ArrayList<>();
+        try (InputStream input = getResource("input.txt")) {
+            fundService.loadFunds(input, (FundLoadResponse response) -> first.add(response.toString()), "known");
+        }
+
+        List<String> replayed = new ArrayList<>();
+        assertTrue(fundService.replayResults("known", response -> replayed.add(response.toString())));
+        assertEquals(first, replayed);
+    }
+
+    /**
+     * Test that an upload to one node of a two-node cluster gives the results of a single node: the loads of the
+     * customers owned by the other node are forwarded to it and decided there, and the results are merged back in
+     * input order.
+     */
+    @Test
+    void testClusterMatchesSingleNode() throws IOException {
+        var single = loadFunds(getFundService(4), "input.txt");
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        String entry = "http://localhost:1";
+        String owner = "http://localhost:" + server.getAddress().getPort();
+        FundService ownerService = getFundService(4, DataSize.ofMegabytes(16), owner, List.of(entry, owner));
+        AtomicInteger forwarded = new AtomicInteger();
+        server.createContext("/api/cluster/loads", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                boolean resumed = Boolean.parseBoolean(exchange.getRequestHeaders().getFirst(
+                        ClusterClient.RESUMED_HEADER));
+                ownerService.loadOwnedFunds(exchange.getRequestBody(), response -> {
+                    forwarded.incrementAndGet();
+                    try {
+                        writer.write(response + "\n");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, resumed);
+            }
+        });
+        server.start();
+        try {
+            FundService entryService = getFundService(4, DataSize.ofMegabytes(16), entry, List.of(entry, owner));
+            assertEquals(single, loadFunds(entryService, "input.txt"));
+            assertTrue(forwarded.get() > 0 && forwarded.get() < single.size());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Test that an upload whose loads could not be forwarded takes back the local loads of the failed chunk, so the
+     * chunk sent again gives the results of an upload that never failed.
+     */
+    @Test
+    void testFailedForwardTakenBack() throws IOException {
+        var full = loadFunds(getFundService(4), "input.txt");
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        String entry = "http://localhost:1";
+        String owner = "http://localhost:" + server.getAddress().getPort();
+        FundService ownerService = getFundService(4, DataSize.ofMegabytes(16), owner, List.of(entry, owner));
+        AtomicInteger requests = new AtomicInteger();
+        server.createContext("/api/cluster/loads", exchange -> {
+            if (requests.incrementAndGet() == 3) {
+                exchange.getRequestBody().readAllBytes();
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                boolean resumed = Boolean.parseBoolean(exchange.getRequestHeaders().getFirst(
+                        ClusterClient.RESUMED_HEADER));
+                ownerService.loadOwnedFunds(exchange.getRequestBody(), response -> {
+                    try {
+                        writer.write(response + "\n");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, resumed);
+            }
+        });
+        server.start();
+        try {
+            FundService entryService = getFundService(4, DataSize.ofMegabytes(16), entry, List.of(entry, owner));
+            LoadProgress failed = new LoadProgress();
+            assertThrows(IllegalStateException.class, () -> {
+                try (InputStream input = getResource("input.txt")) {
+                    entryService.loadFunds(input, response -> { }, failed);
+                }
+            });
+            assertEquals(200, failed.getCommitted());
+
+            // The failed chunk sent again as a new upload is decided as if it had never been sent
+            List<String> lines;
+            try (InputStream input = getResource("input.txt")) {
+                lines = new String(input.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+            }
+            byte[] failedChunk = (String.join("\n", lines.subList(200, 300)) + "\n").getBytes(StandardCharsets.UTF_8);
+            List<String> responses = new ArrayList<>();
+            entryService.loadFunds(new ByteArrayInputStream(failedChunk),
+                    (FundLoadResponse response) -> responses.add(response.toString()));
+            assertEquals(full.subList(200, 300), responses);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Test that a gzip compressed upload gives the same results as the plain file.
+     */
+    @Test
+    void testCompressedInputMatchesPlain() throws IOException {
+        var plain = loadFunds(getFundService(4), "input.txt");
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (InputStream input = getResource("input.txt"); GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            input.transferTo(gzip);
+        }
+        List<String> responses = new ArrayList<>();
+        getFundService(4).loadFunds(new ByteArrayInputStream(compressed.toByteArray()),
+                (FundLoadResponse response) -> responses.add(response.toString()));
+
+        assertEquals(plain, responses);
+    }
+
+    /**
+     * Test that a file parsed in memory-mapped regions gives the same results as the file streamed.
+     */
+    @Test
+    void testMappedFileMatchesStream() throws IOException {
+        var streamed = loadFunds(getFundService(4), "input.txt");
+
+        Path file = directory.resolve("input.txt");
+        try (InputStream input = getResource("input.txt")) {
+            Files.copy(input, file);
+        }
+        FundService fundService = getFundService(4, DataSize.ofKilobytes(4));
+        List<String> mapped = new ArrayList<>();
+        fundService.loadFunds(file, (FundLoadResponse response) -> mapped.add(response.toString()));
+
+        assertEquals(streamed, mapped);
+    }
+
+    /**
+     * Test that deciding the loads one at a time gives the same results as uploading them as a file.
+     */
+    @Test
+    void testSingleLoadsMatchBatch() throws IOException {
+        var batch = loadFunds(getFundService(1), "input.txt");
+
+        FundService fundService = getFundService(1);
+        List<Fund> funds = new ArrayList<>();
+        try (InputStream input = getResource("input.txt")) {
+            new StreamingFundParser().parse(input, funds::add);
+        }
+        var single = funds.stream().map(fundService::loadFund).map(FundLoadResponse::toString).toList();
+
+        assertEquals(batch, single);
+    }
+
+    /**
+     * Test that concurrent single loads of the same customer are serialized, so the daily count limit holds.
+     */
+    @Test
+    void testConcurrentSingleLoadsOfSameCustomer() throws Exception {
+        FundService fundService = getFundService(1);
+        List<Future<FundLoadResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Fund fund = Fund.create(i + 1, 7L, 10, LocalDateTime.of(2000, 1, 3, 10, i));
+            futures.add(validationExecutor.submit(() -> fundService.loadFund(fund)));
+        }
+
+        int accepted = 0;
+        for (Future<FundLoadResponse> future : futures) {
+            accepted += future.get().isAccepted() ? 1 : 0;
+        }
+        assertEquals(3, accepted);
+    }
+
+    /**
+     * Test that the stored history streamed by the store, as single loads or as a daily total, counts towards the
+     * limits of a customer not yet cached, and only for that customer.
+     */
+    @Test
+    void testStoredHistoryCounted() {
+        long storedTime = FundValues.toEpochSecond(LocalDateTime.of(2000, 1, 3, 8, 0));
+        doAnswer(invocation -> {
+            Set<Long> customerIds = invocation.getArgument(0);
+            FundStore.HistoryLoadConsumer consumer = invocation.getArgument(2);
+            if (customerIds.contains(7L)) {
+                consumer.accept(7L, 3, 3000, storedTime);
+            }
+            if (customerIds.contains(9L)) {
+                for (int i = 0; i < 3; i++) {
+                    consumer.accept(9L, 1, 1000, storedTime + i);
+                }
+            }
+            return null;
+        }).when(fundStore).forEachHistoryLoad(any(), any(), any());
+        FundService fundService = getFundService(1);
+
+        assertFalse(fundService.loadFund(Fund.create(1, 7L, 10, LocalDateTime.of(2000, 1, 3, 10, 0))).isAccepted());
+        assertTrue(fundService.loadFund(Fund.create(2, 8L, 10, LocalDateTime.of(2000, 1, 3, 10, 0))).isAccepted());
+        assertTrue(fundService.loadFund(Fund.create(3, 7L, 10, LocalDateTime.of(2000, 1, 4, 10, 0))).isAccepted());
+        assertFalse(fundService.loadFund(Fund.create(4, 9L, 10, LocalDateTime.of(2000, 1, 3, 10, 0))).isAccepted());
+    }
+
+    /**
+     * Test that a load more than eight weeks older than the customer's newest load is checked against its buckets in
+     * the stored history, along with the older loads of the same upload that are not saved yet.
+     */
+    @Test
+    void testOlderLoadCheckedAgainstStoredHistory() throws IOException {
+        long storedTime = FundValues.toEpochSecond(LocalDateTime.of(1999, 11, 1, 8, 0));
+        doAnswer(invocation -> {
+            Set<Long> customerIds = invocation.getArgument(0);
+            LocalDateTime startDate = invocation.getArgument(1);
+            FundStore.HistoryLoadConsumer consumer = invocation.getArgument(2);
+            if (customerIds.contains(7L) && startDate.isBefore(LocalDateTime.of(1999, 11, 1, 8, 0))) {
+                consumer.accept(7L, 2, 2000, storedTime);
+            }
+            return null;
+        }).when(fundStore).forEachHistoryLoad(any(), any(), any());
+        String input = """
+                {"id":"1","customer_id":"7","load_amount":"$10.00","time":"2000-01-20T10:00:00Z"}
+                {"id":"2","customer_id":"7","load_amount":"$10.00","time":"1999-11-01T10:00:00Z"}
+                {"id":"3","customer_id":"7","load_amount":"$10.00","time":"1999-11-01T11:00:00Z"}
+                {"id":"4","customer_id":"7","load_amount":"$10.00","time":"1999-11-02T10:00:00Z"}
+                """;
+
+        List<Boolean> accepted = new ArrayList<>();
+        getFundService(1).loadFunds(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                (FundLoadResponse response) -> accepted.add(response.isAccepted()));
+
+        assertEquals(List.of(true, true, false, true), accepted);
+    }
+
+    /**
+     * Test that reading stops when validated chunks wait to be saved, and that no decision is reported before its
+     * chunk is saved.
+     */
+    @Test
+    void testPersistBackpressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(fundStore).insertAll(any());
+        FundService fundService = getFundService(1);
+        LoadProgress progress = new LoadProgress();
+        List<FundLoadResponse> responses = Collections.synchronizedList(new ArrayList<>());
+
+        Future<?> upload = validationExecutor.submit(() -> {
+            try (InputStream input = getResource("input.txt")) {
+                fundService.loadFunds(input, responses::add, progress);
+            }
+            return null;
+        });
+        // One chunk being saved and one waiting, with a capacity of 1 and chunks of 100 loads
+        for (int i = 0; i < 100 && progress.getValidated() < 200; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+
+        assertEquals(200, progress.getValidated());
+        assertTrue(responses.isEmpty());
+        release.countDown();
+        upload.get();
+        assertEquals(1000, responses.size());
+        assertEquals(1000, progress.getCommitted());
+    }
+
+    /**
+     * Test that an upload resumed from a checkpoint skips the committed loads and decides the rest.
+     */
+    @Test
+    void testResumeFromCheckpoint() throws IOException {
+        var full = loadFunds(getFundService(4), "input.txt");
+
+        LoadProgress progress = new LoadProgress(250);
+        List<FundLoadResponse> responses = new ArrayList<>();
+        try (InputStream input = getResource("input.txt")) {
+            getFundService(4).loadFunds(input, responses::add, progress);
+        }
+
+        assertEquals(full.size() - 250, responses.size());
+        assertEquals(idsOf(full.subList(250, full.size())),
+                idsOf(responses.stream().map(FundLoadResponse::toString).toList()));
+        assertEquals(full.size(), progress.getParsed());
+        assertEquals(full.size(), progress.getCommitted());
+    }
+
+    /**
+     * Test that the loads accepted by chunks that could not be saved are taken back from the customer state and the
+     * duplicate load index, so the upload resumed after the failure decides them like an upload that never failed.
+     */
+    @Test
+    void testUnsavedChunksTakenBack() throws IOException {
+        var full = loadFunds(getFundService(4), "input.txt");
+        AtomicInteger inserts = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (inserts.incrementAndGet() == 3) {
+                throw new IllegalStateException("Database is down");
+            }
+            return null;
+        }).when(fundStore).insertAll(any());
+        FundService fundService = getFundService(4);
+
+        LoadProgress failed = new LoadProgress();
+        assertThrows(IllegalStateException.class, () -> {
+            try (InputStream input = getResource("input.txt")) {
+                fundService.loadFunds(input, response -> { }, failed);
+            }
+        });
+        assertEquals(200, failed.getCommitted());
+
+        LoadProgress progress = new LoadProgress(failed.getCommitted());
+        List<String> responses = new ArrayList<>();
+        try (InputStream input = getResource("input.txt")) {
+            fundService.loadFunds(input, (FundLoadResponse response) -> responses.add(response.toString()), progress);
+        }
+        assertEquals(full.subList(200, full.size()), responses);
+    }
+
+    /**
+     * Test that an upload resumed from a checkpoint the interrupted run did not move past its last saved chunk
+     * reports the loads of that chunk with the decisions that were saved, without saving them again.
+     */
+    @Test
+    void testSavedChunkAfterCheckpointRecovered() throws IOException {
+        var full = loadFunds(getFundService(4), "input.txt");
+        Set<String> stored = Collections.synchronizedSet(new HashSet<>());
+        doAnswer(invocation -> {
+            FundBatch batch = invocation.getArgument(0);
+            for (int i = 0; i < batch.size(); i++) {
+                assertTrue(stored.add(batch.getCustomerId(i) + ":" + batch.getId(i)), "saved twice");
+            }
+            return null;
+        }).when(fundStore).insertAll(any());
+        FundService fundService = getFundService(4);
+
+        // The run stops after saving the third chunk, before its checkpoint is written
+        LoadProgress interrupted = new LoadProgress();
+        interrupted.setCheckpointListener(committed -> {
+            if (committed == 300) {
+                throw new IllegalStateException("Service stopped");
+            }
+        });
+        assertThrows(IllegalStateException.class, () -> {
+            try (InputStream input = getResource("input.txt")) {
+                fundService.loadFunds(input, response -> { }, interrupted);
+            }
+        });
+
+        LoadProgress progress = new LoadProgress(200);
+        List<String> responses = new ArrayList<>();
+        try (InputStream input = getResource("input.txt")) {
+            fundService.loadFunds(input, (FundLoadResponse response) -> responses.add(response.toString()), progress);
+        }
+        assertEquals(full.subList(200, full.size()), responses);
+        assertEquals(full.stream().filter(line -> line.endsWith("\"accepted\":true}")).count(), stored.size());
+    }
+
+    /**
+     * Test that a single load that could not be saved is taken back, so the same load sent again is accepted.
+     */
+    @Test
+    void testUnsavedSingleLoadTakenBack() {
+        AtomicInteger inserts = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (inserts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Database is down");
+            }
+            return null;
+        }).when(fundStore).insertAll(any());
+        FundService fundService = getFundService(1);
+        Fund fund = Fund.create(1, 7L, 5000, LocalDateTime.of(2000, 1, 3, 10, 0));
+
+        assertThrows(IllegalStateException.class, () -> fundService.loadFund(fund));
+
+        assertTrue(fundService.loadFund(fund).isAccepted());
+    }
+
+    /**
+     * Test that loads repeated from an earlier upload are rejected as duplicates.
+     */
+    @Test
+    void testRepeatedUploadRejected() throws IOException {
+        FundService fundService = getFundService(4);
+        loadFunds(fundService, "input.txt");
+
+        var repeated = loadFunds(fundService, "input.txt");
+
+        assertFalse(repeated.isEmpty());
+        assertTrue(repeated.stream().allMatch(line -> line.endsWith("\"accepted\":false}")), repeated.get(0));
+    }
+
+    /**
+     * Test that every decision is counted, rejections are counted by reason and every stage is timed.
+     */
+    @Test
+    void testDecisionsCounted() throws IOException {
+        var responses = loadFunds(getFundService(4), "input.txt");
+
+        long rejected = responses.stream().filter(line -> line.endsWith("\"accepted\":false}")).count();
+        assertEquals(responses.size() - rejected, countOf(FundMetrics.DECISIONS, "outcome", "accepted"));
+        assertEquals(rejected, countOf(FundMetrics.DECISIONS, "outcome", "rejected"));
+        assertEquals(1, countOf(FundMetrics.REJECTIONS, "reason", FundMetrics.DUPLICATE_REASON));
+        long ruleRejections = countOf(FundMetrics.REJECTIONS, "reason", "daily-amount")
+                + countOf(FundMetrics.REJECTIONS, "reason", "daily-count")
+                + countOf(FundMetrics.REJECTIONS, "reason", "weekly-amount");
+        // Every other rejection violated at least one rule, and counts under each rule it violated
+        assertTrue(ruleRejections >= rejected - 1, ruleRejections + " < " + rejected);
+        for (Stage stage : Stage.values()) {
+            assertTrue(meterRegistry.timer(FundMetrics.STAGE_TIMER, "stage", stage.name().toLowerCase()).count() > 0,
+                    stage.name());
+        }
+    }
+
+    private long countOf(String counter, String tag, String value) {
+        return (long) meterRegistry.counter(counter, tag, value).count();
+    }
+
+    private FundService getFundService(int parallelism) {
+        return getFundService(parallelism, DataSize.ofMegabytes(16));
+    }
+
+    private FundService getFundService(int parallelism, DataSize mappedRegionSize) {
+        return getFundService(parallelism, mappedRegionSize, "", List.of());
+    }
+
+    private FundService getFundService(int parallelism, DataSize mappedRegionSize, String clusterSelf,
+                                       List<String> clusterNodes) {
+        FundConfiguration fundConfiguration = new FundConfiguration();
+        fundConfiguration.setClusterSelf(clusterSelf);
+        fundConfiguration.setClusterNodes(clusterNodes);
+        fundConfiguration.setMappedRegionSize(mappedRegionSize);
+        fundConfiguration.setChunkSize(100);
+        fundConfiguration.setPersistQueueCapacity(1);
+        fundConfiguration.setParallelism(parallelism);
+        fundConfiguration.setRules(List.of(
+                new VelocityRule("daily-amount", VelocityWindow.DAY, VelocityMetric.AMOUNT, 5000),
+                new VelocityRule("daily-count", VelocityWindow.DAY, VelocityMetric.COUNT, 3),
+                new VelocityRule("weekly-amount", VelocityWindow.WEEK, VelocityMetric.AMOUNT, 20000)));
+        fundConfiguration.setLockStripes(16);
+        FundValidationProcessor validator = new FundValidationProcessor(fundConfiguration);
+        CustomerStateRegistry customerStates = new CustomerStateRegistry(validator, fundConfiguration);
+        DuplicateLoadIndex duplicateLoadIndex = new DuplicateLoadIndex(fundStore, fundConfiguration);
+        FundMetrics fundMetrics = new FundMetrics(meterRegistry, fundConfiguration, customerStates, duplicateLoadIndex);
+        return new FundService(fundStore, customerStates, duplicateLoadIndex, validator, new StreamingFundParser(),
+                fundConfiguration, fundMetrics, validationExecutor, persistExecutor,
+                new ResultCache(fundConfiguration), new ClusterMembership(fundConfiguration),
+                new ClusterClient(fundConfiguration));
+    }
+
+    private List<String> loadFunds(FundService fundService, String path) throws IOException {
+        List<String> responses = new ArrayList<>();
+        try (InputStream input = getResource(path)) {
+            fundService.loadFunds(input, (FundLoadResponse response) -> responses.add(response.toString()));
+        }
+        return responses;
+    }
+
+    private static List<String> idsOf(List<String> responses) {
+        return responses.stream().map(line -> line.substring(0, line.indexOf(",\"accepted\""))).toList();
+    }
+
+    private List<String> readLines(String path) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(getResource(path), StandardCharsets.UTF_8))) {
+            return reader.lines().toList();
+        }
+    }
+
+    private InputStream getResource(String path) {
+        InputStream resource = getClass().getClassLoader().getResourceAsStream(path);
+        assertNotNull(resource, "File not found: " + path);
+        return resource;
+    }
+}
@@ -0,0 +1,110 @@
+package com.tryvault.task.service;
+
+import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.config.FundConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    private FundConfiguration fundConfiguration;
+
+    @BeforeEach
+    public void setup() {
+        fundConfiguration = new FundConfiguration();
+        fundConfiguration.setResultCacheSize(4);
+    }
+
+    /**
+     * Test that recorded results are replayed in order by the hash of their upload.
+     */
+    @Test
+    void testReplay() throws IOException {
+        ResultCache resultCache = new ResultCache(fundConfiguration);
+        resultCache.put("a", record(resultCache, 3));
+
+        List<String> replayed = new ArrayList<>();
+        assertTrue(resultCache.replay("a", response -> replayed.add(response.toString())));
+        assertEquals(List.of(response(0).toString(), response(1).toString(), response(2).toString()), replayed);
+        assertFalse(resultCache.replay("b", response -> fail("Nothing is cached")));
+        assertEquals(ResultCache.hash(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8))),
+                ResultCache.hash(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Test that the least recently used uploads are evicted once the cache holds too many results, and that an upload
+     * with more results than the cache holds is not cached.
+     */
+    @Test
+    void testEviction() {
+        ResultCache resultCache = new ResultCache(fundConfiguration);
+        resultCache.put("a", record(resultCache, 2));
+        resultCache.put("b", record(resultCache, 2));
+        assertTrue(resultCache.replay("a", response -> { }));
+
+        resultCache.put("c", record(resultCache, 1));
+        assertTrue(resultCache.replay("a", response -> { }));
+        assertFalse(resultCache.replay("b", response -> { }));
+        assertTrue(resultCache.replay("c", response -> { }));
+
+        resultCache.put("d", record(resultCache, 5));
+        assertFalse(resultCache.replay("d", response -> { }));
+        assertTrue(resultCache.replay("a", response -> { }));
+    }
+
+    /**
+     * Test that an upload identical to one being decided waits for the first upload's results and replays them, and
+     * that the content is claimed again when the first upload stored no results.
+     */
+    @Test
+    void testIdenticalUploadWaitsForClaim() throws Exception {
+        ResultCache resultCache = new ResultCache(fundConfiguration);
+        ResultCache.Claim claim = resultCache.replayOrClaim("a", response -> fail("Nothing is cached"));
+        assertNotNull(claim);
+
+        List<String> replayed = new ArrayList<>();
+        CompletableFuture<ResultCache.Claim> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                return resultCache.replayOrClaim("a", response -> replayed.add(response.toString()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+
+        resultCache.put("a", record(resultCache, 2));
+        claim.close();
+        assertNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of(response(0).toString(), response(1).toString()), replayed);
+
+        ResultCache.Claim unstored = resultCache.replayOrClaim("b", response -> fail("Nothing is cached"));
+        unstored.close();
+        unstored.close();
+        ResultCache.Claim next = resultCache.replayOrClaim("b", response -> fail("Nothing is cached"));
+        assertNotNull(next);
+        next.close();
+    }
+
+    private static ResultCache.Recorder record(ResultCache resultCache, int count) {
+        ResultCache.Recorder recorder = resultCache.newRecorder();
+        for (int i = 0; i < count; i++) {
+            recorder.accept(response(i));
+        }
+        return recorder;
+    }
+
+    private static FundLoadResponse response(int i) {
+        return new FundLoadResponse(Integer.toString(100 + i), Integer.toString(i), i % 2 == 0);
+    }
+}
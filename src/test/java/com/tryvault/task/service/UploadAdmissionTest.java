@@ -0,0 +1,163 @@
+package com.tryvault.task.service;
+
+import com.tryvault.task.config.FundConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadAdmissionTest {
+
+    private FundConfiguration fundConfiguration;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        fundConfiguration = new FundConfiguration();
+        fundConfiguration.setUploadConcurrency(1);
+        fundConfiguration.setUploadMaxInFlightBytes(DataSize.ofBytes(100));
+        fundConfiguration.setUploadQueueCapacity(1);
+        fundConfiguration.setUploadQueueTimeout(Duration.ofMillis(50));
+        fundConfiguration.setUploadsPerClient(2);
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Test that a waiting upload is admitted once the running one finishes.
+     */
+    @Test
+    void testWaitingUploadAdmitted() throws Exception {
+        fundConfiguration.setUploadQueueTimeout(Duration.ofSeconds(5));
+        UploadAdmission admission = new UploadAdmission(fundConfiguration);
+        UploadAdmission.Permit running = admission.admit("a", 10);
+
+        Future<UploadAdmission.Permit> waiting = executor.submit(() -> admission.admit("b", 10));
+        for (int i = 0; i < 100 && admission.getWaiting() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, admission.getWaiting());
+        running.close();
+
+        waiting.get().close();
+        assertEquals(0, admission.getRunning());
+    }
+
+    /**
+     * Test that waiting uploads are admitted in arrival order, so a small upload that would fit does not overtake a
+     * large one waiting for memory.
+     */
+    @Test
+    void testWaitingUploadsAdmittedInOrder() throws Exception {
+        fundConfiguration.setUploadConcurrency(4);
+        fundConfiguration.setUploadQueueCapacity(2);
+        fundConfiguration.setUploadQueueTimeout(Duration.ofSeconds(5));
+        UploadAdmission admission = new UploadAdmission(fundConfiguration);
+        UploadAdmission.Permit running = admission.admit("a", 60);
+
+        Future<UploadAdmission.Permit> large = executor.submit(() -> admission.admit("b", 100));
+        for (int i = 0; i < 100 && admission.getWaiting() < 1; i++) {
+            Thread.sleep(10);
+        }
+        Future<UploadAdmission.Permit> small = executor.submit(() -> admission.admit("c", 10));
+        for (int i = 0; i < 100 && admission.getWaiting() < 2; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertEquals(2, admission.getWaiting());
+        assertFalse(small.isDone());
+
+        running.close();
+        UploadAdmission.Permit largePermit = large.get();
+        Thread.sleep(50);
+        assertFalse(small.isDone());
+        largePermit.close();
+        small.get().close();
+        assertEquals(0, admission.getRunning());
+        assertEquals(0, admission.getWaiting());
+    }
+
+    /**
+     * Test that an upload is refused when the queue is full, or when nothing finishes before the queue timeout.
+     */
+    @Test
+    void testRefusedWhenSaturated() throws Exception {
+        fundConfiguration.setUploadQueueCapacity(0);
+        UploadAdmission admission = new UploadAdmission(fundConfiguration);
+
+        try (UploadAdmission.Permit running = admission.admit("a", 10)) {
+            assertThrows(RejectedExecutionException.class, () -> admission.admit("b", 10));
+        }
+        fundConfiguration.setUploadQueueCapacity(1);
+        UploadAdmission queued = new UploadAdmission(fundConfiguration);
+        try (UploadAdmission.Permit running = queued.admit("a", 10)) {
+            assertThrows(RejectedExecutionException.class, () -> queued.admit("b", 10));
+            assertEquals(0, queued.getWaiting());
+        }
+        queued.admit("b", 10).close();
+    }
+
+    /**
+     * Test that buffered uploads are limited by their total size, and an upload over the limit runs alone.
+     */
+    @Test
+    void testInFlightBytes() {
+        fundConfiguration.setUploadConcurrency(4);
+        UploadAdmission admission = new UploadAdmission(fundConfiguration);
+
+        try (UploadAdmission.Permit first = admission.admit("a", 60)) {
+            assertThrows(RejectedExecutionException.class, () -> admission.admit("b", 60));
+            admission.admit("b", 40).close();
+            assertThrows(RejectedExecutionException.class, () -> admission.admit("c", 500));
+        }
+        try (UploadAdmission.Permit large = admission.admit("c", 500)) {
+            assertThrows(RejectedExecutionException.class, () -> admission.admit("b", 1));
+            admission.admit("b", 0).close();
+        }
+    }
+
+    /**
+     * Test that a client with as many uploads in progress as allowed is refused while other clients are not.
+     */
+    @Test
+    void testUploadsPerClient() {
+        fundConfiguration.setUploadConcurrency(4);
+        fundConfiguration.setUploadsPerClient(1);
+        UploadAdmission admission = new UploadAdmission(fundConfiguration);
+
+        try (UploadAdmission.Permit first = admission.admit("a", 0)) {
+            assertThrows(RejectedExecutionException.class, () -> admission.admit("a", 0));
+            admission.admit("b", 0).close();
+        }
+        admission.admit("a", 0).close();
+    }
+
+    /**
+     * Test that closing a permit again, as the streaming endpoint does when its request ends, gives nothing back.
+     */
+    @Test
+    void testPermitClosedOnce() {
+        fundConfiguration.setUploadConcurrency(2);
+        UploadAdmission admission = new UploadAdmission(fundConfiguration);
+
+        UploadAdmission.Permit first = admission.admit("a", 40);
+        try (UploadAdmission.Permit second = admission.admit("b", 40)) {
+            first.close();
+            first.close();
+            assertEquals(1, admission.getRunning());
+        }
+        assertEquals(0, admission.getRunning());
+    }
+}
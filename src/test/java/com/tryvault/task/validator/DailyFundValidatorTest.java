@@ -1,16 +1,18 @@
 package com.tryvault.task.validator;
 
+import com.tryvault.task.aggregate.CustomerAggregates;
+import com.tryvault.task.aggregate.VelocityWindow;
 import com.tryvault.task.config.FundConfiguration;
 import com.tryvault.task.entity.Fund;
 import com.tryvault.task.entity.FundId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.DayOfWeek;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Random;
 
@@ -21,14 +23,17 @@ class DailyFundValidatorTest {
     @Mock
     private FundConfiguration fundConfiguration;
 
-    @InjectMocks
-    DailyVelocityLimitValidator dailyFundValidator;
+    FundValidationProcessor dailyFundValidator;
 
     @BeforeEach
     public void setup(){
         MockitoAnnotations.openMocks(this);
-        when(fundConfiguration.getMaxDailyLoad()).thenReturn(3);
-        when(fundConfiguration.getMaxDailyLoadAmount()).thenReturn(5000);
+        when(fundConfiguration.getZone()).thenReturn(ZoneOffset.UTC);
+        when(fundConfiguration.getWeekStart()).thenReturn(DayOfWeek.SUNDAY);
+        when(fundConfiguration.getRules()).thenReturn(List.of(
+                new VelocityRule("daily-amount", VelocityWindow.DAY, VelocityMetric.AMOUNT, 5000),
+                new VelocityRule("daily-count", VelocityWindow.DAY, VelocityMetric.COUNT, 3)));
+        dailyFundValidator = new FundValidationProcessor(fundConfiguration);
     }
 
     /**
@@ -37,7 +42,7 @@ class DailyFundValidatorTest {
     @Test
     void testMaximumDailyLoadFund() {
         Fund fund = getFund(3000);
-        var result = dailyFundValidator.validate(new ArrayList<>(), fund);
+        var result = dailyFundValidator.isValid(aggregatesOf(), fund);
         assertTrue(result);
     }
 
@@ -50,7 +55,7 @@ class DailyFundValidatorTest {
         Fund fund2 = getFund(40.4);
         Fund fund3 = getFund(34.1);
         Fund fund4 = getFund(25);
-        var result = dailyFundValidator.validate(List.of(fund1,fund2,fund3), fund4);
+        var result = dailyFundValidator.isValid(aggregatesOf(fund1,fund2,fund3), fund4);
         assertFalse(result);
     }
 
@@ -62,7 +67,7 @@ class DailyFundValidatorTest {
         Fund fund1 = getFund(3000);
         Fund fund2 = getFund(500);
         Fund fund3 = getFund(4000);
-        var result = dailyFundValidator.validate(List.of(fund1,fund2), fund3);
+        var result = dailyFundValidator.isValid(aggregatesOf(fund1,fund2), fund3);
         assertFalse(result);
     }
 
@@ -73,7 +78,7 @@ class DailyFundValidatorTest {
     void testInvalidMaximumDailyLoadFund() {
         Fund fund = getFund(5001);
         fund.setTime(LocalDateTime.now());
-        var result = dailyFundValidator.validate(new ArrayList<>(), fund);
+        var result = dailyFundValidator.isValid(aggregatesOf(), fund);
         assertFalse(result);
     }
 
@@ -88,4 +93,15 @@ class DailyFundValidatorTest {
         fund.setTime(LocalDateTime.now());
         return fund;
     }
-}
\ No newline at end of file
+
+    /**
+     * Helper method to aggregate the given funds as the existing funds of a customer.
+     */
+    private static CustomerAggregates aggregatesOf(Fund... funds) {
+        CustomerAggregates aggregates = new CustomerAggregates(VelocityWindow.DAY, VelocityWindow.WEEK);
+        for (Fund fund : funds) {
+            aggregates.add(fund);
+        }
+        return aggregates;
+    }
+}
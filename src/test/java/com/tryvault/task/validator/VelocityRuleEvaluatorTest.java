@@ -0,0 +1,108 @@
+package com.tryvault.task.validator;
+
+import com.tryvault.task.aggregate.CustomerAggregates;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.entity.Fund;
+import com.tryvault.task.model.FundBatch;
+import com.tryvault.task.model.FundValues;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VelocityRuleEvaluatorTest {
+
+    private static final VelocityRule HOURLY_COUNT = new VelocityRule("hourly-count", VelocityWindow.HOUR, VelocityMetric.COUNT, 1);
+    private static final VelocityRule DAILY_AMOUNT = new VelocityRule("daily-amount", VelocityWindow.DAY, VelocityMetric.AMOUNT, 5000);
+    private static final VelocityRule DAILY_COUNT = new VelocityRule("daily-count", VelocityWindow.DAY, VelocityMetric.COUNT, 3);
+    private static final VelocityRule MONTHLY_AMOUNT = new VelocityRule("monthly-amount", VelocityWindow.MONTH, VelocityMetric.AMOUNT, 6000);
+
+    private final VelocityRuleEvaluator evaluator = new VelocityRuleEvaluator(
+            List.of(HOURLY_COUNT, DAILY_AMOUNT, DAILY_COUNT, MONTHLY_AMOUNT));
+
+    /**
+     * Test that rules sharing a window are compiled into one tracked window.
+     */
+    @Test
+    void testDistinctWindows() {
+        assertArrayEquals(new VelocityWindow[]{VelocityWindow.HOUR, VelocityWindow.DAY, VelocityWindow.MONTH},
+                evaluator.getWindows());
+    }
+
+    /**
+     * Test that a fund within every limit violates no rule.
+     */
+    @Test
+    void testNoViolation() {
+        var aggregates = aggregatesOf(getFund(1000, LocalDateTime.of(2000, 1, 3, 9, 0)));
+
+        assertTrue(evaluate(aggregates, getFund(1000, LocalDateTime.of(2000, 1, 3, 10, 0))).isEmpty());
+        assertTrue(evaluate(null, getFund(1000, LocalDateTime.of(2000, 1, 3, 10, 0))).isEmpty());
+    }
+
+    /**
+     * Test that every violated rule is reported, across different windows.
+     */
+    @Test
+    void testReportsAllViolatedRules() {
+        var aggregates = aggregatesOf(
+                getFund(2000, LocalDateTime.of(2000, 1, 2, 10, 0)),
+                getFund(1000, LocalDateTime.of(2000, 1, 3, 9, 0)),
+                getFund(1000, LocalDateTime.of(2000, 1, 3, 10, 5)),
+                getFund(1000, LocalDateTime.of(2000, 1, 3, 11, 0)));
+
+        var violated = evaluate(aggregates, getFund(1500, LocalDateTime.of(2000, 1, 3, 10, 30)));
+
+        assertEquals(List.of(HOURLY_COUNT, DAILY_COUNT, MONTHLY_AMOUNT), violated);
+    }
+
+    /**
+     * Test that a new month starts from zero.
+     */
+    @Test
+    void testMonthlyWindowResets() {
+        var aggregates = aggregatesOf(getFund(5000, LocalDateTime.of(2000, 1, 31, 10, 0)));
+
+        assertTrue(evaluate(aggregates, getFund(4000, LocalDateTime.of(2000, 2, 1, 10, 0))).isEmpty());
+    }
+
+    /**
+     * Test that evaluating with the bucket keys computed with the load gives the same violations as evaluating from
+     * the load time.
+     */
+    @Test
+    void testPrecomputedKeysMatchTime() {
+        var aggregates = aggregatesOf(
+                getFund(2000, LocalDateTime.of(2000, 1, 2, 10, 0)),
+                getFund(1000, LocalDateTime.of(2000, 1, 3, 9, 0)),
+                getFund(1000, LocalDateTime.of(2000, 1, 3, 10, 5)),
+                getFund(1000, LocalDateTime.of(2000, 1, 3, 11, 0)));
+        Fund fund = getFund(1500, LocalDateTime.of(2000, 1, 3, 10, 30));
+
+        var violated = evaluator.evaluate(aggregates, FundBatch.of(fund, aggregates.getCalendar()), 0);
+
+        assertEquals(evaluate(aggregates, fund), violated);
+        assertEquals(List.of(HOURLY_COUNT, DAILY_COUNT, MONTHLY_AMOUNT), violated);
+    }
+
+    private List<VelocityRule> evaluate(CustomerAggregates aggregates, Fund fund) {
+        return evaluator.evaluate(aggregates, FundValues.toCents(fund.getLoadAmount()), FundValues.toEpochSecond(fund.getTime()));
+    }
+
+    private CustomerAggregates aggregatesOf(Fund... funds) {
+        CustomerAggregates aggregates = new CustomerAggregates(evaluator.getWindows());
+        for (Fund fund : funds) {
+            aggregates.add(fund);
+        }
+        return aggregates;
+    }
+
+    /**
+     * Helper method to create a Fund with the given load amount and time.
+     */
+    private static Fund getFund(double loadAmount, LocalDateTime time) {
+        return Fund.create(1L, 1L, loadAmount, time);
+    }
+}
@@ -1,16 +1,18 @@
 package com.tryvault.task.validator;
 
+import com.tryvault.task.aggregate.CustomerAggregates;
+import com.tryvault.task.aggregate.VelocityWindow;
 import com.tryvault.task.config.FundConfiguration;
 import com.tryvault.task.entity.Fund;
 import com.tryvault.task.entity.FundId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.DayOfWeek;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Random;
 
@@ -22,13 +24,16 @@ class WeeklyFundValidatorTest {
     @Mock
     private FundConfiguration fundConfiguration;
 
-    @InjectMocks
-    WeeklyVelocityLimitValidator weeklyFundValidator;
+    FundValidationProcessor weeklyFundValidator;
 
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
-        when(fundConfiguration.getMaxWeeklyLoadAmount()).thenReturn(20000);
+        when(fundConfiguration.getZone()).thenReturn(ZoneOffset.UTC);
+        when(fundConfiguration.getWeekStart()).thenReturn(DayOfWeek.SUNDAY);
+        when(fundConfiguration.getRules()).thenReturn(List.of(
+                new VelocityRule("weekly-amount", VelocityWindow.WEEK, VelocityMetric.AMOUNT, 20000)));
+        weeklyFundValidator = new FundValidationProcessor(fundConfiguration);
     }
 
     /**
@@ -37,7 +42,7 @@ class WeeklyFundValidatorTest {
     @Test
     void testMaximumWeeklyLoadFund() {
         Fund fund = getFund(3000);
-        var result = weeklyFundValidator.validate(new ArrayList<>(), fund);
+        var result = weeklyFundValidator.isValid(aggregatesOf(), fund);
         assertTrue(result);
     }
 
@@ -50,7 +55,7 @@ class WeeklyFundValidatorTest {
         Fund fund2 = getFund(40.4);
         Fund fund3 = getFund(34.1);
         Fund fund4 = getFund(25);
-        var result = weeklyFundValidator.validate(List.of(fund1, fund2, fund3), fund4);
+        var result = weeklyFundValidator.isValid(aggregatesOf(fund1, fund2, fund3), fund4);
         assertTrue(result);
     }
 
@@ -62,7 +67,7 @@ class WeeklyFundValidatorTest {
         Fund fund1 = getFund(15000);
         Fund fund2 = getFund(5000);
         Fund fund3 = getFund(4000);
-        var result = weeklyFundValidator.validate(List.of(fund1, fund2), fund3);
+        var result = weeklyFundValidator.isValid(aggregatesOf(fund1, fund2), fund3);
         assertFalse(result);
     }
 
@@ -73,7 +78,7 @@ class WeeklyFundValidatorTest {
     void testInvalidMaximumWeeklyLoadFund() {
         Fund fund = getFund(20001);
         fund.setTime(LocalDateTime.now());
-        var result = weeklyFundValidator.validate(new ArrayList<>(), fund);
+        var result = weeklyFundValidator.isValid(aggregatesOf(), fund);
         assertFalse(result);
     }
 
@@ -87,4 +92,15 @@ class WeeklyFundValidatorTest {
         fund.setTime(LocalDateTime.now());
         return fund;
     }
+
+    /**
+     * Helper method to aggregate the given funds as the existing funds of a customer.
+     */
+    private static CustomerAggregates aggregatesOf(Fund... funds) {
+        CustomerAggregates aggregates = new CustomerAggregates(VelocityWindow.DAY, VelocityWindow.WEEK);
+        for (Fund fund : funds) {
+            aggregates.add(fund);
+        }
+        return aggregates;
+    }
 }
@@ -0,0 +1,129 @@
+package com.tryvault.task.workload;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.validator.VelocityMetric;
+import com.tryvault.task.validator.VelocityRule;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Straightforward evaluator of the velocity rules, written independently of the service's parser, buckets and
+ * cent arithmetic, to check the service's decisions on generated workloads.
+ *
+ * Lines are read with Jackson into BigDecimal amounts and UTC times, and every customer's count and amount are kept
+ * per calendar period, keyed by the period's start: the hour, the day, the Sunday the week starts on, or the first
+ * day of the month. A load whose fund ID was seen before for the customer is rejected, whether or not the earlier load
+ * was accepted. Periods that ended more than two of the longest windows before the latest load are dropped, so memory
+ * grows with the number of distinct loads rather than with the time span.
+ */
+public class ReferenceEvaluator {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int PRUNE_INTERVAL = 1_000_000;
+
+    private final List<VelocityRule> rules;
+    private final Set<VelocityWindow> windows = EnumSet.noneOf(VelocityWindow.class);
+    private final long retentionSeconds;
+    private final Map<Long, Set<Long>> loadIds = new HashMap<>();
+    private final Map<Long, Map<Period, Totals>> totals = new HashMap<>();
+    private LocalDateTime latestTime = LocalDateTime.MIN;
+    private long evaluated;
+
+    /**
+     * @param rules The velocity rules to evaluate.
+     */
+    public ReferenceEvaluator(List<VelocityRule> rules) {
+        this.rules = rules;
+        rules.forEach(rule -> windows.add(rule.getWindow()));
+        this.retentionSeconds = 2 * rules.stream()
+                .mapToLong(rule -> rule.getWindow().getMaxLength().getSeconds())
+                .max().orElse(0);
+    }
+
+    /**
+     * Decides a fund load line, recording it when it is accepted.
+     *
+     * @param line A fund load JSON object.
+     * @return {@code true} if the load is accepted.
+     */
+    public boolean accept(String line) {
+        JsonNode node;
+        try {
+            node = OBJECT_MAPPER.readTree(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read line: " + line, e);
+        }
+        long id = Long.parseLong(node.get("id").asText());
+        long customerId = Long.parseLong(node.get("customer_id").asText());
+        BigDecimal amount = new BigDecimal(node.get("load_amount").asText().replace("$", ""));
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.parse(node.get("time").asText()), ZoneOffset.UTC);
+        return accept(id, customerId, amount, time);
+    }
+
+    public boolean accept(long id, long customerId, BigDecimal amount, LocalDateTime time) {
+        if (time.isAfter(latestTime)) {
+            latestTime = time;
+        }
+        if (++evaluated % PRUNE_INTERVAL == 0) {
+            prune();
+        }
+        if (!loadIds.computeIfAbsent(customerId, k -> new HashSet<>()).add(id)) {
+            return false;
+        }
+
+        Map<Period, Totals> customerTotals = totals.computeIfAbsent(customerId, k -> new HashMap<>());
+        for (VelocityRule rule : rules) {
+            Totals periodTotals = customerTotals.getOrDefault(new Period(rule.getWindow(), start(rule.getWindow(), time)),
+                    Totals.EMPTY);
+            boolean violated = rule.getMetric() == VelocityMetric.AMOUNT
+                    ? periodTotals.amount.add(amount).compareTo(BigDecimal.valueOf(rule.getLimit())) > 0
+                    : periodTotals.count + 1 > rule.getLimit();
+            if (violated) {
+                return false;
+            }
+        }
+        for (VelocityWindow window : windows) {
+            customerTotals.merge(new Period(window, start(window, time)), new Totals(1, amount),
+                    (a, b) -> new Totals(a.count + b.count, a.amount.add(b.amount)));
+        }
+        return true;
+    }
+
+    private static LocalDateTime start(VelocityWindow window, LocalDateTime time) {
+        return switch (window) {
+            case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> time.toLocalDate().atStartOfDay();
+            case WEEK -> time.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY)).atStartOfDay();
+            case MONTH -> time.toLocalDate().withDayOfMonth(1).atStartOfDay();
+        };
+    }
+
+    private void prune() {
+        LocalDateTime cutoff = latestTime.minusSeconds(retentionSeconds);
+        totals.values().forEach(customerTotals -> customerTotals.keySet()
+                .removeIf(period -> period.start.plus(period.window.getMaxLength()).isBefore(cutoff)));
+    }
+
+    private record Period(VelocityWindow window, LocalDateTime start) {
+    }
+
+    private record Totals(int count, BigDecimal amount) {
+        static final Totals EMPTY = new Totals(0, BigDecimal.ZERO);
+    }
+}
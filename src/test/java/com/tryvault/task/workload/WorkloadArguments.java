@@ -0,0 +1,59 @@
+package com.tryvault.task.workload;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code --name=value} command line options of the workload tools, with positional arguments kept in order.
+ */
+class WorkloadArguments {
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final List<String> positional = new ArrayList<>();
+
+    WorkloadArguments(String... args) {
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int separator = arg.indexOf('=');
+                if (separator < 0) {
+                    options.put(arg.substring(2), "true");
+                } else {
+                    options.put(arg.substring(2, separator), arg.substring(separator + 1));
+                }
+            } else {
+                positional.add(arg);
+            }
+        }
+    }
+
+    String get(String name, String defaultValue) {
+        String value = options.remove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    long getLong(String name, long defaultValue) {
+        String value = options.remove(name);
+        return value == null ? defaultValue : Long.parseLong(value.replace("_", ""));
+    }
+
+    double getDouble(String name, double defaultValue) {
+        String value = options.remove(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    String getPositional(int index, String usage) {
+        if (index >= positional.size()) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+        return positional.get(index);
+    }
+
+    /**
+     * @return The options not read yet.
+     */
+    Map<String, String> remaining() {
+        return options;
+    }
+}
@@ -0,0 +1,166 @@
+package com.tryvault.task.workload;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes synthetic fund load lines in the format of {@code input.txt}, at any size, for scale testing.
+ *
+ * Customers are drawn from a Zipf distribution over {@code customers} IDs, so a few hot customers get most loads
+ * and hit their velocity limits; an exponent of 0 draws them uniformly. Amounts are log-normal around
+ * {@code amountMedian} dollars, capped at {@code maxAmount}. Load times are spread evenly over {@code span} from
+ * {@code start}, in input order. A {@code duplicateRate} share of the lines repeat the fund ID and customer of one of
+ * the last {@value #RECENT_LOADS} lines. The same options and seed always give the same file.
+ *
+ * Usage: {@code WorkloadGenerator --lines=1000000 --output=workload.txt [--customers=10000] [--zipfExponent=1.1]
+ * [--duplicateRate=0.001] [--amountMedian=500] [--amountSigma=1.5] [--maxAmount=10000]
+ * [--start=2000-01-01T00:00:00Z] [--span=P365D] [--seed=42]}
+ */
+public class WorkloadGenerator {
+
+    private static final int RECENT_LOADS = 1024;
+
+    private final long lines;
+    private final int customers;
+    private final double zipfExponent;
+    private final double duplicateRate;
+    private final double amountMedian;
+    private final double amountSigma;
+    private final long maxAmountCents;
+    private final long startEpochSecond;
+    private final long spanSeconds;
+    private final long seed;
+
+    public WorkloadGenerator(long lines, int customers, double zipfExponent, double duplicateRate, double amountMedian,
+                             double amountSigma, double maxAmount, Instant start, Duration span, long seed) {
+        if (lines < 0 || customers < 1 || zipfExponent < 0 || duplicateRate < 0 || duplicateRate > 1
+                || amountMedian <= 0 || amountSigma < 0 || maxAmount < 0.01 || span.isNegative()) {
+            throw new IllegalArgumentException("Invalid workload options");
+        }
+        this.lines = lines;
+        this.customers = customers;
+        this.zipfExponent = zipfExponent;
+        this.duplicateRate = duplicateRate;
+        this.amountMedian = amountMedian;
+        this.amountSigma = amountSigma;
+        this.maxAmountCents = Math.round(maxAmount * 100);
+        this.startEpochSecond = start.getEpochSecond();
+        this.spanSeconds = span.getSeconds();
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        WorkloadArguments arguments = new WorkloadArguments(args);
+        WorkloadGenerator generator = new WorkloadGenerator(
+                arguments.getLong("lines", 1_000_000),
+                (int) arguments.getLong("customers", 10_000),
+                arguments.getDouble("zipfExponent", 1.1),
+                arguments.getDouble("duplicateRate", 0.001),
+                arguments.getDouble("amountMedian", 500),
+                arguments.getDouble("amountSigma", 1.5),
+                arguments.getDouble("maxAmount", 10_000),
+                Instant.parse(arguments.get("start", "2000-01-01T00:00:00Z")),
+                Duration.parse(arguments.get("span", "P365D")),
+                arguments.getLong("seed", 42));
+        String output = arguments.get("output", "-");
+        if (!arguments.remaining().isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + arguments.remaining().keySet());
+        }
+
+        long start = System.nanoTime();
+        if (output.equals("-")) {
+            generator.write(System.out);
+            System.out.flush();
+        } else {
+            try (OutputStream out = Files.newOutputStream(Path.of(output))) {
+                generator.write(out);
+            }
+            System.err.printf("Wrote %d lines to %s in %d ms%n", generator.lines, output,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    /**
+     * Writes the workload lines to the stream, without closing it.
+     */
+    public void write(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 20);
+        Random random = new Random(seed);
+        double[] customerCdf = zipfExponent == 0 ? null : zipfCdf(customers, zipfExponent);
+        long[] recentIds = new long[RECENT_LOADS];
+        long[] recentCustomerIds = new long[RECENT_LOADS];
+        StringBuilder line = new StringBuilder(128);
+        long nextId = 1;
+
+        for (long i = 0; i < lines; i++) {
+            long id;
+            long customerId;
+            if (i >= RECENT_LOADS && random.nextDouble() < duplicateRate) {
+                int recent = random.nextInt(RECENT_LOADS);
+                id = recentIds[recent];
+                customerId = recentCustomerIds[recent];
+            } else {
+                id = nextId++;
+                customerId = nextCustomerId(random, customerCdf);
+            }
+            recentIds[(int) (i % RECENT_LOADS)] = id;
+            recentCustomerIds[(int) (i % RECENT_LOADS)] = customerId;
+
+            long epochSecond = startEpochSecond + (lines == 0 ? 0 : (long) ((double) spanSeconds * i / lines));
+            appendLine(line, id, customerId, nextAmountCents(random), epochSecond);
+            writer.append(line);
+        }
+        writer.flush();
+    }
+
+    private long nextCustomerId(Random random, double[] customerCdf) {
+        if (customerCdf == null) {
+            return random.nextInt(customers) + 1;
+        }
+        int rank = Arrays.binarySearch(customerCdf, random.nextDouble());
+        return (rank < 0 ? -rank - 1 : rank) + 1;
+    }
+
+    private long nextAmountCents(Random random) {
+        double amount = Math.exp(Math.log(amountMedian) + amountSigma * random.nextGaussian());
+        return Math.max(1, Math.min(maxAmountCents, Math.round(amount * 100)));
+    }
+
+    /**
+     * @return The cumulative probability of each customer rank, the rank {@code k} weighing {@code 1 / k^exponent}.
+     */
+    private static double[] zipfCdf(int customers, double exponent) {
+        double[] cdf = new double[customers];
+        double sum = 0;
+        for (int k = 0; k < customers; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < customers; k++) {
+            cdf[k] /= sum;
+        }
+        cdf[customers - 1] = 1;
+        return cdf;
+    }
+
+    private static void appendLine(StringBuilder line, long id, long customerId, long amountCents, long epochSecond) {
+        line.setLength(0);
+        long cents = amountCents % 100;
+        line.append("{\"id\":\"").append(id)
+                .append("\",\"customer_id\":\"").append(customerId)
+                .append("\",\"load_amount\":\"$").append(amountCents / 100).append('.')
+                .append(cents < 10 ? "0" : "").append(cents)
+                .append("\",\"time\":\"").append(Instant.ofEpochSecond(epochSecond))
+                .append("\"}\n");
+    }
+}
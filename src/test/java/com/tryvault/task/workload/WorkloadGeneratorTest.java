@@ -0,0 +1,109 @@
+package com.tryvault.task.workload;
+
+import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.aggregate.VelocityWindow;
+import com.tryvault.task.cluster.ClusterClient;
+import com.tryvault.task.cluster.ClusterMembership;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.metrics.FundMetrics;
+import com.tryvault.task.parser.StreamingFundParser;
+import com.tryvault.task.repository.FundStore;
+import com.tryvault.task.service.CustomerStateRegistry;
+import com.tryvault.task.service.DuplicateLoadIndex;
+import com.tryvault.task.service.FundService;
+import com.tryvault.task.service.ResultCache;
+import com.tryvault.task.validator.FundValidationProcessor;
+import com.tryvault.task.validator.VelocityMetric;
+import com.tryvault.task.validator.VelocityRule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkloadGeneratorTest {
+
+    private static final List<VelocityRule> RULES = List.of(
+            new VelocityRule("daily-amount", VelocityWindow.DAY, VelocityMetric.AMOUNT, 5000),
+            new VelocityRule("daily-count", VelocityWindow.DAY, VelocityMetric.COUNT, 3),
+            new VelocityRule("weekly-amount", VelocityWindow.WEEK, VelocityMetric.AMOUNT, 20000));
+
+    @Mock
+    private FundStore fundStore;
+
+    private ExecutorService validationExecutor;
+    private ExecutorService persistExecutor;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        validationExecutor = Executors.newFixedThreadPool(4);
+        persistExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        validationExecutor.shutdownNow();
+        persistExecutor.shutdownNow();
+    }
+
+    /**
+     * Test that the same options give the same workload, and that the service decides every load of a skewed workload
+     * with duplicates like the reference evaluator.
+     */
+    @Test
+    void testServiceMatchesReferenceEvaluator() throws IOException {
+        byte[] workload = generate(42);
+        assertArrayEquals(workload, generate(42));
+        List<String> lines = new String(workload, StandardCharsets.UTF_8).lines().toList();
+        assertEquals(20_000, lines.size());
+
+        ReferenceEvaluator reference = new ReferenceEvaluator(RULES);
+        List<Boolean> expected = lines.stream().map(reference::accept).toList();
+        List<Boolean> decided = new ArrayList<>();
+        getFundService().loadFunds(new ByteArrayInputStream(workload),
+                (FundLoadResponse response) -> decided.add(response.isAccepted()));
+
+        assertEquals(expected, decided);
+        assertTrue(expected.contains(false));
+        assertTrue(expected.contains(true));
+    }
+
+    private static byte[] generate(long seed) throws IOException {
+        WorkloadGenerator generator = new WorkloadGenerator(20_000, 200, 1.1, 0.01, 500, 1.5, 10_000,
+                Instant.parse("2000-01-01T00:00:00Z"), Duration.ofDays(90), seed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.write(out);
+        return out.toByteArray();
+    }
+
+    private FundService getFundService() {
+        FundConfiguration fundConfiguration = new FundConfiguration();
+        fundConfiguration.setChunkSize(1000);
+        fundConfiguration.setParallelism(4);
+        fundConfiguration.setRules(RULES);
+        FundValidationProcessor validator = new FundValidationProcessor(fundConfiguration);
+        CustomerStateRegistry customerStates = new CustomerStateRegistry(validator, fundConfiguration);
+        DuplicateLoadIndex duplicateLoadIndex = new DuplicateLoadIndex(fundStore, fundConfiguration);
+        FundMetrics fundMetrics = new FundMetrics(new SimpleMeterRegistry(), fundConfiguration, customerStates,
+                duplicateLoadIndex);
+        return new FundService(fundStore, customerStates, duplicateLoadIndex, validator, new StreamingFundParser(),
+                fundConfiguration, fundMetrics, validationExecutor, persistExecutor,
+                new ResultCache(fundConfiguration), new ClusterMembership(fundConfiguration),
+                new ClusterClient(fundConfiguration));
+    }
+}
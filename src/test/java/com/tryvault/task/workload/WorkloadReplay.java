@@ -0,0 +1,142 @@
+package com.tryvault.task.workload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tryvault.task.HomeTaskApplication;
+import com.tryvault.task.Response.FundLoadResponse;
+import com.tryvault.task.config.FundConfiguration;
+import com.tryvault.task.entity.Fund;
+import com.tryvault.task.service.FundService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a fund load file, such as one written by {@link WorkloadGenerator}, through {@link FundService} and checks
+ * every decision against the {@link ReferenceEvaluator}.
+ *
+ * The application is started without a web server, against in-memory H2 unless storage options are given. In
+ * {@code stream} mode the file is loaded as on the command line and the throughput is reported; in {@code single}
+ * mode every line is decided as its own request, and the latency percentiles of those requests are reported as well.
+ * Options other than {@code --mode} are passed to the application as properties, e.g. {@code --fund.storage=journal}.
+ * The process exits with status 1 if any decision differs from the reference.
+ *
+ * Usage: {@code WorkloadReplay <input file> [--mode=stream|single] [--fund.parallelism=8] ...}
+ */
+public class WorkloadReplay {
+
+    private static final int MAX_REPORTED_MISMATCHES = 10;
+
+    public static void main(String[] args) throws IOException {
+        WorkloadArguments arguments = new WorkloadArguments(args);
+        Path input = Path.of(arguments.getPositional(0, "WorkloadReplay <input file> [--mode=stream|single] [--property=value ...]"));
+        boolean single = arguments.get("mode", "stream").equals("single");
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:replay");
+        properties.put("spring.h2.console.enabled", "false");
+        properties.put("logging.level.com.tryvault.task", "ERROR");
+        properties.putAll(arguments.remaining());
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(HomeTaskApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(properties)
+                .run()) {
+            BitSet expected = evaluateReference(input, context.getBean(FundConfiguration.class));
+            Report report = single
+                    ? replaySingle(input, context.getBean(FundService.class), expected)
+                    : replayStream(input, context.getBean(FundService.class), expected);
+            report.print();
+            if (!report.mismatches.isEmpty()) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static BitSet evaluateReference(Path input, FundConfiguration fundConfiguration) throws IOException {
+        ReferenceEvaluator reference = new ReferenceEvaluator(fundConfiguration.getRules());
+        BitSet expected = new BitSet();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            int index = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (index == Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Replays are limited to " + Integer.MAX_VALUE + " lines");
+                }
+                expected.set(index++, reference.accept(line));
+            }
+        }
+        return expected;
+    }
+
+    private static Report replayStream(Path input, FundService fundService, BitSet expected) throws IOException {
+        Report report = new Report();
+        long start = System.nanoTime();
+        fundService.loadFunds(input, response -> report.check(response, expected));
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private static Report replaySingle(Path input, FundService fundService, BitSet expected) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        Report report = new Report();
+        report.latencies = new LatencyHistogram();
+        long start = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long requestStart = System.nanoTime();
+                FundLoadResponse response = fundService.loadFund(objectMapper.readValue(line, Fund.class));
+                report.latencies.record(System.nanoTime() - requestStart);
+                report.check(response, expected);
+            }
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private static class Report {
+        private final List<String> mismatches = new ArrayList<>();
+        private int lines;
+        private long accepted;
+        private long mismatchCount;
+        private long elapsedNanos;
+        private LatencyHistogram latencies;
+
+        void check(FundLoadResponse response, BitSet expected) {
+            boolean expectedAccepted = expected.get(lines++);
+            accepted += response.isAccepted() ? 1 : 0;
+            if (response.isAccepted() != expectedAccepted && mismatchCount++ < MAX_REPORTED_MISMATCHES) {
+                mismatches.add("line " + lines + ": " + response + ", expected accepted=" + expectedAccepted);
+            }
+        }
+
+        void print() {
+            System.out.printf("Lines: %d, accepted: %d, elapsed: %d ms, throughput: %.0f lines/sec%n",
+                    lines, accepted, elapsedNanos / 1_000_000, lines * 1e9 / Math.max(elapsedNanos, 1));
+            if (latencies != null) {
+                System.out.printf("Latency (us): p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+                        latencies.getPercentile(50) / 1e3, latencies.getPercentile(90) / 1e3,
+                        latencies.getPercentile(99) / 1e3, latencies.getPercentile(99.9) / 1e3,
+                        latencies.getMax() / 1e3);
+            }
+            if (mismatches.isEmpty()) {
+                System.out.println("All decisions match the reference evaluator.");
+            } else {
+                System.out.printf("%d decisions differ from the reference evaluator, first ones:%n", mismatchCount);
+                mismatches.forEach(mismatch -> System.out.println("  " + mismatch));
+            }
+        }
+    }
+}